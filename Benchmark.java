@@ -0,0 +1,616 @@
+import Compiler.CompilationResult;
+import Compiler.Compiler;
+import LLVMCodeGeneration.FileWritter;
+import LLVMCodeGeneration.LLVMCodeGeneratingVisitor;
+import Parser.MiniJavaParser;
+import SemanticAnalysis.CreateSymbolTableVisitor;
+import SemanticAnalysis.SemanticCheckingVisitor;
+import SemanticAnalysis.SignatureScanner;
+import SymbolTable.SymbolTable;
+import syntaxtree.Goal;
+import java.io.File;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+
+/** Benchmarks for the compiler on large synthetic MiniJava programs (see "make benchmark" and "make benchmark-deep").
+ *  Usage: java Benchmark emit [classes]  : write calls (syscalls) per KB of LLVM IR emitted to a file
+ *         java Benchmark parse [depth]   : parsing time of deeply nested "(((...)))" and method call chains
+ *         java Benchmark layout [depth]  : semantic checking and code generation with a deep inheritance hierarchy
+ *         java Benchmark subtype [depth] : argument-heavy method calls over a deep and a wide class hierarchy
+ *         java Benchmark symbols [classes]: semantic checking and code generation of a program with many classes and names
+ *         java Benchmark vtables [classes]: the same with deep hierarchies of classes with many methods (wide vtables)
+ *         java Benchmark inline [n]      : IR of a getter/setter-heavy program without and with inlining (written to files to run)
+ *         java Benchmark alloc [n]       : IR of an allocation-heavy program with calloc and with the arena (written to files to run)
+ *         java Benchmark fields [n]      : IR of a loop over the fields of an object mixing booleans and ints (written to a file to run)
+ *         java Benchmark params [classes]: bytes allocated by each visitor over a program with many classes and names
+ *         java Benchmark deep [depth]    : time of every phase on expressions and statements nested up to depth (1M)
+ *         java Benchmark fused [classes] : nodes visited and time of the semantic analysis in two passes and fused
+ */
+class Benchmark {
+
+    public static void main(String[] args) throws Exception {
+        String mode = (args.length > 0) ? args[0] : "emit";
+        int size = (args.length > 1) ? Integer.parseInt(args[1]) : -1;
+        switch (mode){
+            case "emit":
+                benchmarkEmitter((size > 0) ? size : 2000);
+                break;
+            case "parse":
+                benchmarkParser((size > 0) ? size : 1024);
+                break;
+            case "layout":
+                benchmarkHierarchy(generateDeepHierarchy((size > 0) ? size : 50, 40));
+                break;
+            case "subtype":
+                benchmarkHierarchy(generateSubtypeChecks((size > 0) ? size : 50, 200, 2000));
+                break;
+            case "symbols":
+                benchmarkHierarchy(generateProgram((size > 0) ? size : 2000));
+                break;
+            case "vtables":
+                benchmarkHierarchy(generateWideVTables((size > 0) ? size : 2000, 25, 8));
+                break;
+            case "inline":
+                benchmarkInlining(generateGetters((size > 0) ? size : 100000));
+                break;
+            case "alloc":
+                benchmarkAllocation(generateAllocations((size > 0) ? size : 10000000));
+                break;
+            case "fields":
+                benchmarkFields(generateFieldLoop((size > 0) ? size : 100000000));
+                break;
+            case "params":
+                benchmarkVisitorAllocations(generateProgram((size > 0) ? size : 2000));
+                break;
+            case "deep":
+                benchmarkNesting((size > 0) ? size : 1000000);
+                break;
+            case "fused":
+                System.out.println("many classes and names:");
+                benchmarkFusedChecking(generateProgram((size > 0) ? size : 2000));
+                System.out.println("wide vtables:");
+                benchmarkFusedChecking(generateWideVTables((size > 0) ? size : 2000, 25, 8));
+                break;
+            default:
+                System.err.println("Unknown benchmark \"" + mode + "\"");
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  LLVM IR emitter                                                                          ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void benchmarkEmitter(int classes) throws Exception {
+        String source = generateProgram(classes);
+        File output = File.createTempFile("benchmark", ".ll");
+        output.deleteOnExit();
+
+        for (int run = 0 ; run < 5 ; run++){       // (first runs are warm-up)
+            MiniJavaParser parser = new MiniJavaParser(new StringReader(source));
+            Goal root = parser.Goal();
+            SymbolTable symbolTable = new SymbolTable(parser.getNames());
+            CreateSymbolTableVisitor STVisitor = new CreateSymbolTableVisitor(symbolTable);
+            root.accept(STVisitor, null);
+            SemanticCheckingVisitor SCVisitor = new SemanticCheckingVisitor(symbolTable);
+            root.accept(SCVisitor, null);
+            if (STVisitor.detectedSemanticError || SCVisitor.detectedSemanticError)
+                throw new IllegalStateException("generated program has semantic errors");
+            symbolTable.calculateOffsets();
+
+            long start = System.nanoTime();
+            FileWritter out = new FileWritter(output.getPath());
+            LLVMCodeGeneratingVisitor LLVMVisitor = new LLVMCodeGeneratingVisitor(symbolTable, out);
+            LLVMVisitor.setResolvedSymbols(SCVisitor.getResolvedSymbols());
+            root.accept(LLVMVisitor, null);
+            long time = System.nanoTime() - start;
+
+            double kb = out.getBytesWritten() / 1024.0;
+            System.out.printf("run %d: %.0f KB of IR, %d writes (%.3f writes per KB), code generation took %.1f ms%n",
+                              run + 1, kb, out.getNumberOfWrites(), out.getNumberOfWrites() / kb, time / 1e6);
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  Parser                                                                                   ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final long PARSE_TIME_LIMIT = 2000;      // (in ms) stop increasing the depth after a parse this slow
+
+    private static void benchmarkParser(int maxDepth) throws Exception {
+        System.out.println("nested brackets: System.out.println(((...(1)...)));");
+        for (int depth = 1 ; depth <= maxDepth ; depth = nextDepth(depth)){
+            if (timeParse(generateNestedBrackets(depth), depth) > PARSE_TIME_LIMIT) break;
+        }
+        System.out.println("method call chain: x = ((...((this.f()).f())...).f());");
+        for (int depth = 1 ; depth <= maxDepth ; depth = nextDepth(depth)){
+            if (timeParse(generateCallChain(depth), depth) > PARSE_TIME_LIMIT) break;
+        }
+    }
+
+    private static int nextDepth(int depth){
+        return (depth < 8) ? depth + 1 : depth * 2;
+    }
+
+    /** returns the time (in ms) of the slowest parse */
+    private static double timeParse(String source, int depth) throws Exception {
+        double best = Double.MAX_VALUE, worst = 0;
+        for (int run = 0 ; run < 5 ; run++){
+            long start = System.nanoTime();
+            new MiniJavaParser(new StringReader(source)).Goal();
+            double time = (System.nanoTime() - start) / 1e6;
+            best = Math.min(best, time);
+            worst = Math.max(worst, time);
+            if (worst > PARSE_TIME_LIMIT) break;
+        }
+        System.out.printf("    depth %5d: %10.3f ms%n", depth, best);
+        return worst;
+    }
+
+    private static String generateNestedBrackets(int depth){
+        StringBuilder sb = new StringBuilder();
+        sb.append("class BenchMain {\n    public static void main(String[] a){\n        System.out.println(");
+        for (int i = 0 ; i < depth ; i++) sb.append('(');
+        sb.append('1');
+        for (int i = 0 ; i < depth ; i++) sb.append(')');
+        sb.append(");\n    }\n}\n");
+        return sb.toString();
+    }
+
+    private static String generateCallChain(int depth){
+        StringBuilder sb = new StringBuilder();
+        sb.append("class BenchMain {\n    public static void main(String[] a){\n        System.out.println(new A().f());\n    }\n}\n")
+          .append("class A {\n    public A f(){\n        A x;\n        x = ");
+        for (int i = 1 ; i < depth ; i++) sb.append('(');
+        sb.append("this.f()");
+        for (int i = 1 ; i < depth ; i++) sb.append(").f()");
+        sb.append(";\n        return x;\n    }\n}\n");
+        return sb.toString();
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  Semantic checking and code generation over class hierarchies                            ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void benchmarkHierarchy(String source) throws Exception {
+        double bestCheck = Double.MAX_VALUE, bestCodegen = Double.MAX_VALUE;
+        SymbolTable symbolTable = null;
+        for (int run = 0 ; run < 30 ; run++){
+            MiniJavaParser parser = new MiniJavaParser(new StringReader(source));
+            Goal root = parser.Goal();
+            symbolTable = new SymbolTable(parser.getNames());
+            CreateSymbolTableVisitor STVisitor = new CreateSymbolTableVisitor(symbolTable);
+            root.accept(STVisitor, null);
+
+            long start = System.nanoTime();
+            SemanticCheckingVisitor SCVisitor = new SemanticCheckingVisitor(symbolTable);
+            root.accept(SCVisitor, null);
+            double check = (System.nanoTime() - start) / 1e6;
+            if (STVisitor.detectedSemanticError || SCVisitor.detectedSemanticError)
+                throw new IllegalStateException("generated program has semantic errors: " + STVisitor.errorMsg + SCVisitor.errorMsg);
+
+            start = System.nanoTime();
+            symbolTable.calculateOffsets();
+            LLVMCodeGeneratingVisitor LLVMVisitor = new LLVMCodeGeneratingVisitor(symbolTable, new FileWritter());
+            LLVMVisitor.setResolvedSymbols(SCVisitor.getResolvedSymbols());
+            root.accept(LLVMVisitor, null);
+            double codegen = (System.nanoTime() - start) / 1e6;
+
+            bestCheck = Math.min(bestCheck, check);
+            bestCodegen = Math.min(bestCodegen, codegen);
+        }
+        System.out.printf("semantic checking %.2f ms, offsets + code generation %.2f ms (best of 30)%n", bestCheck, bestCodegen);
+        System.out.println("types: " + symbolTable.getTypeRegistry().getNumberOfRequests() + " requested, "
+                           + symbolTable.getTypeRegistry().getNumberOfTypes() + " created (per compilation)");
+    }
+
+    /** A chain of depth classes, each one with a field and a method, and a method in the deepest one
+     *  that uses every inherited field and calls every inherited method (repeated reps times) */
+    static String generateDeepHierarchy(int depth, int reps){
+        StringBuilder sb = new StringBuilder();
+        sb.append("class BenchMain {\n    public static void main(String[] a){\n        System.out.println(new C")
+          .append(depth - 1).append("().work(1));\n    }\n}\n");
+        for (int c = 0 ; c < depth ; c++){
+            sb.append("class C").append(c);
+            if (c > 0) sb.append(" extends C").append(c - 1);
+            sb.append(" {\n    int f").append(c).append(";\n")
+              .append("    public int m").append(c).append("(int a, int b){\n        return (a + f").append(c).append(") - b;\n    }\n");
+            if (c == depth - 1){
+                sb.append("    public int work(int n){\n        int s;\n        s = n;\n");
+                for (int r = 0 ; r < reps ; r++){
+                    for (int i = 0 ; i < depth ; i++){
+                        sb.append("        s = s + f").append(i).append(";\n")
+                          .append("        s = this.m").append(i).append("(s, f").append(i).append(");\n");
+                    }
+                }
+                sb.append("        return s;\n    }\n");
+            }
+            sb.append("}\n");
+        }
+        return sb.toString();
+    }
+
+    /** classes classes in inheritance chains of depth, each one with methods new methods and overriding two of its
+     *  mother's (so that the vtables of the deepest ones have depth * methods slots) */
+    static String generateWideVTables(int classes, int depth, int methods){
+        StringBuilder sb = new StringBuilder();
+        sb.append("class BenchMain {\n    public static void main(String[] a){\n        System.out.println(new V0().m0_0(1, true));\n    }\n}\n");
+        for (int c = 0 ; c < classes ; c++){
+            sb.append("class V").append(c);
+            if (c % depth != 0) sb.append(" extends V").append(c - 1);
+            sb.append(" {\n    int f").append(c).append(";\n");
+            for (int m = 0 ; m < methods ; m++){
+                sb.append("    public int m").append(c).append('_').append(m).append("(int a, boolean b){\n        return a + f").append(c).append(";\n    }\n");
+            }
+            if (c % depth != 0){
+                for (int m = 0 ; m < 2 ; m++){
+                    sb.append("    public int m").append(c - 1).append('_').append(m).append("(int a, boolean b){\n        return a - f").append(c).append(";\n    }\n");
+                }
+            }
+            sb.append("}\n");
+        }
+        return sb.toString();
+    }
+
+    /** A chain of depth classes and width sibling classes, all extending Base, and calls passing objects of
+     *  the deepest and of the sibling classes as Base arguments (each one needs a subtype test) */
+    static String generateSubtypeChecks(int depth, int width, int calls){
+        StringBuilder sb = new StringBuilder();
+        sb.append("class BenchMain {\n    public static void main(String[] a){\n        System.out.println(new Caller().run());\n    }\n}\n")
+          .append("class Base {\n    public int take(Base a, Base b, Base c, Base d){\n        return 0;\n    }\n}\n");
+        for (int c = 0 ; c < depth ; c++){
+            sb.append("class Deep").append(c).append(" extends ").append((c > 0) ? "Deep" + (c - 1) : "Base").append(" { }\n");
+        }
+        for (int c = 0 ; c < width ; c++){
+            sb.append("class Wide").append(c).append(" extends Base { }\n");
+        }
+        sb.append("class Caller {\n    public int run(){\n        Base x;\n        Deep").append(depth - 1).append(" d;\n        int s;\n");
+        for (int c = 0 ; c < width ; c++) sb.append("        Wide").append(c).append(" w").append(c).append(";\n");
+        sb.append("        x = new Base();\n        d = new Deep").append(depth - 1).append("();\n");
+        for (int c = 0 ; c < width ; c++) sb.append("        w").append(c).append(" = new Wide").append(c).append("();\n");
+        for (int i = 0 ; i < calls ; i++){
+            sb.append("        s = x.take(d, w").append(i % width).append(", d, w").append((7 * i) % width).append(");\n");
+        }
+        sb.append("        return s;\n    }\n}\n");
+        return sb.toString();
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  Inlining                                                                                 ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void benchmarkInlining(String source) throws Exception {
+        for (int budget : new int[] { 0, LLVMCodeGeneratingVisitor.DEFAULT_INLINE_BUDGET }){
+            Compiler compiler = new Compiler();
+            compiler.setInlineBudget(budget);
+            CompilationResult result = null;
+            double best = Double.MAX_VALUE;
+            for (int run = 0 ; run < 10 ; run++){
+                long start = System.nanoTime();
+                result = compiler.compile(source);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            if (!result.isSuccessful()) throw new IllegalStateException("generated program does not compile");
+            String ir = result.getLLVMIR();
+            int calls = 0;
+            for (int i = ir.indexOf(" = call ") ; i >= 0 ; i = ir.indexOf(" = call ", i + 1)){
+                if (!ir.startsWith("i8* @calloc", i + 8)) calls++;
+            }
+            File output = new File(System.getProperty("java.io.tmpdir"), "BenchInline-budget" + budget + ".ll");
+            Files.write(output.toPath(), ir.getBytes(StandardCharsets.UTF_8));
+            System.out.printf("budget %2d: %d calls inlined, %d method calls left in %.0f KB of IR, compiled in %.2f ms (best of 10) -> %s%n",
+                              budget, result.getCounter("inlined calls"), calls, ir.length() / 1024.0, best, output.getPath());
+        }
+    }
+
+    /** A linked list of n nodes built and then walked through setters and getters (and a getter of a getter) */
+    static String generateGetters(int n){
+        return "class BenchMain {\n    public static void main(String[] a){\n        System.out.println(new Walker().run(" + n + "));\n    }\n}\n" +
+               "class Node {\n    int key;\n    Node next;\n    boolean hasNext;\n" +
+               "    public int GetKey(){\n        return key;\n    }\n" +
+               "    public Node GetNext(){\n        return next;\n    }\n" +
+               "    public boolean GetHasNext(){\n        return hasNext;\n    }\n" +
+               "    public int GetNextKey(){\n        return next.GetKey();\n    }\n" +
+               "    public boolean SetKey(int k){\n        key = k;\n        return true;\n    }\n" +
+               "    public boolean SetNext(Node n){\n        next = n;\n        hasNext = true;\n        return true;\n    }\n}\n" +
+               "class Walker {\n    public int run(int n){\n        Node head;\n        Node node;\n        int i;\n        int sum;\n        boolean b;\n" +
+               "        head = new Node();\n        i = 0;\n" +
+               "        while (i < n){\n            node = new Node();\n            b = node.SetKey(i);\n            b = node.SetNext(head);\n            head = node;\n            i = i + 1;\n        }\n" +
+               "        sum = 0;\n        node = head;\n" +
+               "        while (node.GetHasNext()){\n            sum = sum + (node.GetKey());\n            sum = sum - (node.GetNextKey());\n            node = node.GetNext();\n        }\n" +
+               "        return sum;\n    }\n}\n";
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  Allocation                                                                               ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /** The generated code only runs outside of the compiler, so the allocation throughput is measured by building and
+     *  timing both files, e.g.: clang -O2 -o /tmp/alloc /tmp/BenchAlloc-arena.ll Resources/runtime.o && time /tmp/alloc */
+    private static void benchmarkAllocation(String source) throws Exception {
+        for (boolean arena : new boolean[] { false, true }){
+            Compiler compiler = new Compiler();
+            compiler.setArenaAllocation(arena);
+            CompilationResult result = compiler.compile(source);
+            if (!result.isSuccessful()) throw new IllegalStateException("generated program does not compile");
+            String ir = result.getLLVMIR();
+            int callocs = 0, slowPaths = 0;
+            for (int i = ir.indexOf("@calloc(i32 ") ; i >= 0 ; i = ir.indexOf("@calloc(i32 ", i + 1)) callocs++;
+            for (int i = ir.indexOf("call i8* @heap_alloc_slow(") ; i >= 0 ; i = ir.indexOf("call i8* @heap_alloc_slow(", i + 1)) slowPaths++;
+            File output = new File(System.getProperty("java.io.tmpdir"), "BenchAlloc-" + (arena ? "arena" : "calloc") + ".ll");
+            Files.write(output.toPath(), ir.getBytes(StandardCharsets.UTF_8));
+            System.out.printf("%-6s: %d heap allocation sites (%d calloc calls, %d inlined bump allocations) in %.0f KB of IR -> %s%n",
+                              arena ? "arena" : "calloc", result.getCounter("heap allocations"), callocs, slowPaths, ir.length() / 1024.0, output.getPath());
+        }
+    }
+
+    /** n small objects, each one holding a small array, linked into a list that is then walked */
+    static String generateAllocations(int n){
+        return "class BenchMain {\n    public static void main(String[] a){\n        System.out.println(new Builder().run(" + n + "));\n    }\n}\n" +
+               "class Item {\n    int key;\n    int[] values;\n    Item next;\n" +
+               "    public int Init(int k, Item n){\n        key = k;\n        values = new int[4];\n        values[0] = k;\n        next = n;\n        return k;\n    }\n" +
+               "    public int Sum(){\n        return key + (values[0]);\n    }\n" +
+               "    public Item GetNext(){\n        return next;\n    }\n}\n" +
+               "class Builder {\n    public int run(int n){\n        Item head;\n        Item item;\n        int i;\n        int sum;\n" +
+               "        head = new Item();\n        i = head.Init(0, head);\n" +
+               "        while (i < n){\n            item = new Item();\n            i = item.Init(i + 1, head);\n            head = item;\n        }\n" +
+               "        sum = 0;\n        i = 0;\n" +
+               "        while (i < n){\n            sum = sum + (head.Sum());\n            head = head.GetNext();\n            i = i + 1;\n        }\n" +
+               "        return sum;\n    }\n}\n";
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  Fields                                                                                   ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /** As for allocation, the generated code is timed outside of the compiler, e.g.:
+     *  clang -O2 -o /tmp/fields /tmp/BenchFields.ll Resources/runtime.o && time /tmp/fields */
+    private static void benchmarkFields(String source) throws Exception {
+        CompilationResult result = new Compiler().compile(source);
+        if (!result.isSuccessful()) throw new IllegalStateException("generated program does not compile");
+        String ir = result.getLLVMIR();
+        int structAccesses = 0, byteAccesses = 0;
+        for (int i = ir.indexOf("= getelementptr %class.") ; i >= 0 ; i = ir.indexOf("= getelementptr %class.", i + 1)) structAccesses++;
+        for (int i = ir.indexOf("= getelementptr i8, i8* %this") ; i >= 0 ; i = ir.indexOf("= getelementptr i8, i8* %this", i + 1)) byteAccesses++;
+        File output = new File(System.getProperty("java.io.tmpdir"), "BenchFields.ll");
+        Files.write(output.toPath(), ir.getBytes(StandardCharsets.UTF_8));
+        System.out.printf("%d field accesses through struct types, %d through byte offsets in %.0f KB of IR -> %s%n",
+                          structAccesses, byteAccesses, ir.length() / 1024.0, output.getPath());
+    }
+
+    /** An object whose int fields follow booleans (so that packing them would misalign the ints), updated in a loop */
+    static String generateFieldLoop(int n){
+        return "class BenchMain {\n    public static void main(String[] a){\n        System.out.println(new Particle().run(" + n + "));\n    }\n}\n" +
+               "class Particle {\n    boolean alive;\n    int x;\n    boolean bounced;\n    int y;\n    int vx;\n    boolean slow;\n    int vy;\n" +
+               "    public int run(int n){\n        int i;\n" +
+               "        alive = true;\n        vx = 3;\n        vy = 1;\n        i = 0;\n" +
+               "        while (i < n){\n            x = x + vx;\n            y = y + vy;\n" +
+               "            if (1000000 < x){\n                x = 0;\n                bounced = !bounced;\n            } else slow = !slow;\n" +
+               "            if (alive && (bounced && slow)) vy = vy + 1; else vy = vy - 1;\n" +
+               "            i = i + 1;\n        }\n" +
+               "        return (x + y) + vy;\n    }\n}\n";
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  Visitor parameters                                                                       ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /** The parameters passed down by the visitors are only a part of what they allocate, to see which objects make up
+     *  the rest: java -XX:StartFlightRecording:filename=/tmp/params.jfr,settings=profile Benchmark params
+     *            jfr print --events jdk.ObjectAllocationSample /tmp/params.jfr | grep objectClass | sort | uniq -c */
+    private static void benchmarkVisitorAllocations(String source) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long symbols = Long.MAX_VALUE, checks = Long.MAX_VALUE, codegen = Long.MAX_VALUE;
+        for (int run = 0 ; run < 10 ; run++){
+            MiniJavaParser parser = new MiniJavaParser(new StringReader(source));
+            Goal root = parser.Goal();
+            SymbolTable symbolTable = new SymbolTable(parser.getNames());
+
+            long start = threads.getCurrentThreadAllocatedBytes();
+            CreateSymbolTableVisitor STVisitor = new CreateSymbolTableVisitor(symbolTable);
+            root.accept(STVisitor, null);
+            long afterSymbols = threads.getCurrentThreadAllocatedBytes();
+            SemanticCheckingVisitor SCVisitor = new SemanticCheckingVisitor(symbolTable);
+            root.accept(SCVisitor, null);
+            long afterChecks = threads.getCurrentThreadAllocatedBytes();
+            if (STVisitor.detectedSemanticError || SCVisitor.detectedSemanticError)
+                throw new IllegalStateException("generated program has semantic errors");
+            symbolTable.calculateOffsets();
+            long beforeCodegen = threads.getCurrentThreadAllocatedBytes();
+            LLVMCodeGeneratingVisitor LLVMVisitor = new LLVMCodeGeneratingVisitor(symbolTable, new FileWritter());
+            LLVMVisitor.setResolvedSymbols(SCVisitor.getResolvedSymbols());
+            root.accept(LLVMVisitor, null);
+            long afterCodegen = threads.getCurrentThreadAllocatedBytes();
+
+            symbols = Math.min(symbols, afterSymbols - start);
+            checks = Math.min(checks, afterChecks - afterSymbols);
+            codegen = Math.min(codegen, afterCodegen - beforeCodegen);
+        }
+        System.out.printf("allocated: symbol table %.0f KB, semantic checking %.0f KB, code generation %.0f KB (least of 10)%n",
+                          symbols / 1024.0, checks / 1024.0, codegen / 1024.0);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  Fused semantic analysis                                                                  ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /** The Symbol Table filled by CreateSymbolTableVisitor then the semantic checks, against a SignatureScanner reading
+     *  only the declarations then the checks (see Compiler.setFusedChecking()) */
+    private static void benchmarkFusedChecking(String source) throws Exception {
+        MiniJavaParser parser = new MiniJavaParser(new StringReader(source));
+        Goal root = parser.Goal();
+        int run = 0;
+        for (boolean fused : new boolean[]{ false, true, false, true }){       // (the first two are warm-up)
+            double bestSymbols = Double.MAX_VALUE, bestChecks = Double.MAX_VALUE, bestTotal = Double.MAX_VALUE;
+            long symbolVisits = 0, checkVisits = 0;
+            for (int i = 0 ; i < 30 ; i++){
+                long start = System.nanoTime();
+                SymbolTable symbolTable = new SymbolTable(parser.getNames());
+                SignatureScanner signatures = null;
+                boolean error;
+                if (fused) {
+                    signatures = new SignatureScanner(symbolTable);
+                    signatures.scan(root);
+                    error = signatures.detectedSemanticError;
+                    symbolVisits = signatures.getNumberOfVisits();
+                } else {
+                    CreateSymbolTableVisitor STVisitor = new CreateSymbolTableVisitor(symbolTable);
+                    root.accept(STVisitor, null);
+                    error = STVisitor.detectedSemanticError;
+                    symbolVisits = STVisitor.getNumberOfVisits();
+                }
+                long afterSymbols = System.nanoTime();
+                SemanticCheckingVisitor SCVisitor = new SemanticCheckingVisitor(symbolTable, signatures);
+                root.accept(SCVisitor, null);
+                long end = System.nanoTime();
+                if (error || SCVisitor.detectedSemanticError)
+                    throw new IllegalStateException("generated program has semantic errors");
+                checkVisits = SCVisitor.getNumberOfVisits();
+
+                bestSymbols = Math.min(bestSymbols, (afterSymbols - start) / 1e6);
+                bestChecks = Math.min(bestChecks, (end - afterSymbols) / 1e6);
+                bestTotal = Math.min(bestTotal, (end - start) / 1e6);
+            }
+            if (run++ < 2) continue;
+            System.out.printf("    %-9s: nodes visited %8d + %8d = %8d, symbol table %6.2f ms, semantic checking %6.2f ms, both %6.2f ms (best of 30)%n",
+                              fused ? "fused" : "two-pass", symbolVisits, checkVisits, symbolVisits + checkVisits, bestSymbols, bestChecks, bestTotal);
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    ///  Deep nesting                                                                             ///
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final long NESTING_TIME_LIMIT = 2000;        // (in ms) stop increasing the depth after a compilation this slow
+
+    /** Every phase walks the syntax tree with stacks of its own, so the depth is only limited by the heap (a program
+     *  too large for it ends with an OutOfMemoryError, not a StackOverflowError) */
+    private static void benchmarkNesting(int maxDepth) throws Exception {
+        String[] kinds = { "brackets", "not", "arguments", "blocks", "ifs", "whiles" };
+        for (String kind : kinds){
+            System.out.println(kind + ":");
+            for (int depth = 10 ; depth <= maxDepth ; depth *= 10){
+                if (timeNesting(generateNesting(kind, depth), depth) > NESTING_TIME_LIMIT) break;
+            }
+        }
+    }
+
+    /** returns the time (in ms) of the whole compilation, or Long.MAX_VALUE if it failed */
+    private static long timeNesting(String source, int depth) throws Exception {
+        String phase = "parse";
+        long[] times = new long[4];
+        long start = System.nanoTime();
+        try {
+            MiniJavaParser parser = new MiniJavaParser(new StringReader(source));
+            Goal root = parser.Goal();
+            times[0] = System.nanoTime();
+            phase = "symbol table";
+            SymbolTable symbolTable = new SymbolTable(parser.getNames());
+            CreateSymbolTableVisitor STVisitor = new CreateSymbolTableVisitor(symbolTable);
+            root.accept(STVisitor, null);
+            times[1] = System.nanoTime();
+            phase = "semantic checking";
+            SemanticCheckingVisitor SCVisitor = new SemanticCheckingVisitor(symbolTable);
+            root.accept(SCVisitor, null);
+            times[2] = System.nanoTime();
+            if (STVisitor.detectedSemanticError || SCVisitor.detectedSemanticError)
+                throw new IllegalStateException("generated program has semantic errors: " + STVisitor.errorMsg + SCVisitor.errorMsg);
+            phase = "code generation";
+            symbolTable.calculateOffsets();
+            LLVMCodeGeneratingVisitor LLVMVisitor = new LLVMCodeGeneratingVisitor(symbolTable, new FileWritter());
+            LLVMVisitor.setResolvedSymbols(SCVisitor.getResolvedSymbols());
+            root.accept(LLVMVisitor, null);
+            times[3] = System.nanoTime();
+        } catch (StackOverflowError | OutOfMemoryError e) {
+            System.out.printf("    depth %7d: %s in %s%n", depth, e.getClass().getSimpleName(), phase);
+            return Long.MAX_VALUE;
+        }
+        System.out.printf("    depth %7d: parse %8.1f ms, symbol table %6.1f ms, semantic checking %8.1f ms, code generation %8.1f ms%n",
+                          depth, (times[0] - start) / 1e6, (times[1] - times[0]) / 1e6, (times[2] - times[1]) / 1e6, (times[3] - times[2]) / 1e6);
+        return (times[3] - start) / 1000000;
+    }
+
+    private static String generateNesting(String kind, int depth){
+        StringBuilder sb = new StringBuilder();
+        sb.append("class BenchMain {\n    public static void main(String[] a){\n        System.out.println(new A().run(1));\n    }\n}\n")
+          .append("class A {\n    public int f(int v){\n        return v + 1;\n    }\n    public int run(int x){\n        ");
+        switch (kind){
+            case "brackets":        // x = (x + (x + ... (x + 1)...));
+                sb.append("x = ");
+                for (int i = 0 ; i < depth ; i++) sb.append("(x + ");
+                sb.append('1');
+                for (int i = 0 ; i < depth ; i++) sb.append(')');
+                sb.append(';');
+                break;
+            case "not":             // if (!!...!(x < 2)) x = 2; else x = 3;
+                sb.append("if (");
+                for (int i = 0 ; i < depth ; i++) sb.append('!');
+                sb.append("(x < 2)) x = 2; else x = 3;");
+                break;
+            case "arguments":       // x = this.f(this.f(... this.f(x)...));
+                sb.append("x = ");
+                for (int i = 0 ; i < depth ; i++) sb.append("this.f(");
+                sb.append('x');
+                for (int i = 0 ; i < depth ; i++) sb.append(')');
+                sb.append(';');
+                break;
+            case "blocks":          // {{...{ x = 2; }...}}
+                for (int i = 0 ; i < depth ; i++) sb.append('{');
+                sb.append("x = 2;");
+                for (int i = 0 ; i < depth ; i++) sb.append('}');
+                break;
+            case "ifs":             // if (x < 5) if (x < 5) ... x = 2; else x = 3; ... else x = 3;
+                for (int i = 0 ; i < depth ; i++) sb.append("if (x < 5) ");
+                sb.append("x = 2;");
+                for (int i = 0 ; i < depth ; i++) sb.append(" else x = 3;");
+                break;
+            case "whiles":          // while (x < 1) while (x < 1) ... x = 2;
+                for (int i = 0 ; i < depth ; i++) sb.append("while (x < 1) ");
+                sb.append("x = 2;");
+                break;
+        }
+        sb.append("\n        return x;\n    }\n}\n");
+        return sb.toString();
+    }
+
+    /** A program with many classes (in inheritance chains of 8) each one using fields, arrays, loops, ifs and method calls */
+    static String generateProgram(int classes){
+        StringBuilder sb = new StringBuilder();
+        sb.append("class BenchMain {\n")
+          .append("    public static void main(String[] a){\n")
+          .append("        System.out.println(new C0().run(10));\n")
+          .append("    }\n")
+          .append("}\n");
+        for (int c = 0 ; c < classes ; c++){
+            sb.append("class C").append(c);
+            if (c % 8 != 0) sb.append(" extends C").append(c - 1);
+            sb.append(" {\n")
+              .append("    int f").append(c).append(";\n")
+              .append("    int[] arr").append(c).append(";\n")
+              .append("    boolean flag").append(c).append(";\n")
+              .append("    public int run(int n){\n")
+              .append("        int i;\n")
+              .append("        int sum;\n")
+              .append("        arr").append(c).append(" = new int[n];\n")
+              .append("        i = 0;\n")
+              .append("        sum = 0;\n")
+              .append("        while (i < n){\n")
+              .append("            arr").append(c).append("[i] = (i * ").append(c).append(") + f").append(c).append(";\n")
+              .append("            if (flag").append(c).append(" && (sum < 1000)) sum = sum + (arr").append(c).append("[i]);\n")
+              .append("            else sum = sum - (this.get").append(c).append("(i));\n")
+              .append("            i = i + 1;\n")
+              .append("        }\n")
+              .append("        System.out.println(arr").append(c).append(".length);\n")
+              .append("        return sum;\n")
+              .append("    }\n")
+              .append("    public int get").append(c).append("(int i){\n")
+              .append("        return (arr").append(c).append("[i]) - f").append(c).append(";\n")
+              .append("    }\n")
+              .append("}\n");
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,201 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/** A long-lived compile daemon so that each compile runs on an already warmed-up JVM.
+ *
+ *  It listens on a loopback TCP port and serves one request per connection. A request is two lines, the token of the
+ *  server (see below) then one of:
+ *    - "compile <path>"  : compiles <path> exactly like "java Main <path>" (the .ll file is written next to it)
+ *                          and replies with the same diagnostics followed by a last line "#ok" or "#error"
+ *    - "stats"           : replies with the number of requests served and p50/p99 compile latency
+ *    - "shutdown"        : stops the server
+ *  e.g.  (cat ~/.minijava-server-4040.token; echo "compile inputs/Factorial.java") | nc localhost 4040
+ *
+ *  Trust model: anyone who can connect to the port could otherwise compile (and so write a .ll next to) any file the
+ *  server can read, or stop it, and loopback TCP does not tell which user connected. So the server makes a random
+ *  token when it starts and writes it to ~/.minijava-server-<port>.token, readable only by its owner (0600), and
+ *  refuses any request that does not start with it. Only the processes of the user who started the server (and root)
+ *  can read the token, and these can already read and write the same files as the server itself. The file is removed
+ *  when the server stops.
+ *
+ *  Requests are handled on virtual threads when the JVM supports them (Java 21+) and on a cached pool otherwise.
+ */
+class CompileServer {
+
+	static final int DEFAULT_PORT = 4040;
+
+	private static final int LATENCY_WINDOW = 8192;    // percentiles are computed over the latest LATENCY_WINDOW compiles
+	private static final int TOKEN_BYTES = 32;
+
+	private final int port;
+	private volatile boolean running = true;
+	private ServerSocket serverSocket = null;
+	private Path tokenFile = null;
+	private byte[] token = null;      // (what is in tokenFile)
+
+	// Statistics (guarded by "this"):
+	private long requestsServed = 0;
+	private final long[] latencies = new long[LATENCY_WINDOW];    // in nanoseconds (ring buffer)
+
+
+	CompileServer(int _port){
+		port = _port;
+	}
+
+	/** Where the token of the server listening on port is written */
+	static Path getTokenFile(int port){
+		return Paths.get(System.getProperty("user.home"), ".minijava-server-" + port + ".token");
+	}
+
+	void run() throws IOException {
+		ExecutorService executor = newRequestExecutor();
+		try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			serverSocket = socket;
+			tokenFile = getTokenFile(socket.getLocalPort());
+			token = writeToken(tokenFile);
+			System.out.println("MiniJava compile server listening on " + socket.getInetAddress().getHostAddress() + ":" + socket.getLocalPort()
+							   + " (token in " + tokenFile + ")");
+			while (running) {
+				Socket client;
+				try {
+					client = socket.accept();
+				} catch (SocketException ex) {
+					if (!running) break;    // closed by a "shutdown" request
+					throw ex;
+				}
+				executor.execute(() -> serve(client));
+			}
+		} finally {
+			executor.shutdown();
+			if (token != null) Files.deleteIfExists(tokenFile);
+		}
+		System.out.println("MiniJava compile server stopped after " + getRequestsServed() + " compile requests");
+	}
+
+	private void serve(Socket client){
+		try (Socket s = client;
+			 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+			 PrintStream out = new PrintStream(new BufferedOutputStream(s.getOutputStream()), false, "UTF-8")) {
+			String given = in.readLine();
+			if (given == null) return;
+			if (!MessageDigest.isEqual(given.trim().getBytes(StandardCharsets.UTF_8), token)) {
+				out.println("Invalid token (see " + tokenFile + ")");
+				out.println("#error");
+				return;
+			}
+			String request = in.readLine();
+			if (request == null) return;
+			request = request.trim();
+			if (request.startsWith("compile ")) {
+				long start = System.nanoTime();
+				boolean ok;
+				try {
+					ok = Main.compile(request.substring("compile ".length()).trim(), out);
+				} catch (RuntimeException | StackOverflowError ex) {
+					out.println("[x] Internal compiler error: " + ex);
+					ok = false;
+				}
+				out.println(ok ? "#ok" : "#error");
+				out.flush();
+				recordLatency(System.nanoTime() - start);
+			} else if (request.equals("stats")) {
+				out.println(getStatistics());
+			} else if (request.equals("shutdown")) {
+				out.println("#ok");
+				out.flush();
+				shutdown();
+			} else {
+				out.println("Unknown request \"" + request + "\"");
+				out.println("#error");
+			}
+		} catch (IOException ex) {
+			System.err.println("Could not serve request: " + ex.getMessage());
+		}
+	}
+
+	/** Writes a new random token to a file only its owner can read, returns it */
+	private static byte[] writeToken(Path file) throws IOException {
+		byte[] random = new byte[TOKEN_BYTES];
+		new SecureRandom().nextBytes(random);
+		StringBuilder hex = new StringBuilder();
+		for (byte b : random) hex.append(String.format("%02x", b));
+		byte[] token = hex.toString().getBytes(StandardCharsets.UTF_8);
+
+		// (!) never reuse a file that is already there: it could be readable by others or a link to another file
+		Files.deleteIfExists(file);
+		try {
+			Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch (UnsupportedOperationException ex) {    // not a POSIX file system
+			Files.createFile(file);
+			File f = file.toFile();
+			if (!(f.setReadable(false, false) && f.setWritable(false, false) && f.setReadable(true, true) && f.setWritable(true, true)))
+				throw new IOException("Could not make " + file + " readable only by its owner");
+		} catch (FileAlreadyExistsException ex) {
+			throw new IOException(file + " was created by someone else while starting the server");
+		}
+		Files.write(file, (hex + "\n").getBytes(StandardCharsets.UTF_8));
+		return token;
+	}
+
+	private void shutdown(){
+		running = false;
+		try {
+			if (serverSocket != null) serverSocket.close();
+		} catch (IOException ex) {
+			System.err.println(ex.getMessage());
+		}
+	}
+
+	private synchronized void recordLatency(long nanos){
+		latencies[(int) (requestsServed % LATENCY_WINDOW)] = nanos;
+		requestsServed++;
+	}
+
+	synchronized long getRequestsServed(){
+		return requestsServed;
+	}
+
+	synchronized String getStatistics(){
+		int n = (int) Math.min(requestsServed, LATENCY_WINDOW);
+		if (n == 0) return "requests served: 0";
+		long[] sorted = Arrays.copyOf(latencies, n);
+		Arrays.sort(sorted);
+		return "requests served: " + requestsServed +
+			   ", p50: " + formatMillis(percentile(sorted, 50)) +
+			   ", p99: " + formatMillis(percentile(sorted, 99));
+	}
+
+	private static long percentile(long[] sorted, int p){
+		int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static String formatMillis(long nanos){
+		return String.format("%.3f ms", nanos / 1e6);
+	}
+
+	private static ExecutorService newRequestExecutor(){
+		try {
+			// (!) looked up reflectively so that the server still builds and runs on Java versions older than 21
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package Compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/** The outcome of one Compiler.compile() call: the generated LLVM IR (only if compilation succeeded),
+ *  every diagnostic reported, the wall-clock time spent in each phase of the pipeline and some counters
+ *  gathered by the phases (e.g. how many types were created).
+ */
+public class CompilationResult {
+
+    public enum Phase {
+        PARSING, SYMBOL_TABLE, SEMANTIC_CHECKING, OFFSETS, CODE_GENERATION
+    }
+
+    public enum Kind {
+        LEXICAL_ERROR, SYNTAX_ERROR, SEMANTIC_ERROR
+    }
+
+    public static class Diagnostic {
+        private final Kind kind;
+        private final Phase phase;
+        private final String message;
+        private final int line;       // -1 if not known
+
+        public Diagnostic(Kind _kind, Phase _phase, String _message, int _line){
+            kind = _kind;
+            phase = _phase;
+            message = _message;
+            line = _line;
+        }
+
+        public Kind getKind() { return kind; }
+
+        public Phase getPhase() { return phase; }
+
+        public String getMessage() { return message; }
+
+        public int getLine() { return line; }
+
+        public String toString() {
+            return kind + (line > 0 ? " on line " + line : "") + ": " + message;
+        }
+    }
+
+    private String llvmIR = null;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private final Map<Phase, Long> phaseTimes = new EnumMap<>(Phase.class);     // phase -> nanoseconds
+    private final Map<String, Long> counters = new LinkedHashMap<>();           // counter name -> value (in the order they were set)
+
+
+    CompilationResult() { }
+
+    public boolean isSuccessful() { return llvmIR != null && diagnostics.isEmpty(); }
+
+    /** The generated LLVM IR, or null if compilation failed */
+    public String getLLVMIR() { return llvmIR; }
+
+    public List<Diagnostic> getDiagnostics() { return Collections.unmodifiableList(diagnostics); }
+
+    /** Phases that did not run (because an earlier one failed) are not included */
+    public Map<Phase, Long> getPhaseTimes() { return Collections.unmodifiableMap(phaseTimes); }
+
+    public long getPhaseTime(Phase phase) {
+        Long time = phaseTimes.get(phase);
+        return (time != null) ? time : 0;
+    }
+
+    public boolean hasReached(Phase phase) { return phaseTimes.containsKey(phase); }
+
+    public Map<String, Long> getCounters() { return Collections.unmodifiableMap(counters); }
+
+    public long getCounter(String name) {
+        Long value = counters.get(name);
+        return (value != null) ? value : 0;
+    }
+
+    void setLLVMIR(String _llvmIR) { llvmIR = _llvmIR; }
+
+    void addDiagnostic(Diagnostic diagnostic) { diagnostics.add(diagnostic); }
+
+    void setPhaseTime(Phase phase, long nanos) { phaseTimes.put(phase, nanos); }
+
+    void setCounter(String name, long value) { counters.put(name, value); }
+
+}
@@ -0,0 +1,207 @@
+package Compiler;
+
+import LLVMCodeGeneration.FileWritter;
+import LLVMCodeGeneration.LLVMCodeGeneratingVisitor;
+import Parser.MiniJavaParser;
+import Parser.ParseException;
+import Parser.TokenMgrError;
+import SemanticAnalysis.CreateSymbolTableVisitor;
+import SemanticAnalysis.SemanticCheckingVisitor;
+import SemanticAnalysis.SignatureScanner;
+import SymbolTable.ClassInfo;
+import SymbolTable.SymbolTable;
+import Util.MyPair;
+import Util.Names;
+import syntaxtree.Goal;
+import java.io.CharArrayReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/** Embeddable entry point to the whole compilation pipeline:
+ *    parse -> CreateSymbolTableVisitor -> SemanticCheckingVisitor -> calculateOffsets -> LLVMCodeGeneratingVisitor
+ *  (or, with fused checking, parse -> SignatureScanner -> SemanticCheckingVisitor -> ..., see setFusedChecking())
+ *  Nothing is printed and nothing is written to disk: the LLVM IR, the diagnostics and the per-phase timings
+ *  are all returned in a CompilationResult.
+ *
+ *  Every compile() call works on its own SymbolTable and visitors, so a single Compiler may be used
+ *  by many threads concurrently.
+ */
+public class Compiler {
+
+    private static final boolean DEBUG_MODE = false;    // set if you want to see debug information of the Symbol Table for correct inputs
+
+    // Parsers are not thread-safe, so each thread keeps its own one and re-initializes it for each new input
+    private static final ThreadLocal<MiniJavaParser> parsers = new ThreadLocal<>();
+
+    // TokenMgrError keeps the line of a lexical error only in its message (see TokenMgrError.LexicalError())
+    private static final Pattern LEXICAL_ERROR_LINE = Pattern.compile("^Lexical error at line (\\d+),");
+
+    private volatile int inlineBudget = LLVMCodeGeneratingVisitor.DEFAULT_INLINE_BUDGET;
+    private volatile boolean arenaAllocation = true;
+    private volatile long gcHeapLimit = 0;
+    private volatile boolean fusedChecking = false;
+
+    public Compiler() { }
+
+    /** Maximum size of the methods inlined by code generation (see LLVMCodeGeneratingVisitor), 0 disables inlining */
+    public void setInlineBudget(int budget) { inlineBudget = budget; }
+
+    /** Whether the generated code allocates from an arena (the default) or calls calloc for every object and array */
+    public void setArenaAllocation(boolean arena) { arenaAllocation = arena; }
+
+    /** Whether the generated code collects garbage (in a heap of at most heapLimit bytes) or never frees anything (0, the default) */
+    public void setGarbageCollection(long heapLimit) { gcHeapLimit = heapLimit; }
+
+    /** Whether the Symbol Table is filled by a SignatureScanner, reading only the declarations, so that the semantic
+     *  checks are the only traversal of the whole program (else by CreateSymbolTableVisitor, the default). Both find
+     *  the same errors and give the same code */
+    public void setFusedChecking(boolean fused) { fusedChecking = fused; }
+
+    public CompilationResult compile(String source){
+        return compile(new StringReader(source));
+    }
+
+    /** source must be UTF-8 encoded (only its remaining bytes are read and its position is not changed) */
+    public CompilationResult compile(ByteBuffer source){
+        CharBuffer chars = StandardCharsets.UTF_8.decode(source.duplicate());
+        return compile(new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining()));
+    }
+
+    public CompilationResult compile(Reader source){
+        CompilationResult result = new CompilationResult();
+
+        // Parse input
+        long start = System.nanoTime();
+        Goal root;
+        Names names = new Names();
+        try {
+            root = getParser(source, names).Goal();
+        }
+        catch (ParseException ex){
+            int line = (ex.currentToken != null && ex.currentToken.next != null) ? ex.currentToken.next.beginLine : -1;
+            result.addDiagnostic(new CompilationResult.Diagnostic(CompilationResult.Kind.SYNTAX_ERROR, CompilationResult.Phase.PARSING, ex.getMessage(), line));
+            return result;
+        }
+        catch (TokenMgrError ex){
+            Matcher line = LEXICAL_ERROR_LINE.matcher(ex.getMessage());
+            result.addDiagnostic(new CompilationResult.Diagnostic(CompilationResult.Kind.LEXICAL_ERROR, CompilationResult.Phase.PARSING, ex.getMessage(), line.find() ? Integer.parseInt(line.group(1)) : -1));
+            return result;
+        }
+        finally {
+            result.setPhaseTime(CompilationResult.Phase.PARSING, System.nanoTime() - start);
+        }
+
+        // Create Symbol Table with a first visitor who also catches some semantic errors (that need not the Symbol Table done),
+        // or with a scan of the declarations only
+        start = System.nanoTime();
+        SymbolTable symbolTable = new SymbolTable(names);
+        SignatureScanner signatures = null;
+        boolean declarationError;
+        String declarationErrorMsg;
+        int declarationErrorLine;
+        long declarationVisits;
+        if (fusedChecking) {
+            signatures = new SignatureScanner(symbolTable);
+            signatures.scan(root);
+            declarationError = signatures.detectedSemanticError;
+            declarationErrorMsg = signatures.errorMsg;
+            declarationErrorLine = signatures.errorLine;
+            declarationVisits = signatures.getNumberOfVisits();
+        } else {
+            CreateSymbolTableVisitor STVisitor = new CreateSymbolTableVisitor(symbolTable);
+            root.accept(STVisitor, null);
+            declarationError = STVisitor.detectedSemanticError;
+            declarationErrorMsg = STVisitor.errorMsg;
+            declarationErrorLine = STVisitor.errorLine;
+            declarationVisits = STVisitor.getNumberOfVisits();
+        }
+        result.setPhaseTime(CompilationResult.Phase.SYMBOL_TABLE, System.nanoTime() - start);
+        if (declarationError) {
+            result.addDiagnostic(new CompilationResult.Diagnostic(CompilationResult.Kind.SEMANTIC_ERROR, CompilationResult.Phase.SYMBOL_TABLE, declarationErrorMsg, declarationErrorLine));
+            return result;
+        }
+
+        // Then call a second visitor to check all the rest of semantic errors
+        start = System.nanoTime();
+        SemanticCheckingVisitor SCVisitor = new SemanticCheckingVisitor(symbolTable, signatures);
+        root.accept(SCVisitor, null);
+        result.setPhaseTime(CompilationResult.Phase.SEMANTIC_CHECKING, System.nanoTime() - start);
+        if (SCVisitor.detectedSemanticError) {
+            result.addDiagnostic(new CompilationResult.Diagnostic(CompilationResult.Kind.SEMANTIC_ERROR, CompilationResult.Phase.SEMANTIC_CHECKING, SCVisitor.errorMsg, SCVisitor.errorLine));
+            return result;
+        }
+
+        // calculate offsets
+        start = System.nanoTime();
+        symbolTable.calculateOffsets();
+        result.setPhaseTime(CompilationResult.Phase.OFFSETS, System.nanoTime() - start);
+
+        // Debug:
+        if (DEBUG_MODE) {
+            System.out.println("\nDebug Info is:");
+            symbolTable.printDebugInfo();
+        }
+
+        // Generate LLVM IR (in memory)
+        start = System.nanoTime();
+        FileWritter llvmIR = new FileWritter();
+        LLVMCodeGeneratingVisitor LLVMVisitor = new LLVMCodeGeneratingVisitor(symbolTable, llvmIR);
+        LLVMVisitor.setInlineBudget(inlineBudget);
+        LLVMVisitor.setArenaAllocation(arenaAllocation);
+        LLVMVisitor.setGarbageCollection(gcHeapLimit);
+        LLVMVisitor.setResolvedSymbols(SCVisitor.getResolvedSymbols());
+        root.accept(LLVMVisitor, null);
+        result.setLLVMIR(llvmIR.getOutput());
+        result.setPhaseTime(CompilationResult.Phase.CODE_GENERATION, System.nanoTime() - start);
+
+        // every type asked for used to be a new MiniJavaType
+        result.setCounter("types requested", symbolTable.getTypeRegistry().getNumberOfRequests());
+        result.setCounter("types created", symbolTable.getTypeRegistry().getNumberOfTypes());
+
+        // nodes of the syntax tree visited before code generation
+        result.setCounter("nodes visited for the symbol table", declarationVisits);
+        result.setCounter("nodes visited by the semantic checks", SCVisitor.getNumberOfVisits());
+
+        // names resolved by the semantic checks, that code generation does not look up again
+        result.setCounter("resolved names", SCVisitor.getResolvedSymbols().size());
+
+        // fields are reordered to make objects smaller (see ClassInfo.getFieldsInLayoutOrder())
+        for (MyPair<String, ClassInfo> c : symbolTable.getOrderedClasses()) {
+            result.setCounter("object size of " + c.getFirst(), c.getSecond().getObjectSize());
+            result.setCounter("object size of " + c.getFirst() + " in declaration order", c.getSecond().getObjectSizeInDeclarationOrder());
+        }
+
+        result.setCounter("method calls", LLVMVisitor.getNumberOfMethodCalls());
+        result.setCounter("devirtualized calls", LLVMVisitor.getNumberOfDevirtualizedCalls());
+        result.setCounter("inlined calls", LLVMVisitor.getNumberOfInlinedCalls());
+        result.setCounter("heap allocations", LLVMVisitor.getNumberOfHeapAllocations());
+        result.setCounter("heap allocations avoided", LLVMVisitor.getNumberOfStackAllocations());
+        result.setCounter("bounds checks", LLVMVisitor.getNumberOfBoundsChecks());
+        result.setCounter("bounds checks removed", LLVMVisitor.getNumberOfRemovedBoundsChecks());
+        for (Map.Entry<String, Integer> m : LLVMVisitor.getRemovedBoundsChecksPerMethod().entrySet()) {
+            result.setCounter("bounds checks removed in " + m.getKey(), m.getValue());
+        }
+
+        return result;
+    }
+
+    private static MiniJavaParser getParser(Reader source, Names names){
+        MiniJavaParser parser = parsers.get();
+        if (parser == null) {
+            parser = new MiniJavaParser(source);
+            parsers.set(parser);
+        } else {
+            parser.ReInit(source);
+        }
+        parser.setNames(names);
+        return parser;
+    }
+
+}
@@ -0,0 +1,135 @@
+package LLVMCodeGeneration;
+
+import syntaxtree.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/** The array accesses that are certain to run, one after the other, starting from a statement of a list of statements:
+ *  only assignments are looked at and the window ends before the first statement that may have an observable
+ *  effect (print, method call, object or array allocation that may fail with another message) or may not end (loop).
+ *  As nothing can be observed between them, the bounds checks of all accesses of the window to the same array with
+ *  indices "base + constant" can be done at once, at the first one of them, by only checking the lowest and the
+ *  highest index (an out of bounds access would end the program with the same message anyway).
+ *  Accesses are recognised syntactically: "x[i]", "x[c]", "x[(i + c)]" and "x[(c + i)]" with x and i identifiers
+ *  and c an integer literal; a statement assigning to x or i ends the window for them.
+ */
+class ArrayAccessWindow {
+
+    static final int MAX_STATEMENTS = 32;       // (keeps looking ahead linear in the number of statements)
+
+    private final Map<String, long[]> ranges = new HashMap<>();     // array + "[" + base -> {lowest, highest} offset
+
+
+    /** The window starting at the i-th statement of statements */
+    static ArrayAccessWindow of(NodeListOptional statements, int i) {
+        ArrayAccessWindow window = new ArrayAccessWindow();
+        Scanner scanner = new Scanner();
+        int end = Math.min(statements.size(), i + MAX_STATEMENTS);
+        for ( ; i < end ; i++) {
+            Node statement = ((Statement) statements.elementAt(i)).f0.choice;
+            if (!(statement instanceof AssignmentStatement) && !(statement instanceof ArrayAssignmentStatement)) break;
+            scanner.hasEffects = false;
+            scanner.accesses.clear();
+            scanner.scan(statement);
+            if (scanner.hasEffects) break;
+            for (String[] access : scanner.accesses) {
+                if (!scanner.killed.contains(access[0]) && !scanner.killed.contains(access[1])) window.add(access[0], access[1], Long.parseLong(access[2]));
+            }
+            if (statement instanceof AssignmentStatement) scanner.killed.add(((AssignmentStatement) statement).f0.f0.toString());
+        }
+        return window;
+    }
+
+    private void add(String array, String base, long offset) {
+        long[] range = ranges.get(array + "[" + base);
+        if (range == null) ranges.put(array + "[" + base, new long[] { offset, offset });
+        else {
+            range[0] = Math.min(range[0], offset);
+            range[1] = Math.max(range[1], offset);
+        }
+    }
+
+    /** {lowest, highest} offset accessed in array with the given base (RangeFacts.CONSTANT for constant indices) or null */
+    long[] getRange(String array, String base) { return ranges.get(array + "[" + base); }
+
+    /////////////////////////////
+    ///  Syntactic patterns   ///
+    /////////////////////////////
+
+    /** Name of the array of an access or null */
+    static String arrayName(PrimaryExpression array) {
+        return (array.f0.choice instanceof Identifier) ? ((Identifier) array.f0.choice).f0.toString() : null;
+    }
+
+    /** {base, offset} of an index or null: a sum of an identifier and integer literals, one at each "+" */
+    static String[] index(Node index) {
+        Node e = unbracket(index);
+        if (e instanceof IntegerLiteral) return new String[] { RangeFacts.CONSTANT, ((IntegerLiteral) e).f0.toString() };
+        long offset = 0;
+        while (e instanceof PlusExpression) {
+            Node left = unbracket(((PlusExpression) e).f0);
+            Node right = unbracket(((PlusExpression) e).f2);
+            if ((left instanceof IntegerLiteral) == (right instanceof IntegerLiteral)) return null;
+            IntegerLiteral literal = (IntegerLiteral) ((left instanceof IntegerLiteral) ? left : right);
+            offset += Long.parseLong(literal.f0.toString());
+            e = (literal == left) ? right : left;
+        }
+        if (e instanceof Identifier) return new String[] { ((Identifier) e).f0.toString(), String.valueOf(offset) };
+        return null;
+    }
+
+    /** What an Expression or PrimaryExpression is, without the brackets around it: a PrimaryExpression's choice or
+     *  any other expression (AndExpression, PlusExpression, ..., NotExpression) */
+    static Node unbracket(Node n) {
+        while (true) {
+            if (n instanceof Expression) n = ((Expression) n).f0.choice;
+            else if (n instanceof Clause) n = ((Clause) n).f0.choice;
+            else if (n instanceof PrimaryExpression) n = ((PrimaryExpression) n).f0.choice;
+            else if (n instanceof BracketExpression) n = ((BracketExpression) n).f1;
+            else return n;
+        }
+    }
+
+    /** Collects the accesses of one statement that always run (not the ones in the right part of a "&&"): the context
+     *  is the number of right parts of "&&" around the node visited */
+    private static class Scanner extends SyntaxScanner {
+        private final Set<String> killed = new HashSet<>();
+        private final ArrayList<String[]> accesses = new ArrayList<>();
+        private boolean hasEffects = false;
+
+        private void add(String array, String[] index) {
+            if (context == 0 && array != null && index != null) accesses.add(new String[] { array, index[0], index[1] });
+        }
+
+        public void visit(ArrayAssignmentStatement n) {
+            n.f2.accept(this);
+            n.f5.accept(this);
+            add(n.f0.f0.toString(), index(n.f2));
+        }
+
+        public void visit(ArrayLookup n) {
+            n.f0.accept(this);
+            n.f2.accept(this);
+            add(arrayName(n.f0), index(n.f2));
+        }
+
+        public void visit(AndExpression n) {
+            n.f0.accept(this);
+            context++;
+            n.f2.accept(this);
+            context--;
+        }
+
+        public void visit(MessageSend n) { hasEffects = true; }
+
+        public void visit(ArrayAllocationExpression n) { hasEffects = true; }
+
+        public void visit(AllocationExpression n) { hasEffects = true; }
+    }
+
+}
@@ -0,0 +1,115 @@
+package LLVMCodeGeneration;
+
+import syntaxtree.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/** Collects the names of all variables and fields assigned to (not array elements) in a loop and whether it calls
+ *  any method, so that phi nodes can be placed at the loop's header before its body is generated and it is known
+ *  which field values loaded before the loop are still valid in it.
+ *  Also tells which variables are only ever incremented ("i = i + c") in it, i.e. candidate induction variables.
+ *  An outermost loop is scanned once for all the loops in it: each loop first gets what is directly in it, then,
+ *  innermost loops first, what each loop has is added to the loop around it.
+ */
+class AssignedVariablesCollector extends SyntaxScanner {
+
+    /** What a loop (and the loops in it) assigns and calls */
+    static class Loop {
+        private final Loop outer;
+        private Map<String, Integer> firstAssignments = new HashMap<>();    // name -> number of its first assignment in the loop
+        private final Set<String> assigned = new HashSet<>();
+        private final Set<String> notIncremented = new HashSet<>();
+        private boolean callsMethods = false;
+
+        private Loop(Loop _outer) { outer = _outer; }
+
+        Set<String> getAssigned() { return assigned; }
+
+        boolean callsMethods() { return callsMethods; }
+
+        boolean isOnlyIncremented(String name) { return assigned.contains(name) && !notIncremented.contains(name); }
+    }
+
+    private final Map<WhileStatement, Loop> loops;
+    private final ArrayList<Loop> scanned = new ArrayList<>();     // in program order, the context is the innermost loop's index + 1
+    private int assignments = 0;
+
+
+    private AssignedVariablesCollector(Map<WhileStatement, Loop> _loops) { loops = _loops; }
+
+    /** The loop n, scanning it (and every loop in it) into loops the first time */
+    static Loop collect(WhileStatement n, Map<WhileStatement, Loop> loops) {
+        Loop loop = loops.get(n);
+        if (loop != null) return loop;
+
+        AssignedVariablesCollector collector = new AssignedVariablesCollector(loops);
+        collector.scan(n);
+        for (int i = collector.scanned.size() - 1 ; i >= 0 ; i--) {
+            Loop inner = collector.scanned.get(i);
+            // (in the order they are first assigned in the program, as a scan of this loop alone would add them)
+            ArrayList<Map.Entry<String, Integer>> names = new ArrayList<>(inner.firstAssignments.entrySet());
+            names.sort(Map.Entry.comparingByValue());
+            for (Map.Entry<String, Integer> name : names) inner.assigned.add(name.getKey());
+            if (inner.outer != null) {
+                for (Map.Entry<String, Integer> name : names) inner.outer.firstAssignments.merge(name.getKey(), name.getValue(), Math::min);
+                inner.outer.notIncremented.addAll(inner.notIncremented);
+                inner.outer.callsMethods |= inner.callsMethods;
+            }
+            inner.firstAssignments = null;
+        }
+        return loops.get(n);
+    }
+
+    private Loop current() { return scanned.get(context - 1); }
+
+    /**
+     * f0 -> "while"
+     * f1 -> "("
+     * f2 -> Expression()
+     * f3 -> ")"
+     * f4 -> Statement()
+     */
+    public void visit(WhileStatement n) {
+        Loop loop = new Loop((context > 0) ? current() : null);
+        scanned.add(loop);
+        loops.put(n, loop);
+        int outer = context;
+        context = scanned.size();
+        n.f2.accept(this);
+        n.f4.accept(this);
+        context = outer;
+    }
+
+    /**
+     * f0 -> Identifier()
+     * f1 -> "="
+     * f2 -> Expression()
+     * f3 -> ";"
+     */
+    public void visit(AssignmentStatement n) {
+        String name = n.f0.f0.toString();
+        Loop loop = current();
+        loop.firstAssignments.putIfAbsent(name, assignments++);
+        String[] value = ArrayAccessWindow.index(n.f2);
+        if (value == null || !value[0].equals(name)) loop.notIncremented.add(name);
+        n.f2.accept(this);
+    }
+
+    /**
+     * f0 -> PrimaryExpression()
+     * f1 -> "."
+     * f2 -> Identifier()
+     * f3 -> "("
+     * f4 -> ( ExpressionList() )?
+     * f5 -> ")"
+     */
+    public void visit(MessageSend n) {
+        current().callsMethods = true;
+    }
+
+}
@@ -0,0 +1,258 @@
+package LLVMCodeGeneration;
+
+import SemanticAnalysis.ResolvedSymbols;
+import SymbolTable.ClassInfo;
+import SymbolTable.MethodInfo;
+import SymbolTable.SymbolTable;
+import Util.NameToken;
+import syntaxtree.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/** Finds the object and array allocations whose value never outlives the method that allocates it, so that they can
+ *  be allocated in its stack frame instead of the heap (see LLVMCodeGeneratingVisitor).
+ *  A value escapes if it may be stored in a field, returned, or passed (as argument or as "this") to a call that lets
+ *  it escape, or if it may be assigned to a local variable whose value escapes (flow-insensitively: any use of the
+ *  variable anywhere in the method counts). Whether a method lets "this" and each argument escape is a summary found
+ *  for every method at once by iterating until nothing changes; calls that are not resolved by class hierarchy
+ *  analysis (see ClassLayout.hasSingleImplementation()) let everything passed to them escape.
+ *  Allocations in loops are never put in the stack (the same slot can not be reused by each iteration).
+ */
+class EscapeAnalysis {
+
+    static final int MAX_STACK_OBJECT_SIZE = 256;       // in bytes (vtable pointer included)
+    static final int MAX_STACK_ARRAY_LENGTH = 64;
+
+    private static final String THIS = "this";          // (can not be the name of a variable)
+
+    private final ResolvedSymbols resolved;
+    private final Map<MethodInfo, boolean[]> summaries = new HashMap<>();  // method -> does {this, 1st arg, 2nd arg, ...} escape
+    private final Set<Node> stackAllocations = new HashSet<>();
+
+
+    private EscapeAnalysis(ResolvedSymbols _resolved) { resolved = _resolved; }
+
+    static EscapeAnalysis analyze(Goal n, SymbolTable ST, ResolvedSymbols resolved) {
+        EscapeAnalysis analysis = new EscapeAnalysis(resolved);
+
+        // every method (main as well) with its class
+        List<MethodDeclaration> methods = new ArrayList<>();
+        List<ClassInfo> classes = new ArrayList<>();
+        for (Node t : n.f1.nodes) {
+            Node declaration = ((TypeDeclaration) t).f0.choice;
+            NodeListOptional classMethods;
+            ClassInfo classInfo;
+            if (declaration instanceof ClassDeclaration) {
+                classInfo = ST.lookupClass(NameToken.of(((ClassDeclaration) declaration).f1));
+                classMethods = ((ClassDeclaration) declaration).f4;
+            } else {
+                classInfo = ST.lookupClass(NameToken.of(((ClassExtendsDeclaration) declaration).f1));
+                classMethods = ((ClassExtendsDeclaration) declaration).f6;
+            }
+            for (Node m : classMethods.nodes) {
+                methods.add((MethodDeclaration) m);
+                classes.add(classInfo);
+            }
+        }
+
+        // every method is only scanned once, its calls are kept to find what escapes through them once the summaries are known
+        List<MethodScanner> scanners = new ArrayList<>();
+        for (int i = 0 ; i < methods.size() ; i++) {
+            MethodDeclaration method = methods.get(i);
+            MethodInfo methodInfo = classes.get(i).getMethodInfo(NameToken.of(method.f2));
+            MethodScanner scanner = analysis.new MethodScanner(classes.get(i), methodInfo);
+            scanner.scan(method.f8);
+            scanner.scan(method.f10);
+            scanner.escape(scanner.sources(method.f10));
+            scanners.add(scanner);
+            analysis.summaries.put(methodInfo, new boolean[methodInfo.getNumberOfArguments() + 1]);
+        }
+        MethodScanner mainScanner = analysis.new MethodScanner(ST.getMainClassInfo(), ST.getMainMethodInfo());
+        mainScanner.scan(n.f0.f15);
+
+        // summaries start out optimistic (nothing escapes) and only grow
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (MethodScanner scanner : scanners) {
+                scanner.solve();
+                MethodInfo methodInfo = scanner.methodInfo;
+                boolean[] summary = new boolean[methodInfo.getNumberOfArguments() + 1];
+                summary[0] = scanner.escaping.contains(THIS);
+                for (int a = 0 ; a < methodInfo.getNumberOfArguments() ; a++) {
+                    summary[a + 1] = scanner.escaping.contains(methodInfo.getArgList().get(a).getFirst());
+                }
+                if (!Arrays.equals(summary, analysis.summaries.put(methodInfo, summary))) changed = true;
+            }
+        }
+        mainScanner.solve();
+        scanners.add(mainScanner);
+
+        for (MethodScanner scanner : scanners) {
+            for (Node allocation : scanner.allocations) {
+                if (!scanner.escaping.contains(allocation)) analysis.stackAllocations.add(allocation);
+            }
+        }
+        return analysis;
+    }
+
+    /** true if the value of an AllocationExpression or ArrayAllocationExpression does not escape its method, it is not
+     *  allocated in a loop and it is small enough to be allocated in the stack */
+    boolean canAllocateInStack(Node allocation) { return stackAllocations.contains(allocation); }
+
+    boolean hasStackAllocations() { return !stackAllocations.isEmpty(); }
+
+    /** Collects, for one method, the values that escape and which values each local variable may be assigned.
+     *  Values are allocation nodes, names of variables (the value they hold) and THIS.
+     *  The context is the number of loops around the node visited. */
+    private class MethodScanner extends SyntaxScanner {
+        private final ClassInfo classInfo;
+        private final MethodInfo methodInfo;
+        private final Map<String, Set<Object>> assigned = new HashMap<>();   // local variable -> values assigned to it
+        private final Set<Object> escapingAnyway = new HashSet<>();          // (whatever the summaries)
+        private final List<MethodInfo> callees = new ArrayList<>();          // calls resolved by CHA: the method called
+        private final List<List<Set<Object>>> passed = new ArrayList<>();    // and the values passed as {this, 1st arg, ...}
+        private Set<Object> escaping = null;                                 // (see solve())
+        private final List<Node> allocations = new ArrayList<>();            // (only the ones that may go in the stack)
+
+        MethodScanner(ClassInfo _classInfo, MethodInfo _methodInfo) {
+            classInfo = _classInfo;
+            methodInfo = _methodInfo;
+        }
+
+        void escape(Set<Object> values) { escapingAnyway.addAll(values); }
+
+        /** Finds everything that escapes with the current summaries: whatever is assigned to an escaping variable escapes as well */
+        void solve() {
+            escaping = new HashSet<>(escapingAnyway);
+            for (int c = 0 ; c < callees.size() ; c++) {
+                boolean[] summary = summaries.get(callees.get(c));
+                List<Set<Object>> values = passed.get(c);
+                for (int k = 0 ; k < values.size() ; k++) {
+                    if (summary == null || k >= summary.length || summary[k]) escaping.addAll(values.get(k));
+                }
+            }
+            Deque<Object> worklist = new ArrayDeque<>(escaping);
+            while (!worklist.isEmpty()) {
+                Set<Object> values = assigned.get(worklist.pop());
+                if (values == null) continue;
+                for (Object v : values) {
+                    if (escaping.add(v)) worklist.push(v);
+                }
+            }
+        }
+
+        /** The values an expression may evaluate to (only the ones that may hold an allocation of this method) */
+        Set<Object> sources(Node n) {
+            Set<Object> values = new HashSet<>();
+            Node p = ArrayAccessWindow.unbracket(n);
+            if (p instanceof AllocationExpression || p instanceof ArrayAllocationExpression) values.add(p);
+            else if (p instanceof ThisExpression) values.add(THIS);
+            else if (p instanceof Identifier && isLocal((Identifier) p)) values.add(((Identifier) p).f0.toString());
+            return values;
+        }
+
+        /** Whether a variable is a local variable (or an argument) of the method, else it is a field */
+        private boolean isLocal(Identifier n) {
+            ResolvedSymbols.Storage storage = resolved.getStorage(resolved.getVariable(n));
+            return storage != null && storage != ResolvedSymbols.Storage.FIELD;
+        }
+
+        /** The method called, if it is known (see ClassLayout.hasSingleImplementation()) */
+        private MethodInfo resolve(MessageSend n) {
+            ClassInfo receiverClass = resolved.getReceiverClass(n);
+            int methodId = NameToken.of(n.f2);
+            if (receiverClass == null || !receiverClass.getLayout().hasSingleImplementation(methodId)) return null;
+            return receiverClass.getLayout().getMethod(methodId);
+        }
+
+        /**
+         * f0 -> Identifier()
+         * f1 -> "="
+         * f2 -> Expression()
+         * f3 -> ";"
+         */
+        public void visit(AssignmentStatement n) {
+            String name = n.f0.f0.toString();
+            if (isLocal(n.f0)) assigned.computeIfAbsent(name, k -> new HashSet<>()).addAll(sources(n.f2));
+            else escape(sources(n.f2));     // (field)
+            n.f2.accept(this);
+        }
+
+        /**
+         * f0 -> "while"
+         * f1 -> "("
+         * f2 -> Expression()
+         * f3 -> ")"
+         * f4 -> Statement()
+         */
+        public void visit(WhileStatement n) {
+            context++;
+            n.f2.accept(this);
+            n.f4.accept(this);
+            context--;
+        }
+
+        /**
+         * f0 -> PrimaryExpression()
+         * f1 -> "."
+         * f2 -> Identifier()
+         * f3 -> "("
+         * f4 -> ( ExpressionList() )?
+         * f5 -> ")"
+         */
+        public void visit(MessageSend n) {
+            n.f0.accept(this);
+            n.f4.accept(this);
+            List<Set<Object>> values = new ArrayList<>();
+            values.add(sources(n.f0));
+            if (n.f4.present()) {
+                ExpressionList args = (ExpressionList) n.f4.node;
+                values.add(sources(args.f0));
+                for (int i = 0 ; i < args.f1.f0.size() ; i++) values.add(sources(((ExpressionTerm) args.f1.f0.elementAt(i)).f1));
+            }
+            MethodInfo callee = resolve(n);
+            if (callee == null) {
+                for (Set<Object> v : values) escape(v);
+            } else {
+                callees.add(callee);
+                passed.add(values);
+            }
+        }
+
+        /**
+         * f0 -> "new"
+         * f1 -> Identifier()
+         * f2 -> "("
+         * f3 -> ")"
+         */
+        public void visit(AllocationExpression n) {
+            ClassInfo allocated = resolved.getAllocatedClass(n);
+            if (context == 0 && allocated != null && allocated.getNextFieldOffset() + 8 <= MAX_STACK_OBJECT_SIZE) allocations.add(n);
+        }
+
+        /**
+         * f0 -> "new"
+         * f1 -> "int"
+         * f2 -> "["
+         * f3 -> Expression()
+         * f4 -> "]"
+         */
+        public void visit(ArrayAllocationExpression n) {
+            n.f3.accept(this);
+            String[] length = ArrayAccessWindow.index(n.f3);
+            if (context == 0 && length != null && length[0].equals(RangeFacts.CONSTANT)
+                    && Long.parseLong(length[1]) >= 0 && Long.parseLong(length[1]) <= MAX_STACK_ARRAY_LENGTH) allocations.add(n);
+        }
+    }
+
+}
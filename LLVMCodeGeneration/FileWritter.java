@@ -1,41 +1,214 @@
 package LLVMCodeGeneration;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 
+/** Buffered emitter for the generated code.
+ *  Everything emitted is appended to a reusable char buffer (numbers are formatted straight into it)
+ *  which is only flushed to the output in large chunks: either through a channel (file or stream output)
+ *  or to an in-memory sink.
+ *  All emit() methods return this writter so that one instruction can be emitted by chaining them,
+ *  without building its text with String concatenations first.
+ */
 public class FileWritter {
 
-    FileOutputStream out = null;
+    private static final int BUFFER_SIZE = 1 << 16;     // in chars
+    private static final int MEMORY_BUFFER_SIZE = 1 << 10;     // (for in-memory output, there may be one per nested loop)
+
+    private final char[] buffer;
+    private int length = 0;
+
+    // Output (only one of them is used):
+    private WritableByteChannel channel = null;
+    private boolean inMemory = false;
+    private Chunk first = null, last = null;        // (in-memory output)
+
+    // (only used for channel output)
+    private CharsetEncoder encoder = null;
+    private ByteBuffer bytes = null;
+
+    // Statistics:
+    private long numberOfWrites = 0;
+    private long bytesWritten = 0;
+
+
+    /** Keeps the output in memory (see getOutput()) */
+    public FileWritter(){
+        buffer = new char[MEMORY_BUFFER_SIZE];
+        inMemory = true;
+    }
 
     public FileWritter(String filename){
+        buffer = new char[BUFFER_SIZE];
         try {
-            out = new FileOutputStream(filename);
-        } catch (FileNotFoundException e) {
+            setChannel(FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        } catch (IOException e) {
             e.printStackTrace();
             System.err.println("Could not find/create output file");
         }
     }
 
-    public void emit(String output){
-        if (out == null) return;
+    public FileWritter(OutputStream out){
+        buffer = new char[BUFFER_SIZE];
+        setChannel(Channels.newChannel(out));
+    }
+
+    private void setChannel(WritableByteChannel _channel){
+        channel = _channel;
+        encoder = StandardCharsets.UTF_8.newEncoder();
+        bytes = ByteBuffer.allocate((int) (BUFFER_SIZE * encoder.maxBytesPerChar()));
+    }
+
+    public FileWritter emit(String output){
+        int len = output.length();
+        int pos = 0;
+        while (len - pos > buffer.length - length){        // (only for very long strings)
+            int chunk = buffer.length - length;
+            output.getChars(pos, pos + chunk, buffer, length);
+            length += chunk;
+            pos += chunk;
+            flush();
+        }
+        output.getChars(pos, len, buffer, length);
+        length += len - pos;
+        return this;
+    }
+
+    public FileWritter emit(char c){
+        if (length == buffer.length) flush();
+        buffer[length++] = c;
+        return this;
+    }
+
+    public FileWritter emit(int i){
+        if (buffer.length - length < 11) flush();     // 11 = max chars of an int
+        if (i < 0){
+            if (i == Integer.MIN_VALUE) return emit("-2147483648");
+            buffer[length++] = '-';
+            i = -i;
+        }
+        // write digits in reverse order and then reverse them in place
+        int start = length;
+        do {
+            buffer[length++] = (char) ('0' + i % 10);
+            i /= 10;
+        } while (i != 0);
+        for (int l = start, r = length - 1 ; l < r ; l++, r--){
+            char temp = buffer[l];
+            buffer[l] = buffer[r];
+            buffer[r] = temp;
+        }
+        return this;
+    }
+
+    /** Moves everything emitted so far to an in-memory writter (e.g. code generated ahead of where it belongs) to this one.
+     *  Into another in-memory writter the code is not copied, so code moved out of nested loops costs nothing. */
+    public FileWritter emitAndClear(FileWritter code){
+        code.flush();
+        if (inMemory){
+            flush();
+            if (code.first != null){
+                if (first == null) first = code.first;
+                else last.next = code.first;
+                last = code.last;
+            }
+        } else {
+            for (Chunk c = code.first ; c != null ; c = c.next){
+                int len = c.chars.length();
+                int pos = 0;
+                while (pos < len){
+                    if (length == buffer.length) flush();
+                    int chunk = Math.min(len - pos, buffer.length - length);
+                    c.chars.getChars(pos, pos + chunk, buffer, length);
+                    length += chunk;
+                    pos += chunk;
+                }
+            }
+        }
+        code.first = code.last = null;
+        return this;
+    }
+
+    /** Drops everything emitted so far (only for in-memory output) */
+    public void clear(){
+        length = 0;
+        first = last = null;
+    }
+
+    private void flush(){
+        if (inMemory){
+            if (length == 0) return;
+            if (last == null) first = last = new Chunk();
+            last.chars.append(buffer, 0, length);
+            length = 0;
+            return;
+        }
+        if (channel == null){   // (could not open output)
+            length = 0;
+            return;
+        }
+        CharBuffer chars = CharBuffer.wrap(buffer, 0, length);
+        encoder.encode(chars, bytes, false);
+        bytes.flip();
         try {
-            out.write(output.getBytes());
+            while (bytes.hasRemaining()){
+                bytesWritten += channel.write(bytes);
+                numberOfWrites++;
+            }
         } catch (IOException e) {
             e.printStackTrace();
             System.err.println("Could not emit to output file");
         }
+        bytes.clear();
+        // (!) keep any char the encoder could not consume yet (half of a surrogate pair)
+        int remaining = chars.remaining();
+        System.arraycopy(buffer, chars.position(), buffer, 0, remaining);
+        length = remaining;
     }
 
     public void close(){
-        if (out == null) return;
+        flush();
+        if (channel == null) return;
         try {
-            out.close();
+            channel.close();
         } catch (IOException e) {
             e.printStackTrace();
             System.err.println("Could not close output file");
         }
     }
 
+    /** Everything emitted so far (only for in-memory output) */
+    public String getOutput(){
+        if (!inMemory) return null;
+        flush();
+        if (first == null) return "";
+        if (first == last) return first.chars.toString();
+        int len = 0;
+        for (Chunk c = first ; c != null ; c = c.next) len += c.chars.length();
+        StringBuilder output = new StringBuilder(len);
+        for (Chunk c = first ; c != null ; c = c.next) output.append(c.chars);
+        return output.toString();
+    }
+
+    /** Number of write calls made to the output channel so far */
+    public long getNumberOfWrites() { return numberOfWrites; }
+
+    public long getBytesWritten() { return bytesWritten; }
+
+    /** A part of the in-memory output, in a list with the ones that follow it */
+    private static class Chunk {
+        private final StringBuilder chars = new StringBuilder(MEMORY_BUFFER_SIZE);
+        private Chunk next = null;
+    }
+
 }
@@ -0,0 +1,321 @@
+package LLVMCodeGeneration;
+
+import MiniJavaType.TypeEnum;
+import SymbolTable.ClassInfo;
+import SymbolTable.VariableInfo;
+import Util.MyPair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/** LLVM IR of the (optional) mark-sweep garbage collector that the generated code links to, see LLVMCodeGeneratingVisitor.
+ *
+ *  Every object and array allocated by @gc_alloc gets a header in front of it: the next object allocated before it
+ *  (all objects are kept in a list for the sweep), its size in bytes (header included, the lowest bit is the mark)
+ *  and its pointer map (null for int arrays): {number of fields that point to objects or arrays, their offsets}.
+ *  The roots are found in the shadow stack: each function that holds objects or arrays across a call or an
+ *  allocation has a frame of slots in its stack frame {previous frame, number of slots, slot 1, slot 2, ...} that
+ *  it keeps up to date at those points, and @gc_top is the frame of the function running.
+ *  A collection happens when the heap would grow past its threshold, which is twice the size of what survived the
+ *  last collection (at least GC_INITIAL_THRESHOLD) but never more than the heap limit: if even after a collection
+ *  an allocation does not fit in the limit, the program stops with "Out of memory".
+ */
+class GarbageCollectorRuntime {
+
+    static final int HEADER_SIZE = 24;                  // {i8* next, i64 size | mark, i32* pointer map}
+    static final long GC_INITIAL_THRESHOLD = 4 << 20;   // in bytes
+
+    private GarbageCollectorRuntime() { }
+
+    static void emit(FileWritter out, long heapLimit){
+        long threshold = Math.min(GC_INITIAL_THRESHOLD, heapLimit);
+        String report = "GC: %lld collections, pause %lld us total, %lld us max, heap limit %lld KB, max heap %lld KB\n";
+
+        out.emit("declare i8* @realloc(i8*, i64)\n" +
+                "declare void @free(i8*)\n" +
+                "declare i64 @clock()\n" +
+                "declare i32 @dprintf(i32, i8*, ...)\n" +
+                "\n" +
+                "@gc_top = internal global i8** null\n" +
+                "@gc_objects = internal global i8* null\n" +
+                "@gc_heap_size = internal global i64 0\n" +
+                "@gc_max_heap_size = internal global i64 0\n" +
+                "@gc_threshold = internal global i64 ").emit(Long.toString(threshold)).emit("\n" +
+                "@gc_heap_limit = internal global i64 ").emit(Long.toString(heapLimit)).emit("\n" +
+                "@gc_collections = internal global i64 0\n" +
+                "@gc_pause_total = internal global i64 0\n" +
+                "@gc_pause_max = internal global i64 0\n" +
+                "@gc_stack = internal global i8** null\n" +          // (of objects marked whose fields are not yet)
+                "@gc_stack_depth = internal global i64 0\n" +
+                "@gc_stack_capacity = internal global i64 0\n" +
+                "@_cGCOOM = constant [15 x i8] c\"Out of memory\\0a\\00\"\n" +
+                "@_cGCReport = constant [").emit(report.length() + 1).emit(" x i8] c\"").emit(report.replace("\n", "\\0a")).emit("\\00\"\n\n");
+
+        // size (a multiple of 8) bytes, zeroed
+        out.emit("define i8* @gc_alloc(i64 %size, i32* %map) {\n" +
+                "    %_total = add i64 %size, " + HEADER_SIZE + "\n" +
+                "    %_heap = load i64, i64* @gc_heap_size\n" +
+                "    %_after = add i64 %_heap, %_total\n" +
+                "    %_threshold = load i64, i64* @gc_threshold\n" +
+                "    %_full = icmp ugt i64 %_after, %_threshold\n" +
+                "    br i1 %_full, label %collect, label %allocate\n" +
+                "collect:\n" +
+                "    call void @gc_collect(i64 %_total)\n" +
+                "    br label %allocate\n" +
+                "allocate:\n" +
+                "    %_words64 = lshr i64 %_total, 3\n" +
+                "    %_words = trunc i64 %_words64 to i32\n" +
+                "    %_mem = call i8* @calloc(i32 8, i32 %_words)\n" +
+                "    %_failed = icmp eq i8* %_mem, null\n" +
+                "    br i1 %_failed, label %out_of_memory, label %allocated\n" +
+                "out_of_memory:\n" +
+                "    call void @gc_out_of_memory()\n" +
+                "    unreachable\n" +
+                "allocated:\n" +
+                "    %_first = load i8*, i8** @gc_objects\n" +
+                "    %_nextp = bitcast i8* %_mem to i8**\n" +
+                "    store i8* %_first, i8** %_nextp\n" +
+                "    store i8* %_mem, i8** @gc_objects\n" +
+                "    %_sizep8 = getelementptr i8, i8* %_mem, i64 8\n" +
+                "    %_sizep = bitcast i8* %_sizep8 to i64*\n" +
+                "    store i64 %_total, i64* %_sizep\n" +
+                "    %_mapp8 = getelementptr i8, i8* %_mem, i64 16\n" +
+                "    %_mapp = bitcast i8* %_mapp8 to i32**\n" +
+                "    store i32* %map, i32** %_mapp\n" +
+                "    %_heap_now = load i64, i64* @gc_heap_size\n" +
+                "    %_heap_new = add i64 %_heap_now, %_total\n" +
+                "    store i64 %_heap_new, i64* @gc_heap_size\n" +
+                "    %_max = load i64, i64* @gc_max_heap_size\n" +
+                "    %_grew = icmp ugt i64 %_heap_new, %_max\n" +
+                "    %_max_new = select i1 %_grew, i64 %_heap_new, i64 %_max\n" +
+                "    store i64 %_max_new, i64* @gc_max_heap_size\n" +
+                "    %_obj = getelementptr i8, i8* %_mem, i64 " + HEADER_SIZE + "\n" +
+                "    ret i8* %_obj\n" +
+                "}\n\n");
+
+        // mark everything reachable from the slots of every frame, then free everything not marked
+        out.emit("define void @gc_collect(i64 %request) {\n" +
+                "entry:\n" +
+                "    %_start = call i64 @clock()\n" +
+                "    %_top = load i8**, i8*** @gc_top\n" +
+                "    br label %frames\n" +
+                "frames:\n" +
+                "    %_frame = phi i8** [ %_top, %entry ], [ %_link, %frame_done ]\n" +
+                "    %_more_frames = icmp ne i8** %_frame, null\n" +
+                "    br i1 %_more_frames, label %frame, label %sweep\n" +
+                "frame:\n" +
+                "    %_countp = getelementptr i8*, i8** %_frame, i64 1\n" +
+                "    %_countv = load i8*, i8** %_countp\n" +
+                "    %_count = ptrtoint i8* %_countv to i64\n" +
+                "    br label %roots\n" +
+                "roots:\n" +
+                "    %_i = phi i64 [ 0, %frame ], [ %_i1, %root ]\n" +
+                "    %_more_roots = icmp ult i64 %_i, %_count\n" +
+                "    br i1 %_more_roots, label %root, label %frame_done\n" +
+                "root:\n" +
+                "    %_slot_index = add i64 %_i, 2\n" +
+                "    %_slot = getelementptr i8*, i8** %_frame, i64 %_slot_index\n" +
+                "    %_root = load i8*, i8** %_slot\n" +
+                "    call void @gc_mark(i8* %_root)\n" +
+                "    %_i1 = add i64 %_i, 1\n" +
+                "    br label %roots\n" +
+                "frame_done:\n" +
+                "    %_linkv = load i8*, i8** %_frame\n" +
+                "    %_link = bitcast i8* %_linkv to i8**\n" +
+                "    br label %frames\n" +
+                "sweep:\n" +
+                "    br label %sweep_loop\n" +
+                "sweep_loop:\n" +
+                "    %_linkp = phi i8** [ @gc_objects, %sweep ], [ %_kept_link, %keep ], [ %_linkp, %free ]\n" +
+                "    %_live = phi i64 [ 0, %sweep ], [ %_live1, %keep ], [ %_live, %free ]\n" +
+                "    %_object = load i8*, i8** %_linkp\n" +
+                "    %_swept = icmp eq i8* %_object, null\n" +
+                "    br i1 %_swept, label %swept, label %check\n" +
+                "check:\n" +
+                "    %_sizep8 = getelementptr i8, i8* %_object, i64 8\n" +
+                "    %_sizep = bitcast i8* %_sizep8 to i64*\n" +
+                "    %_size = load i64, i64* %_sizep\n" +
+                "    %_mark = and i64 %_size, 1\n" +
+                "    %_marked = icmp ne i64 %_mark, 0\n" +
+                "    br i1 %_marked, label %keep, label %free\n" +
+                "keep:\n" +
+                "    %_unmarked = xor i64 %_size, 1\n" +
+                "    store i64 %_unmarked, i64* %_sizep\n" +
+                "    %_live1 = add i64 %_live, %_unmarked\n" +
+                "    %_kept_link = bitcast i8* %_object to i8**\n" +
+                "    br label %sweep_loop\n" +
+                "free:\n" +
+                "    %_nextp = bitcast i8* %_object to i8**\n" +
+                "    %_next = load i8*, i8** %_nextp\n" +
+                "    store i8* %_next, i8** %_linkp\n" +
+                "    call void @free(i8* %_object)\n" +
+                "    br label %sweep_loop\n" +
+                "swept:\n" +
+                "    store i64 %_live, i64* @gc_heap_size\n" +
+                "    %_twice = shl i64 %_live, 1\n" +
+                "    %_small = icmp ult i64 %_twice, ").emit(Long.toString(threshold)).emit("\n" +
+                "    %_grown = select i1 %_small, i64 ").emit(Long.toString(threshold)).emit(", i64 %_twice\n" +
+                "    %_limit = load i64, i64* @gc_heap_limit\n" +
+                "    %_over = icmp ugt i64 %_grown, %_limit\n" +
+                "    %_threshold = select i1 %_over, i64 %_limit, i64 %_grown\n" +
+                "    store i64 %_threshold, i64* @gc_threshold\n" +
+                "    %_end = call i64 @clock()\n" +
+                "    %_pause = sub i64 %_end, %_start\n" +
+                "    %_collections = load i64, i64* @gc_collections\n" +
+                "    %_collections1 = add i64 %_collections, 1\n" +
+                "    store i64 %_collections1, i64* @gc_collections\n" +
+                "    %_total = load i64, i64* @gc_pause_total\n" +
+                "    %_total1 = add i64 %_total, %_pause\n" +
+                "    store i64 %_total1, i64* @gc_pause_total\n" +
+                "    %_pause_max = load i64, i64* @gc_pause_max\n" +
+                "    %_longer = icmp ugt i64 %_pause, %_pause_max\n" +
+                "    %_pause_max1 = select i1 %_longer, i64 %_pause, i64 %_pause_max\n" +
+                "    store i64 %_pause_max1, i64* @gc_pause_max\n" +
+                "    %_needed = add i64 %_live, %request\n" +
+                "    %_fits = icmp ule i64 %_needed, %_limit\n" +
+                "    br i1 %_fits, label %done, label %out_of_memory\n" +
+                "out_of_memory:\n" +
+                "    call void @gc_out_of_memory()\n" +
+                "    unreachable\n" +
+                "done:\n" +
+                "    ret void\n" +
+                "}\n\n");
+
+        // marks an object (or nothing for null) and everything reachable from it, with an explicit stack
+        out.emit("define void @gc_mark(i8* %root) {\n" +
+                "entry:\n" +
+                "    %_null = icmp eq i8* %root, null\n" +
+                "    br i1 %_null, label %done, label %push_root\n" +
+                "push_root:\n" +
+                "    call void @gc_push(i8* %root)\n" +
+                "    br label %loop\n" +
+                "loop:\n" +
+                "    %_depth = load i64, i64* @gc_stack_depth\n" +
+                "    %_empty = icmp eq i64 %_depth, 0\n" +
+                "    br i1 %_empty, label %done, label %pop\n" +
+                "pop:\n" +
+                "    %_top = sub i64 %_depth, 1\n" +
+                "    store i64 %_top, i64* @gc_stack_depth\n" +
+                "    %_stack = load i8**, i8*** @gc_stack\n" +
+                "    %_topp = getelementptr i8*, i8** %_stack, i64 %_top\n" +
+                "    %_obj = load i8*, i8** %_topp\n" +
+                "    %_sizep8 = getelementptr i8, i8* %_obj, i64 -16\n" +
+                "    %_sizep = bitcast i8* %_sizep8 to i64*\n" +
+                "    %_size = load i64, i64* %_sizep\n" +
+                "    %_mark = and i64 %_size, 1\n" +
+                "    %_marked = icmp ne i64 %_mark, 0\n" +
+                "    br i1 %_marked, label %loop, label %mark\n" +
+                "mark:\n" +
+                "    %_size_marked = or i64 %_size, 1\n" +
+                "    store i64 %_size_marked, i64* %_sizep\n" +
+                "    %_mapp8 = getelementptr i8, i8* %_obj, i64 -8\n" +
+                "    %_mapp = bitcast i8* %_mapp8 to i32**\n" +
+                "    %_map = load i32*, i32** %_mapp\n" +
+                "    %_no_map = icmp eq i32* %_map, null\n" +
+                "    br i1 %_no_map, label %loop, label %fields\n" +
+                "fields:\n" +
+                "    %_n = load i32, i32* %_map\n" +
+                "    br label %field_loop\n" +
+                "field_loop:\n" +
+                "    %_f = phi i32 [ 0, %fields ], [ %_f1, %field ], [ %_f1, %push_child ]\n" +
+                "    %_more = icmp slt i32 %_f, %_n\n" +
+                "    br i1 %_more, label %field, label %loop\n" +
+                "field:\n" +
+                "    %_f1 = add i32 %_f, 1\n" +
+                "    %_offp = getelementptr i32, i32* %_map, i32 %_f1\n" +
+                "    %_off = load i32, i32* %_offp\n" +
+                "    %_fieldp8 = getelementptr i8, i8* %_obj, i32 %_off\n" +
+                "    %_fieldp = bitcast i8* %_fieldp8 to i8**\n" +
+                "    %_child = load i8*, i8** %_fieldp\n" +
+                "    %_no_child = icmp eq i8* %_child, null\n" +
+                "    br i1 %_no_child, label %field_loop, label %push_child\n" +
+                "push_child:\n" +
+                "    call void @gc_push(i8* %_child)\n" +
+                "    br label %field_loop\n" +
+                "done:\n" +
+                "    ret void\n" +
+                "}\n\n");
+
+        out.emit("define void @gc_push(i8* %obj) {\n" +
+                "entry:\n" +
+                "    %_depth = load i64, i64* @gc_stack_depth\n" +
+                "    %_capacity = load i64, i64* @gc_stack_capacity\n" +
+                "    %_full = icmp eq i64 %_depth, %_capacity\n" +
+                "    br i1 %_full, label %grow, label %push\n" +
+                "grow:\n" +
+                "    %_none = icmp eq i64 %_capacity, 0\n" +
+                "    %_doubled = shl i64 %_capacity, 1\n" +
+                "    %_capacity1 = select i1 %_none, i64 1024, i64 %_doubled\n" +
+                "    %_bytes = shl i64 %_capacity1, 3\n" +
+                "    %_old = load i8**, i8*** @gc_stack\n" +
+                "    %_old8 = bitcast i8** %_old to i8*\n" +
+                "    %_new8 = call i8* @realloc(i8* %_old8, i64 %_bytes)\n" +
+                "    %_failed = icmp eq i8* %_new8, null\n" +
+                "    br i1 %_failed, label %out_of_memory, label %grown\n" +
+                "out_of_memory:\n" +
+                "    call void @gc_out_of_memory()\n" +
+                "    unreachable\n" +
+                "grown:\n" +
+                "    %_new = bitcast i8* %_new8 to i8**\n" +
+                "    store i8** %_new, i8*** @gc_stack\n" +
+                "    store i64 %_capacity1, i64* @gc_stack_capacity\n" +
+                "    br label %push\n" +
+                "push:\n" +
+                "    %_stack = load i8**, i8*** @gc_stack\n" +
+                "    %_slot = getelementptr i8*, i8** %_stack, i64 %_depth\n" +
+                "    store i8* %obj, i8** %_slot\n" +
+                "    %_depth1 = add i64 %_depth, 1\n" +
+                "    store i64 %_depth1, i64* @gc_stack_depth\n" +
+                "    ret void\n" +
+                "}\n\n");
+
+        out.emit("define void @gc_out_of_memory() {\n" +
+                "    call void @print_flush()\n" +
+                "    %_str = bitcast [15 x i8]* @_cGCOOM to i8*\n" +
+                "    call i32 (i8*, ...) @printf(i8* %_str)\n" +
+                "    call void @exit(i32 1)\n" +
+                "    ret void\n" +
+                "}\n\n");
+
+        // (to stderr, so that the output of the program is not changed)
+        out.emit("define void @gc_report() {\n" +
+                "    %_str = bitcast [").emit(report.length() + 1).emit(" x i8]* @_cGCReport to i8*\n" +
+                "    %_collections = load i64, i64* @gc_collections\n" +
+                "    %_pause_total = load i64, i64* @gc_pause_total\n" +
+                "    %_pause_max = load i64, i64* @gc_pause_max\n" +
+                "    %_limit = load i64, i64* @gc_heap_limit\n" +
+                "    %_limit_kb = lshr i64 %_limit, 10\n" +
+                "    %_max = load i64, i64* @gc_max_heap_size\n" +
+                "    %_max_kb = lshr i64 %_max, 10\n" +
+                "    call i32 (i32, i8*, ...) @dprintf(i32 2, i8* %_str, i64 %_collections, i64 %_pause_total, i64 %_pause_max, i64 %_limit_kb, i64 %_max_kb)\n" +
+                "    ret void\n" +
+                "}\n\n");
+    }
+
+    /** The pointer map of a class: offsets (from the start of the object) of its fields and inherited ones that hold an
+     *  object or an array, as a global @.<class>_ptrmap of type [getPointerMapLength() x i32] */
+    static String generatePointerMapForClass(String className, ClassInfo classInfo){
+        List<Integer> offsets = getPointerFieldOffsets(classInfo);
+        StringBuilder sb = new StringBuilder();
+        sb.append("@.").append(className).append("_ptrmap = constant [").append(offsets.size() + 1).append(" x i32] [i32 ").append(offsets.size());
+        for (int offset : offsets) sb.append(", i32 ").append(offset);
+        return sb.append("]").toString();
+    }
+
+    static int getPointerMapLength(ClassInfo classInfo){
+        return getPointerFieldOffsets(classInfo).size() + 1;
+    }
+
+    private static List<Integer> getPointerFieldOffsets(ClassInfo classInfo){
+        List<Integer> offsets = new ArrayList<>();
+        for (ClassInfo c = classInfo ; c != null ; c = c.getMotherClass()){
+            for (MyPair<String, VariableInfo> f : c.getOrderedFields()){
+                TypeEnum type = f.getSecond().getType().getTypeEnum();
+                if (type == TypeEnum.CUSTOM || type == TypeEnum.INTARRAY) offsets.add(8 + f.getSecond().getOffset());   // + 8 for the vtable pointer
+            }
+        }
+        return offsets;
+    }
+
+}
@@ -0,0 +1,70 @@
+package LLVMCodeGeneration;
+
+import SymbolTable.ClassInfo;
+import SymbolTable.MethodInfo;
+import SymbolTable.SymbolTable;
+import Util.NameToken;
+import syntaxtree.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/** The declaration of every method, so that the code of a method can be generated again at a call site, and its size:
+ *  the number of statements and expressions in it (including the returned one), which is roughly what it costs to
+ *  inline it. A getter ("return x;") has size 1.
+ */
+class InlineCandidates {
+
+    private final Map<MethodInfo, MethodDeclaration> declarations = new HashMap<>();
+    private final Map<MethodInfo, Integer> sizes = new HashMap<>();
+
+
+    static InlineCandidates collect(Goal n, SymbolTable ST) {
+        InlineCandidates candidates = new InlineCandidates();
+        for (Node t : n.f1.nodes) {
+            Node declaration = ((TypeDeclaration) t).f0.choice;
+            ClassInfo classInfo;
+            NodeListOptional methods;
+            if (declaration instanceof ClassDeclaration) {
+                classInfo = ST.lookupClass(NameToken.of(((ClassDeclaration) declaration).f1));
+                methods = ((ClassDeclaration) declaration).f4;
+            } else {
+                classInfo = ST.lookupClass(NameToken.of(((ClassExtendsDeclaration) declaration).f1));
+                methods = ((ClassExtendsDeclaration) declaration).f6;
+            }
+            for (Node m : methods.nodes) {
+                MethodDeclaration method = (MethodDeclaration) m;
+                MethodInfo methodInfo = classInfo.getMethodInfo(NameToken.of(method.f2));
+                SizeCounter counter = new SizeCounter();
+                counter.scan(method.f8);
+                counter.scan(method.f10);
+                candidates.declarations.put(methodInfo, method);
+                candidates.sizes.put(methodInfo, counter.size);
+            }
+        }
+        return candidates;
+    }
+
+    MethodDeclaration getDeclaration(MethodInfo methodInfo) { return declarations.get(methodInfo); }
+
+    int getSize(MethodInfo methodInfo) {
+        Integer size = sizes.get(methodInfo);
+        return (size != null) ? size : Integer.MAX_VALUE;
+    }
+
+    private static class SizeCounter extends SyntaxScanner {
+        private int size = 0;
+
+        public void visit(Statement n) {
+            size++;
+            super.visit(n);
+        }
+
+        public void visit(Expression n) {
+            size++;
+            super.visit(n);
+        }
+    }
+
+}
@@ -1,49 +1,48 @@
 package LLVMCodeGeneration;
 
+import MiniJavaType.MiniJavaType;
 import SymbolTable.ClassInfo;
+import SymbolTable.ClassLayout;
 import SymbolTable.MethodInfo;
-import Util.MyPair;
 
 
 public class LLVMCodeGenerating {
 
     public static String getMethodType(String className, String methodName, MethodInfo methodInfo){
-        String sig = methodInfo.getReturnType().getLLVMType();
-        int argnum = methodInfo.getNumberOfArguments();
-        sig += " (i8*";    // "this" ptr
-        for (int i = 0 ; i < argnum ; i++){
-            sig += ", " + methodInfo.getArgumentInfoAtPos(i).getType().getLLVMType();
-        }
-        sig += ")*";
-        if (className != null && methodName != null) {
-            sig += " @" + className + "." + methodName;
-        }
-        return sig;
+        if (className == null || methodName == null) return methodInfo.getLLVMType();
+        return methodInfo.getLLVMType() + " @" + className + "." + methodName;
     }
 
     ///////////////////////////////////////////////////////////////////////
 
     public static String generateVTableForClass(String className, ClassInfo classInfo){  // (should not be used for main class)
-        String out = "@." + className + "_vtable = global ";
-        out += "[" + classInfo.getTotalNumberOfMethods() + " x i8*] [";
-        String currClassName = className;
-        ClassInfo currClass = classInfo;
-        String[] VTable = new String[classInfo.getTotalNumberOfMethods()];
-        for (int i = 0 ; i < VTable.length ; i++) VTable[i] = null;
-        while (currClass != null){
-            for (MyPair<String, MethodInfo> m : currClass.getOrderedMethods()){
-                if (!m.getFirst().equals("main") && VTable[m.getSecond().getOffset() / 8] == null){   // if not added before (by an override)
-                    VTable[m.getSecond().getOffset() / 8] = "i8* bitcast (" + getMethodType(currClassName, m.getFirst(), m.getSecond()) + " to i8*)";
-                }
-            }
-            currClassName = currClass.getMotherClassName();
-            currClass = currClass.getMotherClass();
+        StringBuilder out = new StringBuilder("@.").append(className).append("_vtable = global ");
+        out.append('[').append(classInfo.getTotalNumberOfMethods()).append(" x i8*] [");
+        ClassLayout layout = classInfo.getLayout();
+        for (int i = 0 ; i < layout.getVTableSize() ; i++) {
+            if (i > 0) out.append(", ");
+            out.append("i8* bitcast (").append(layout.getVTableMethod(i).getLLVMType()).append(" @").append(layout.getVTableMethodClassName(i))
+               .append('.').append(layout.getVTableMethodName(i)).append(" to i8*)");
         }
-        for (int i = 0 ; i < VTable.length ; i++) {
-            out += ((i > 0) ? ", " : "") + VTable[i];
+        out.append(']');
+        return out.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
+    public static String getStructType(String className){
+        return "%class." + className;
+    }
+
+    /** The vtable pointer, then the fields of the mother classes (so that an object of a subclass starts like one of its
+     *  mother class) and then the class's own ones, in the order of their offsets (see ClassInfo.getFieldsInLayoutOrder()) */
+    public static String generateStructTypeForClass(String className, ClassInfo classInfo){
+        StringBuilder out = new StringBuilder(getStructType(className)).append(" = type { i8**");
+        for (MiniJavaType type : classInfo.getLayout().getFieldTypesInLayoutOrder()){
+            out.append(", ").append(type.getLLVMType());
         }
-        out += "]";
-        return out;
+        out.append(" }");
+        return out.toString();
     }
 
 }
@@ -1,12 +1,21 @@
 package LLVMCodeGeneration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import MiniJavaType.*;
-import SemanticAnalysis.SemanticChecks;
+import SemanticAnalysis.ResolvedSymbols;
+import SemanticAnalysis.SemanticCheckingVisitor;
 import SymbolTable.*;
-import Util.ExtendedVisitorParameterInfo;
+import Util.ExpressionWalker;
 import Util.ExtendedVisitorReturnInfo;
 import Util.MyPair;
+import Util.NameToken;
+import Util.Names;
 import Util.VisitorParameterInfo;
 import visitor.GJDepthFirst;
 import syntaxtree.*;
@@ -17,58 +26,175 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
     private static final boolean EMIT_COMMENTS = false;
     private FileWritter out;
     private final SymbolTable ST;
+    private ResolvedSymbols resolved = null;            // what the semantic checks resolved every name to
     private LLVMNameGenerator nameGenerator;
 
+    // SSA construction: local variables and arguments are never stored in memory (no allocas), instead the
+    // value currently held by each one is tracked while generating code and phi nodes are placed where
+    // control flow joins (after an if-else and at the header of a while loop).
+    private Map<String, String> localValues = null;     // local variable or argument -> its current SSA value (register or constant)
+    private String currentLabel = null;                 // label of the basic block being emitted (needed for phi nodes)
+    private final Map<WhileStatement, AssignedVariablesCollector.Loop> loops = new HashMap<>();   // (see AssignedVariablesCollector)
+    private final ArrayList<FileWritter> loopBodyBuffers = new ArrayList<>();   // one per while loop nesting level (reused)
+    private int loopDepth = 0;
+
+    // Bounds check elimination: an array access needs no check if RangeFacts can tell its index is in bounds.
+    // The facts come from loop and if conditions, from the checks already done (and merged, see ArrayAccessWindow)
+    // and from int[] fields of "this" not being loaded again while they can not have changed.
+    private RangeFacts facts = null;
+    private Map<String, String> fieldValues = null;                // int[] field -> its value (until a call or a store to it)
+    private final Map<String, ArrayList<String[]>> comparisons = new HashMap<>();  // i1 register -> the {a, b} that are a < b if it is true
+    private final Map<WhileStatement, Set<String>> notInductionVariables = new HashMap<>();   // (see visit(WhileStatement))
+    private NodeListOptional currentStatements = null;             // the list of statements being generated
+    private int currentStatementIndex = 0;
+    private ArrayAccessWindow currentWindow = null;                // (of the current statement, when needed)
+    private int boundsChecks = 0, removedBoundsChecks = 0;        // (of the current method)
+    private long totalBoundsChecks = 0, totalRemovedBoundsChecks = 0;
+    private final Map<String, Integer> removedBoundsChecksPerMethod = new LinkedHashMap<>();
+
+    // Devirtualization: calls to methods that no subclass of the receiver's static type overrides are direct calls
+    private long methodCalls = 0, devirtualizedCalls = 0;
+
+    // Inlining: the code of small methods called directly is generated at the call site instead, with their own
+    // local variables (localValues) and "this" (thisValue). A method is inlined if its size (see InlineCandidates)
+    // is within the budget, which grows with the loop depth of the call site (calls in loops run more often).
+    public static final int DEFAULT_INLINE_BUDGET = 12;
+    private static final int MAX_INLINE_DEPTH = 4;              // (methods inlined in inlined methods and so on)
+    private static final int MAX_INLINE_LOOP_DEPTH = 3;
+    private int inlineBudget = DEFAULT_INLINE_BUDGET;           // (0 disables inlining)
+    private InlineCandidates inlineCandidates = null;
+    private final ArrayList<MethodInfo> inlinedMethods = new ArrayList<>();    // the method being generated, then the ones inlined into it
+    private String thisValue = "%this";
+    private long inlinedCalls = 0;
+    private final Map<MethodInfo, VisitorParameterInfo> inlinedScopes = new HashMap<>();   // (the scope of an inlined body, made once)
+
+    // Stack allocation: objects and small arrays that do not escape (see EscapeAnalysis) and are allocated outside of
+    // loops get a slot in the stack frame instead of a calloc. Slots are allocas in the entry block (so that LLVM can
+    // break them into scalars), which is only emitted once the body of the function has been generated into a buffer.
+    private EscapeAnalysis escapeAnalysis = null;
+    private FileWritter functionOut = null;                                 // (where the function goes once generated)
+    private final FileWritter functionBody = new FileWritter();
+    private final FileWritter entryAllocations = new FileWritter();
+    private long heapAllocations = 0, stackAllocations = 0;
+
+    // Heap: nothing is ever freed, so the heap is an arena. Objects and arrays are bump allocated from chunks mapped
+    // with mmap (whose pages the kernel zeroes lazily, on first touch), with the fast path inlined at each allocation
+    // and @heap_alloc_slow only called to map a new chunk. Large arrays get a mapping of their own.
+    public static final int HEAP_CHUNK_SIZE = 1 << 20;          // in bytes
+    public static final int LARGE_ALLOCATION_SIZE = 1 << 16;    // (larger than this: not taken from the chunk)
+    private boolean useArena = true;                            // (false: calloc each object and array)
+
+    // Garbage collection (optional, see GarbageCollectorRuntime): objects and arrays held in SSA registers are roots
+    // that the collector could not find, so at every safepoint (a call or an allocation, which may collect) the ones
+    // the function still needs are stored in the slots of its shadow stack frame: the current values of its object and
+    // array variables, "this" and the temporaries of the expression being generated (e.g. the receiver of a call while
+    // its arguments are generated). Not inlining and not allocating in the stack keeps all of them in sight.
+    public static final long DEFAULT_GC_HEAP_LIMIT = 1L << 30;   // in bytes
+    private long gcHeapLimit = 0;                               // (0: no garbage collection)
+    private MethodInfo currentMethodInfo = null;
+    private final Map<String, Integer> rootSlots = new HashMap<>();        // variable, "this" or "#<n>" (temporary n) -> its slot
+    private final Map<Integer, String> rootedValues = new HashMap<>();     // slot -> value stored in it (in the current block)
+    private final ArrayList<ExtendedVisitorReturnInfo> pendingRoots = new ArrayList<>();   // temporaries that are used after the next safepoint
+
+    // Expressions and statements are generated without recursion, so that programs nested to any depth can be compiled:
+    // expressions are walked by an ExpressionWalker (the parts that emit code before or between their operands do it
+    // when it tells them an operand is generated) and what is left to generate of the statements is kept in a stack.
+    private final ExpressionWalker<ExtendedVisitorReturnInfo, VisitorParameterInfo> expressions = new ExpressionWalker<ExtendedVisitorReturnInfo, VisitorParameterInfo>(this) {
+        protected void enter(Frame frame, VisitorParameterInfo argu) {
+            if (frame.getNode() instanceof AndExpression) startAnd(frame);
+            else if (frame.getNode() instanceof MessageSend && EMIT_COMMENTS) out.emit("    ; method call\n");
+        }
+
+        protected boolean visited(Frame frame, int i, ExtendedVisitorReturnInfo value, VisitorParameterInfo argu) {
+            if (frame.getNode() instanceof AndExpression && i == 0) startRightClause(frame, value);
+            else if (frame.getNode() instanceof ArrayLookup && i == 0) {
+                frame.mark = pendingRoots.size();
+                addPendingRoot(value);     // (needed after its index is generated)
+            }
+            else if (frame.getNode() instanceof MessageSend) {
+                if (i == 0) return startCall((MessageSend) frame.getNode(), frame, value);
+                addPendingRoot(value);
+            }
+            return true;
+        }
+    };
+    private final ArrayList<Runnable> pendingStatements = new ArrayList<>();   // (see visitStatements(), the next one last)
+
 
     public LLVMCodeGeneratingVisitor(SymbolTable _ST, String outputFilename){
+        this(_ST, new FileWritter(outputFilename));
+    }
+
+    public LLVMCodeGeneratingVisitor(SymbolTable _ST, FileWritter _out){
         ST = _ST;
-        out = new FileWritter(outputFilename);
+        out = _out;
         nameGenerator = new LLVMNameGenerator();
     }
 
+    /** Maximum size of an inlined method called outside loops (see InlineCandidates), 0 for no inlining */
+    public void setInlineBudget(int budget) { inlineBudget = budget; }
+
+    /** Whether objects and arrays are allocated from the arena (the default) or with calloc */
+    public void setArenaAllocation(boolean arena) { useArena = arena; }
+
+    /** Collect garbage in a heap of at most heapLimit bytes (0, the default: never free anything) */
+    public void setGarbageCollection(long heapLimit) { gcHeapLimit = heapLimit; }
+
+    /** The names of the program as resolved by the semantic checks (if not given they are checked again to find them) */
+    public void setResolvedSymbols(ResolvedSymbols _resolved) { resolved = _resolved; }
+
     /**
      * f0 -> MainClass()
      * f1 -> ( TypeDeclaration() )*
      * f2 -> <EOF>
      */
     public ExtendedVisitorReturnInfo visit(Goal n, VisitorParameterInfo argu) {
+        if (resolved == null) {
+            SemanticCheckingVisitor SCVisitor = new SemanticCheckingVisitor(ST);
+            n.accept(SCVisitor, null);
+            resolved = SCVisitor.getResolvedSymbols();
+        }
+        if (inlineBudget > 0 && gcHeapLimit == 0) inlineCandidates = InlineCandidates.collect(n, ST);
+        if (gcHeapLimit == 0) {
+            escapeAnalysis = EscapeAnalysis.analyze(n, ST, resolved);
+            if (!escapeAnalysis.hasStackAllocations()) escapeAnalysis = null;
+        }
+
+        // generate the struct type of the objects of every class (the main class has no fields)
+        for (MyPair<String, ClassInfo> c : ST.getOrderedClasses()){
+            out.emit(LLVMCodeGenerating.generateStructTypeForClass(c.getFirst(), c.getSecond())).emit('\n');
+        }
 
         // generate VTable for main and all other classes
-        out.emit( "@." + ST.getMainClassName() + "_vtable = global [0 x i8*] []\n");
+        out.emit("@.").emit(ST.getMainClassName()).emit("_vtable = global [0 x i8*] []\n");
         for (MyPair<String, ClassInfo> c : ST.getOrderedClasses()){
-            out.emit(LLVMCodeGenerating.generateVTableForClass(c.getFirst(), c.getSecond()) + "\n");
+            out.emit(LLVMCodeGenerating.generateVTableForClass(c.getFirst(), c.getSecond())).emit('\n');
         }
 
-        // emit global utility code
+        // emit global utility code (printing and the runtime errors are in the runtime module, Resources/runtime.ll)
         out.emit("\ndeclare i8* @calloc(i32, i32)\n" +
+                "declare void @llvm.memset.p0i8.i32(i8*, i8, i32, i1)\n" +
                 "declare i32 @printf(i8*, ...)\n" +
                 "declare void @exit(i32)\n" +
-                "\n" +
-                "@_cint = constant [4 x i8] c\"%d\\0a\\00\"\n" +
-                "@_cOOB = constant [15 x i8] c\"Out of bounds\\0a\\00\"\n" +
-                "@_cNAL = constant [23 x i8] c\"Negative array length\\0a\\00\"\n\n" +
-                "define void @print_int(i32 %i) {\n" +
-                "    %_str = bitcast [4 x i8]* @_cint to i8*\n" +
-                "    call i32 (i8*, ...) @printf(i8* %_str, i32 %i)\n" +
-                "    ret void\n" +
-                "}\n\n" +
-                "define void @throw_oob() {\n" +
-                "    %_str = bitcast [15 x i8]* @_cOOB to i8*\n" +
-                "    call i32 (i8*, ...) @printf(i8* %_str)\n" +
-                "    call void @exit(i32 1)\n" +
-                "    ret void\n" +
-                "}\n\n" +
-                "define void @throw_nal() {\n" +
-                "    %_str = bitcast [23 x i8]* @_cNAL to i8*\n" +
-                "    call i32 (i8*, ...) @printf(i8* %_str)\n" +
-                "    call void @exit(i32 1)\n" +
-                "    ret void\n" +
-                "}\n\n");
+                "declare void @print_int(i32)\n" +
+                "declare void @print_flush()\n" +
+                "declare void @throw_oob()\n" +
+                "declare void @throw_nal()\n\n");
+        if (gcHeapLimit > 0) {
+            GarbageCollectorRuntime.emit(out, gcHeapLimit);
+            out.emit("@.").emit(ST.getMainClassName()).emit("_ptrmap = constant [1 x i32] [i32 0]\n");    // (no fields)
+            for (MyPair<String, ClassInfo> c : ST.getOrderedClasses()){
+                out.emit(GarbageCollectorRuntime.generatePointerMapForClass(c.getFirst(), c.getSecond())).emit('\n');
+            }
+            out.emit('\n');
+        }
+        else if (useArena) emitArenaRuntime();
 
         n.f0.accept(this, argu);
         n.f1.accept(this, argu);
         n.f2.accept(this, argu);
 
+        if (useArena && gcHeapLimit == 0) out.emit("!0 = !{!\"branch_weights\", i32 1000, i32 1}\n");   // (the fast path of emitHeapAllocation())
         out.close();    // close file writter
 
         return null;
@@ -97,16 +223,18 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
     public ExtendedVisitorReturnInfo visit(MainClass n, VisitorParameterInfo argu) {
 
         out.emit("define i32 @main() {\n");
+        startFunctionBody(ST.getMainMethodInfo());
 
-        // allocate space for local main variables (order does not matter)
-        for ( Map.Entry<String, VariableInfo> v : ST.getMainClassInfo().getMethodInfo("main").getVariablesMap().entrySet() ){
-            out.emit("    %" + v.getKey() + " = alloca " + v.getValue().getType().getLLVMType() + "\n");
-        }
-
-        n.f14.accept(this, new VisitorParameterInfo("main", ST.getMainClassName(), "main"));
-        n.f15.accept(this, new VisitorParameterInfo("main", ST.getMainClassName(), "main"));
+        VisitorParameterInfo mainScope = new VisitorParameterInfo("main", ST.getMainClassName(), VisitorParameterInfo.Scope.MAIN, ST.getMainClassInfo(), ST.getMainMethodInfo());
+        n.f14.accept(this, mainScope);
+        visitStatements(n.f15, mainScope);
 
-        out.emit("    ret i32 0\n}\n\n");
+        emitFramePop();
+        if (gcHeapLimit > 0) out.emit("    call void @gc_report()\n");
+        out.emit("    call void @print_flush()\n");
+        out.emit("    ret i32 0\n");
+        endFunctionBody("main");
+        out.emit("}\n\n");
 
         return null;
     }
@@ -130,8 +258,10 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
     public ExtendedVisitorReturnInfo visit(ClassDeclaration n, VisitorParameterInfo argu) {
         ExtendedVisitorReturnInfo r1 = n.f1.accept(this, argu);
         if (r1 == null) return null;
-        n.f3.accept(this, new VisitorParameterInfo(r1.getName(), "method"));
-        n.f4.accept(this, new VisitorParameterInfo(r1.getName(), "method"));
+        ClassInfo classInfo = ST.lookupClass(NameToken.of(n.f1));
+        VisitorParameterInfo classScope = new VisitorParameterInfo(r1.getName(), null, VisitorParameterInfo.Scope.CLASS, classInfo, null);
+        n.f3.accept(this, classScope);
+        n.f4.accept(this, classScope);
         return null;
     }
 
@@ -148,8 +278,10 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
     public ExtendedVisitorReturnInfo visit(ClassExtendsDeclaration n, VisitorParameterInfo argu) {
         ExtendedVisitorReturnInfo r1 = n.f1.accept(this, argu);
         if (r1 == null) return null;
-        n.f5.accept(this, new VisitorParameterInfo(r1.getName(), "method"));
-        n.f6.accept(this, new VisitorParameterInfo(r1.getName(), "method"));
+        ClassInfo classInfo = ST.lookupClass(NameToken.of(n.f1));
+        VisitorParameterInfo classScope = new VisitorParameterInfo(r1.getName(), null, VisitorParameterInfo.Scope.CLASS, classInfo, null);
+        n.f5.accept(this, classScope);
+        n.f6.accept(this, classScope);
         return null;
     }
 
@@ -175,32 +307,26 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
         ExtendedVisitorReturnInfo r2 = n.f2.accept(this, argu);
         if (r2 == null) return null;
 
-        MethodInfo methodInfo = ST.lookupMethod(argu.getName(), r2.getName());
+        MethodInfo methodInfo = argu.getClassInfo().getMethodInfo(NameToken.of(n.f2));
         if (methodInfo == null) return null;
 
-        out.emit("define " + methodInfo.getReturnType().getLLVMType() + " @" + argu.getName() + "." + r2.getName() + "(i8* %this");
+        out.emit("define ").emit(methodInfo.getReturnType().getLLVMType()).emit(" @").emit(argu.getName()).emit(".").emit(r2.getName()).emit("(i8* %this");
 
-        n.f4.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(), "method"));    // emits parameter code
+        VisitorParameterInfo methodScope = new VisitorParameterInfo(r2.getName(), argu.getName(), VisitorParameterInfo.Scope.METHOD, argu.getClassInfo(), methodInfo);
+        n.f4.accept(this, methodScope);    // emits parameter code
 
         out.emit(") {\n");
+        startFunctionBody(methodInfo);
 
-        // allocate space for arguments and local variables alike (order does not matter)
-        for ( Map.Entry<String, VariableInfo> v : methodInfo.getVariablesMap().entrySet() ){
-        	out.emit("    %" + v.getKey() + " = alloca " + v.getValue().getType().getLLVMType() + "\n");
-        }
-
-        // argument values must be stored from call args (order does not matter
-        for ( MyPair<String, VariableInfo> v : methodInfo.getArgList() ){
-        	out.emit("    store " + v.getSecond().getType().getLLVMType() + " %." + v.getFirst() + ", " + v.getSecond().getType().getLLVMType() + "* %" + v.getFirst() + "\n");
-        }
-
-        n.f8.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(), "method"));    // emits method code
+        visitStatements(n.f8, methodScope);    // emits method code
 
-        ExtendedVisitorReturnInfo r10 = n.f10.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(), "method"));
+        ExtendedVisitorReturnInfo r10 = n.f10.accept(this, methodScope);
         if (r10 == null) return null;
 
         // Note: what if return type is an object? -> we have to return a reference
-        out.emit("    ret " + methodInfo.getReturnType().getLLVMType() + " " + r10.getResultVarNameOrConstant() + "\n");
+        emitFramePop();
+        out.emit("    ret ").emit(methodInfo.getReturnType().getLLVMType()).emit(" ").emit(r10.getResultVarNameOrConstant()).emit('\n');
+        endFunctionBody(argu.getName() + "." + r2.getName());
         out.emit("}\n\n");
 
         return null;
@@ -215,7 +341,7 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
         ExtendedVisitorReturnInfo r1 = n.f1.accept(this, argu);
         if (r0 == null || r1 == null) return null;
 
-        out.emit(", " + r0.getType().getLLVMType() + " %." + r1.getName());
+        out.emit(", ").emit(r0.getType().getLLVMType()).emit(" %.").emit(r1.getName());
 
         return null;
     }
@@ -227,7 +353,7 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      *       | Identifier()
      */
     public ExtendedVisitorReturnInfo visit(Type n, VisitorParameterInfo argu) {
-        return n.f0.accept(this, new VisitorParameterInfo(null, null, null, "getType"));  // getType is used in Identifier()'s visit() for custom types
+        return n.f0.accept(this, VisitorParameterInfo.TYPES);  // (the purpose is used in Identifier()'s visit() for custom types)
     }
 
     /**
@@ -253,6 +379,16 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
         return new ExtendedVisitorReturnInfo(MiniJavaType.INTEGER, null);
     }
 
+    /**
+     * f0 -> "{"
+     * f1 -> ( Statement() )*
+     * f2 -> "}"
+     */
+    public ExtendedVisitorReturnInfo visit(Block n, VisitorParameterInfo argu) {
+        pushStatements(n.f1, argu);
+        return null;
+    }
+
     /**
      * f0 -> Identifier()
      * f1 -> "="
@@ -266,29 +402,19 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
         ExtendedVisitorReturnInfo r2 = n.f2.accept(this, argu);
         if (r0 == null || r2 == null) return null;
 
-        VariableInfo varInfo;
-        if (argu.getType().equals("main")) {
-            varInfo = ST.lookupMainVariable(r0.getName());
+        VariableInfo varInfo = resolved.getVariable(n.f0);
+        if (varInfo == null) {
+            System.err.println("Unknown identifier in assignment?!");        // should not happen cause of semantic checks
+        } else if (resolved.getStorage(varInfo) != ResolvedSymbols.Storage.FIELD){
+            // identifier is a local variable: from now on it holds the assigned value
+            localValues.put(r0.getName(), r2.getResultVarNameOrConstant());
         } else {
-            varInfo = ST.lookupVariable(argu.getSupername(), argu.getName(), r0.getName());
-        }
-        if (varInfo != null){
-            // identifier is a local variable
+            // identifier is a field of "this" object
             String llvmType = varInfo.getType().getLLVMType();
-            out.emit("    store " + llvmType + " " + r2.getResultVarNameOrConstant() + ", " + llvmType + "* " + r0.getResultVarNameOrConstant() + "\n");
-        } else if (!argu.getType().equals("main")) {
-            varInfo = SemanticChecks.checkFieldExists(ST, argu.getSupername(), argu.getName(), r0.getName());
-            if (varInfo != null){
-                // identifier is a field of "this" object
-                String llvmType = varInfo.getType().getLLVMType();
-                int byteoffset = 8 + varInfo.getOffset();   // + 8 to bypass the vtable pointer
-                String fieldptr = nameGenerator.generateLocalVarName();
-                String castedfieldptr = nameGenerator.generateLocalVarName();
-                out.emit("    " + fieldptr + " = getelementptr i8, i8* %this, i32 " + byteoffset + "\n");
-                out.emit("    " + castedfieldptr + " = bitcast i8* " + fieldptr + " to " + llvmType + "*\n");
-                out.emit("    store " + llvmType + " " + r2.getResultVarNameOrConstant() + ", " + llvmType + "* " + castedfieldptr + "\n");
-            } else System.err.println("Unknown identifier in assignment?!");  // should not happen cause of semantic checks
-        } else System.err.println("Unknown identifier in assignment?!");      // ^^
+            String fieldptr = emitFieldPointer(argu.getClassInfo(), varInfo);
+            out.emit("    store ").emit(llvmType).emit(" ").emit(r2.getResultVarNameOrConstant()).emit(", ").emit(llvmType).emit("* ").emit(fieldptr).emit('\n');
+            if (varInfo.getType() == MiniJavaType.INTARRAY) fieldValues.put(r0.getName(), r2.getResultVarNameOrConstant());
+        }
 
         if (EMIT_COMMENTS) out.emit("    ; end of assignment\n");
 
@@ -312,53 +438,27 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
         ExtendedVisitorReturnInfo r5 = n.f5.accept(this, argu);
         if (r0 == null || r2 == null || r5 == null) return null;
 
-        String array = nameGenerator.generateLocalVarName();
-        VariableInfo varInfo;
-        if (argu.getType().equals("main")) {
-            varInfo = ST.lookupMainVariable(r0.getName());
+        String array = null;
+        VariableInfo varInfo = resolved.getVariable(n.f0);
+        if (varInfo == null) {
+            System.err.println("Unknown identifier in array assignment?!");  // should not happen cause of semantic checks
+        } else if (resolved.getStorage(varInfo) != ResolvedSymbols.Storage.FIELD){
+            // identifier is a local variable
+            array = localValues.get(r0.getName());
         } else {
-            varInfo = ST.lookupVariable(argu.getSupername(), argu.getName(), r0.getName());
+            // identifier is a field of "this" object
+            array = emitFieldLoad(argu.getClassInfo(), r0.getName(), varInfo);
         }
-        if (varInfo != null){
-            // identifier is a local variable
-            out.emit("    " + array + " = load i32*, i32** " + r0.getResultVarNameOrConstant() + "\n");
-        } else if (!argu.getType().equals("main")) {
-            varInfo = SemanticChecks.checkFieldExists(ST, argu.getSupername(), argu.getName(), r0.getName());
-            if (varInfo != null){
-                // identifier is a field of "this" object
-                int byteoffset = 8 + varInfo.getOffset();   // + 8 to bypass the vtable pointer
-                String fieldptr = nameGenerator.generateLocalVarName();
-                String castedfieldptr = nameGenerator.generateLocalVarName();
-                out.emit("    " + fieldptr + " = getelementptr i8, i8* %this, i32 " + byteoffset + "\n");
-                out.emit("    " + castedfieldptr + " = bitcast i8* " + fieldptr + " to i32**\n");
-                out.emit("    " + array + " = load i32*, i32** " + castedfieldptr + "\n");
-            } else System.err.println("Unknown identifier in array assignment?!");  // should not happen cause of semantic checks
-        } else System.err.println("Unknown identifier in array assignment?!");      // ^^
 
         // check index bounds
-        String exceptionlabel = nameGenerator.generateLabelName("out_of_bounds");
-        String oklabel = nameGenerator.generateLabelName("in_bounds");
-        String exitlabel = nameGenerator.generateLabelName("exit_oob_check");
+        emitBoundsCheck(array, r2.getResultVarNameOrConstant(), r0.getName(), ArrayAccessWindow.index(n.f2));
 
-        String arrlen = nameGenerator.generateLocalVarName();
-        String comp = nameGenerator.generateLocalVarName();
         String offsetplusone = nameGenerator.generateLocalVarName();
         String elemptr = nameGenerator.generateLocalVarName();
 
-        out.emit("    " + arrlen + " = load i32, i32* " + array + "\n");
-        out.emit("    " + comp + " = icmp ult i32 " + r2.getResultVarNameOrConstant() + ", " + arrlen + "\n");
-        out.emit("    br i1 " + comp + ", label %" + oklabel + ", label %" + exceptionlabel + "\n");
-        out.emit(exceptionlabel + ":\n");
-        out.emit("    call void @throw_oob()\n");
-        out.emit("    br label %" + exitlabel + "\n");
-        out.emit(oklabel + ":\n");
-
-        out.emit("    " + offsetplusone + " = add i32 " + r2.getResultVarNameOrConstant() + ", 1\n");   // negate length in 0 pos
-        out.emit("    " + elemptr + " = getelementptr i32, i32* " + array + ", i32 " + offsetplusone + "\n");
-        out.emit("    store i32 " + r5.getResultVarNameOrConstant() + ", i32* " + elemptr + "\n");
-
-        out.emit("    br label %" + exitlabel + "\n");
-        out.emit(exitlabel + ":\n");
+        out.emit("    ").emit(offsetplusone).emit(" = add i32 ").emit(r2.getResultVarNameOrConstant()).emit(", 1\n");   // negate length in 0 pos
+        out.emit("    ").emit(elemptr).emit(" = getelementptr i32, i32* ").emit(array).emit(", i32 ").emit(offsetplusone).emit('\n');
+        out.emit("    store i32 ").emit(r5.getResultVarNameOrConstant()).emit(", i32* ").emit(elemptr).emit('\n');
 
         if (EMIT_COMMENTS) out.emit("    ; end of array assignment\n");
 
@@ -380,26 +480,73 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
         ExtendedVisitorReturnInfo r2 = n.f2.accept(this, argu);    // emits code to calculate condition
         if (r2 == null) return null;
 
+        IfState state = new IfState();
         String trueblock = nameGenerator.generateLabelName("if_true_case");
-        String falseblock = nameGenerator.generateLabelName("if_false_case");
-        String exit = nameGenerator.generateLabelName("if_exit");
+        state.falseblock = nameGenerator.generateLabelName("if_false_case");
+        state.exit = nameGenerator.generateLabelName("if_exit");
+
+        out.emit("    br i1 ").emit(r2.getResultVarNameOrConstant()).emit(", label %").emit(trueblock).emit(", label %").emit(state.falseblock).emit('\n');
+        emitLabel(trueblock);
+
+        state.valuesBefore = new HashMap<>(localValues);
+        state.fieldValuesBefore = new HashMap<>(fieldValues);
+        state.factsBefore = facts.mark();
+        addConditionFacts(r2.getResultVarNameOrConstant());
+
+        // the code for true-if, then for false-if (see visitStatements())
+        pendingStatements.add(() -> endIf(state, argu));
+        pendingStatements.add(() -> n.f6.accept(this, argu));
+        pendingStatements.add(() -> startFalseCase(state, argu));
+        pendingStatements.add(() -> n.f4.accept(this, argu));
+        return null;
+    }
 
-        out.emit("    br i1 " + r2.getResultVarNameOrConstant() + ", label %" + trueblock + ", label %" + falseblock + "\n");
-        out.emit(trueblock + ":\n");
+    /** An if-else being generated: what was known before its branches, then at the end of its true-if */
+    private static class IfState {
+        String falseblock, exit;
+        Map<String, String> valuesBefore, fieldValuesBefore;
+        int factsBefore;
+        Map<String, String> trueValues, trueFieldValues;
+        Set<String> trueNonNegative;
+        String trueEnd;
+    }
 
-        n.f4.accept(this, argu);    // emits code for true-if
+    private void startFalseCase(IfState state, VisitorParameterInfo argu) {
+        state.trueValues = localValues;
+        state.trueFieldValues = fieldValues;
+        state.trueNonNegative = getNonNegativeVariables(argu.getMethodInfo());
+        state.trueEnd = currentLabel;
+        facts.undo(state.factsBefore);
 
-        out.emit("    br label %" + exit + "\n");
-        out.emit(falseblock + ":\n");
+        out.emit("    br label %").emit(state.exit).emit('\n');
+        emitLabel(state.falseblock);
 
-        n.f6.accept(this, argu);    // emits code for false-if
+        localValues = state.valuesBefore;
+        fieldValues = state.fieldValuesBefore;
+    }
 
-        out.emit("    br label %" + exit + "\n");
-        out.emit(exit + ":\n");
+    private void endIf(IfState state, VisitorParameterInfo argu) {
+        Set<String> falseNonNegative = getNonNegativeVariables(argu.getMethodInfo());
+        String falseEnd = currentLabel;
+        facts.undo(state.factsBefore);
+
+        out.emit("    br label %").emit(state.exit).emit('\n');
+        emitLabel(state.exit);
+
+        // variables assigned a different value in each branch get a phi node
+        for ( MyPair<String, VariableInfo> v : argu.getMethodInfo().getVariables() ){
+            String trueValue = state.trueValues.get(v.getFirst());
+            String falseValue = localValues.get(v.getFirst());
+            if (trueValue.equals(falseValue)) continue;
+            String phi = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(phi).emit(" = phi ").emit(v.getSecond().getType().getLLVMType()).emit(" [").emit(trueValue).emit(", %").emit(state.trueEnd)
+               .emit("], [").emit(falseValue).emit(", %").emit(falseEnd).emit("]\n");
+            localValues.put(v.getFirst(), phi);
+            if (state.trueNonNegative.contains(v.getFirst()) && falseNonNegative.contains(v.getFirst())) facts.addNonNegative(phi);
+        }
+        fieldValues = intersect(state.trueFieldValues, fieldValues);
 
         if (EMIT_COMMENTS) out.emit("    ; end of if-else block\n");
-
-        return null;
     }
 
     /**
@@ -410,28 +557,134 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f4 -> Statement()
      */
     public ExtendedVisitorReturnInfo visit(WhileStatement n, VisitorParameterInfo argu) {
-        String loopstart = nameGenerator.generateLabelName("loop_cond");
-        String loopstmts = nameGenerator.generateLabelName("loop_begin");
-        String exit = nameGenerator.generateLabelName("loop_end");
+        WhileState state = new WhileState();
+        state.loopstart = nameGenerator.generateLabelName("loop_cond");
+        state.loopstmts = nameGenerator.generateLabelName("loop_begin");
+        state.exit = nameGenerator.generateLabelName("loop_end");
 
         if (EMIT_COMMENTS) out.emit("    ; while loop\n");
 
-        out.emit("    br label %" + loopstart + "\n");
-        out.emit(loopstart + ":\n");
+        out.emit("    br label %").emit(state.loopstart).emit('\n');
+        state.preheader = currentLabel;
+        emitLabel(state.loopstart);
+
+        // every local variable assigned in the loop gets a phi node at its header, whose value coming from the
+        // end of the loop's body is only known after the body has been generated: so generate the condition
+        // and the body into a buffer first and emit the phi nodes before it
+        AssignedVariablesCollector.Loop assigned = AssignedVariablesCollector.collect(n, loops);
+        state.entryValues = new HashMap<>(localValues);
+        Names names = ST.getNames();
+        for (String name : assigned.getAssigned()){
+            if (argu.getMethodInfo().getVariableInfo(names.lookup(name)) == null) continue;     // (field)
+            String phi = nameGenerator.generateLocalVarName();
+            state.phis.put(name, phi);
+            localValues.put(name, phi);
+        }
+        state.headerValues = localValues;
+
+        // int[] fields loaded before the loop can only be used in it if the loop can not change them
+        if (!assigned.callsMethods()){
+            state.headerFieldValues.putAll(fieldValues);
+            state.headerFieldValues.keySet().removeAll(assigned.getAssigned());
+        }
+
+        // Induction variables: ints that start non-negative and are only incremented in the loop are assumed to stay
+        // non-negative, which is checked once the body is generated (e.g. "i = i + 1" is only known not to overflow
+        // if i is less than something there). If that fails, the loop is generated again without the assumption.
+        state.notInduction = notInductionVariables.computeIfAbsent(n, k -> new HashSet<>());
+        for (String name : state.phis.keySet()){
+            if (argu.getMethodInfo().getVariableInfo(names.lookup(name)).getType() == MiniJavaType.INTEGER && assigned.isOnlyIncremented(name)
+                    && !state.notInduction.contains(name) && facts.isNonNegative(state.entryValues.get(name))) state.inductionVariables.add(name);
+        }
+
+        state.outerOut = out;
+        if (loopDepth == loopBodyBuffers.size()) loopBodyBuffers.add(new FileWritter());
+        out = loopBodyBuffers.get(loopDepth++);
+        state.checksBefore = boundsChecks;
+        state.removedChecksBefore = removedBoundsChecks;
+        state.callsBefore = methodCalls;
+        state.devirtualizedBefore = devirtualizedCalls;
+        state.inlinedBefore = inlinedCalls;
+        state.heapAllocationsBefore = heapAllocations;
+        state.factsBefore = facts.mark();
+        startLoopBody(n, state, argu);
+        return null;
+    }
+
+    /** A while loop being generated: what was known before it, then at its header */
+    private static class WhileState {
+        String loopstart, loopstmts, exit, preheader;
+        Map<String, String> entryValues, headerValues;
+        final Map<String, String> phis = new HashMap<>();
+        final Map<String, String> headerFieldValues = new HashMap<>();
+        Set<String> notInduction;
+        final Set<String> inductionVariables = new HashSet<>();
+        FileWritter outerOut;
+        int checksBefore, removedChecksBefore;
+        long callsBefore, devirtualizedBefore, inlinedBefore, heapAllocationsBefore;
+        int factsBefore, factsOfHeader;
+    }
+
+    /** Generates the condition of a loop (again, if its induction variables turned out not to be ones) and leaves its body to be generated next */
+    private void startLoopBody(WhileStatement n, WhileState state, VisitorParameterInfo argu) {
+        localValues = new HashMap<>(state.headerValues);
+        fieldValues = new HashMap<>(state.headerFieldValues);
+        currentLabel = state.loopstart;
+        rootedValues.clear();
+        for (String name : state.inductionVariables) facts.addNonNegative(state.phis.get(name));
 
         ExtendedVisitorReturnInfo r2 = n.f2.accept(this, argu);   // emits code to calculate expression
 
-        out.emit("    br i1 " + r2.getResultVarNameOrConstant() + ", label %" + loopstmts + ", label %" + exit + "\n");
-        out.emit(loopstmts + ":\n");
+        out.emit("    br i1 ").emit(r2.getResultVarNameOrConstant()).emit(", label %").emit(state.loopstmts).emit(", label %").emit(state.exit).emit('\n');
+        emitLabel(state.loopstmts);
 
-        n.f4.accept(this, argu);   // emits code of loop
+        state.factsOfHeader = facts.mark();
+        addConditionFacts(r2.getResultVarNameOrConstant());
+        pendingStatements.add(() -> endLoopBody(n, state, argu));
+        pendingStatements.add(() -> n.f4.accept(this, argu));   // emits code of loop
+    }
 
-        out.emit("    br label %" + loopstart + "\n");
-        out.emit(exit + ":\n");
+    private void endLoopBody(WhileStatement n, WhileState state, VisitorParameterInfo argu) {
+        out.emit("    br label %").emit(state.loopstart).emit('\n');
+        String latch = currentLabel;
 
-        if (EMIT_COMMENTS) out.emit("    ; end of while loop\n");
+        Set<String> failed = new HashSet<>();
+        for (String name : state.inductionVariables){
+            if (!facts.isNonNegative(localValues.get(name))) failed.add(name);
+        }
+        if (!failed.isEmpty()){
+            state.notInduction.addAll(failed);
+            state.inductionVariables.removeAll(failed);
+            facts.undo(state.factsBefore);
+            out.clear();
+            boundsChecks = state.checksBefore;
+            removedBoundsChecks = state.removedChecksBefore;
+            methodCalls = state.callsBefore;
+            devirtualizedCalls = state.devirtualizedBefore;
+            inlinedCalls = state.inlinedBefore;
+            heapAllocations = state.heapAllocationsBefore;
+            startLoopBody(n, state, argu);
+            return;
+        }
+        facts.undo(state.factsOfHeader);
+
+        Map<String, String> latchValues = localValues;
+        out = state.outerOut;
+        loopDepth--;
+        for ( MyPair<String, VariableInfo> v : argu.getMethodInfo().getVariables() ){
+            String phi = state.phis.get(v.getFirst());
+            if (phi == null) continue;
+            out.emit("    ").emit(phi).emit(" = phi ").emit(v.getSecond().getType().getLLVMType()).emit(" [").emit(state.entryValues.get(v.getFirst())).emit(", %").emit(state.preheader)
+               .emit("], [").emit(latchValues.get(v.getFirst())).emit(", %").emit(latch).emit("]\n");
+        }
+        out.emitAndClear(loopBodyBuffers.get(loopDepth));
 
-        return null;
+        // (the loop is only left from its header)
+        localValues = state.headerValues;
+        fieldValues = state.headerFieldValues;
+        emitLabel(state.exit);
+
+        if (EMIT_COMMENTS) out.emit("    ; end of while loop\n");
     }
 
     /**
@@ -446,11 +699,11 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
         if (r2 == null) return null;
 
         if (r2.getType().getTypeEnum() == TypeEnum.INTEGER) {
-            out.emit("    call void (i32) @print_int(i32 " + r2.getResultVarNameOrConstant() + ")\n");
+            out.emit("    call void (i32) @print_int(i32 ").emit(r2.getResultVarNameOrConstant()).emit(")\n");
         } else if (r2.getType().getTypeEnum() == TypeEnum.BOOLEAN){
             String casted = nameGenerator.generateLocalVarName();
-            out.emit("    " + casted + " = zext i1 " + r2.getResultVarNameOrConstant() + " to i32\n");
-            out.emit("    call void (i32) @print_int(i32 " + casted + ")\n");
+            out.emit("    ").emit(casted).emit(" = zext i1 ").emit(r2.getResultVarNameOrConstant()).emit(" to i32\n");
+            out.emit("    call void (i32) @print_int(i32 ").emit(casted).emit(")\n");
         }
 
         return null;
@@ -469,7 +722,7 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      */
     public ExtendedVisitorReturnInfo visit(Expression n, VisitorParameterInfo argu) {
         // Note: I set purpose to "getVariable" as that is the most common one and change it to null where that is not the case later
-        return n.f0.accept(this,  new VisitorParameterInfo(argu.getName(), argu.getSupername(), argu.getType(), "getVariable"));
+        return expressions.walk(n, argu.withPurpose(VisitorParameterInfo.Purpose.VARIABLE));
     }
 
     /**
@@ -478,35 +731,66 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f2 -> Clause()
      */
     public ExtendedVisitorReturnInfo visit(AndExpression n, VisitorParameterInfo argu) {
-        String falselabel = nameGenerator.generateLabelName("first_is_false");
-        String truelabel = nameGenerator.generateLabelName("first_is_true");
-        String block_that_jumps_to_phi = nameGenerator.generateLabelName("block_that_jumps_to_phi");
-        String exitlabel = nameGenerator.generateLabelName("exit_and_op");
-        String res = nameGenerator.generateLocalVarName();
+        // (the code of the left clause and the branch on it have been emitted already, see startRightClause())
+        AndLabels labels = (AndLabels) expressions.frame().state;
+        String falselabel = labels.falselabel;
+        String block_that_jumps_to_phi = labels.block_that_jumps_to_phi;
+        String exitlabel = labels.exitlabel;
+        String res = labels.res;
+        ExtendedVisitorReturnInfo r0 = expressions.value(0);
+        ExtendedVisitorReturnInfo r2 = expressions.value(1);
+        facts.undo(expressions.frame().mark);
+        fieldValues = intersect(labels.fieldValuesBefore, fieldValues);
+
+        out.emit("    br label %").emit(block_that_jumps_to_phi).emit('\n');
+        emitLabel(block_that_jumps_to_phi);
+        out.emit("    br label %").emit(exitlabel).emit('\n');
+
+        emitLabel(exitlabel);
+        out.emit("    ").emit(res).emit(" = phi i1 [0, %").emit(falselabel).emit("], [").emit(r2.getResultVarNameOrConstant()).emit(", %").emit(block_that_jumps_to_phi).emit("]\n");
+
+        // if it is true, both clauses were true
+        ArrayList<String[]> resComparisons = new ArrayList<>();
+        if (comparisons.containsKey(r0.getResultVarNameOrConstant())) resComparisons.addAll(comparisons.get(r0.getResultVarNameOrConstant()));
+        if (comparisons.containsKey(r2.getResultVarNameOrConstant())) resComparisons.addAll(comparisons.get(r2.getResultVarNameOrConstant()));
+        if (!resComparisons.isEmpty()) comparisons.put(res, resComparisons);
 
-        if (EMIT_COMMENTS) out.emit("    ; short-circuiting \"&&\"\n");
-
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);    // emits code to calculate left clause
+        if (EMIT_COMMENTS) out.emit("    ; end of short-circuiting \"&&\"\n");
 
-        out.emit("    br i1 " + r0.getResultVarNameOrConstant() + ", label %" + truelabel + ", label %" + falselabel + "\n");
+        return new ExtendedVisitorReturnInfo(MiniJavaType.BOOLEAN, res);
+    }
 
-        out.emit(falselabel + ":\n");
-        out.emit("    br label %" + exitlabel + "\n");
+    /** The labels of a "&&" being generated and what was known before its right clause */
+    private static class AndLabels {
+        String falselabel, truelabel, block_that_jumps_to_phi, exitlabel, res;
+        Map<String, String> fieldValuesBefore;
+    }
 
-        out.emit(truelabel + ":\n");
+    private void startAnd(ExpressionWalker.Frame frame){
+        AndLabels labels = new AndLabels();
+        labels.falselabel = nameGenerator.generateLabelName("first_is_false");
+        labels.truelabel = nameGenerator.generateLabelName("first_is_true");
+        labels.block_that_jumps_to_phi = nameGenerator.generateLabelName("block_that_jumps_to_phi");
+        labels.exitlabel = nameGenerator.generateLabelName("exit_and_op");
+        labels.res = nameGenerator.generateLocalVarName();
+        frame.state = labels;
 
-        ExtendedVisitorReturnInfo r2 = n.f2.accept(this, argu);    // emits code to calculate clause
+        if (EMIT_COMMENTS) out.emit("    ; short-circuiting \"&&\"\n");
+    }
 
-        out.emit("    br label %" + block_that_jumps_to_phi + "\n");
-        out.emit(block_that_jumps_to_phi + ":\n");
-        out.emit("    br label %" + exitlabel + "\n");
+    /** Once the left clause (r0) of a "&&" is generated: the right one is only calculated if it is true */
+    private void startRightClause(ExpressionWalker.Frame frame, ExtendedVisitorReturnInfo r0){
+        AndLabels labels = (AndLabels) frame.state;
+        out.emit("    br i1 ").emit(r0.getResultVarNameOrConstant()).emit(", label %").emit(labels.truelabel).emit(", label %").emit(labels.falselabel).emit('\n');
 
-        out.emit(exitlabel + ":\n");
-        out.emit("    " + res + " = phi i1 [0, %" + falselabel + "], [" + r2.getResultVarNameOrConstant() + ", %" + block_that_jumps_to_phi + "]\n");
+        emitLabel(labels.falselabel);
+        out.emit("    br label %").emit(labels.exitlabel).emit('\n');
 
-        if (EMIT_COMMENTS) out.emit("    ; end of short-circuiting \"&&\"\n");
+        emitLabel(labels.truelabel);
 
-        return new ExtendedVisitorReturnInfo(MiniJavaType.BOOLEAN, res);
+        // (what is found while calculating the right clause only holds in its blocks)
+        labels.fieldValuesBefore = new HashMap<>(fieldValues);
+        frame.mark = facts.mark();
     }
 
     /**
@@ -515,12 +799,15 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f2 -> PrimaryExpression()
      */
     public ExtendedVisitorReturnInfo visit(CompareExpression n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);
-        ExtendedVisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r0 == null || r2 == null) return null;
+        ExtendedVisitorReturnInfo r0 = expressions.value(0);
+        ExtendedVisitorReturnInfo r2 = expressions.value(1);
 
         String res = nameGenerator.generateLocalVarName();
-        out.emit("    " + res + " = icmp slt i32 " + r0.getResultVarNameOrConstant() + ", " + r2.getResultVarNameOrConstant() + "\n");
+        out.emit("    ").emit(res).emit(" = icmp slt i32 ").emit(r0.getResultVarNameOrConstant()).emit(", ").emit(r2.getResultVarNameOrConstant()).emit('\n');
+
+        ArrayList<String[]> resComparisons = new ArrayList<>(1);
+        resComparisons.add(new String[] { r0.getResultVarNameOrConstant(), r2.getResultVarNameOrConstant() });
+        comparisons.put(res, resComparisons);
 
         return new ExtendedVisitorReturnInfo(MiniJavaType.BOOLEAN, res);
     }
@@ -531,12 +818,14 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f2 -> PrimaryExpression()
      */
     public ExtendedVisitorReturnInfo visit(PlusExpression n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);
-        ExtendedVisitorReturnInfo r1 = n.f2.accept(this, argu);
-        if (r0 == null || r1 == null) return null;
+        ExtendedVisitorReturnInfo r0 = expressions.value(0);
+        ExtendedVisitorReturnInfo r1 = expressions.value(1);
 
         String res = nameGenerator.generateLocalVarName();
-        out.emit("    " + res + " = add i32 " + r0.getResultVarNameOrConstant() + ", " + r1.getResultVarNameOrConstant() + "\n");
+        out.emit("    ").emit(res).emit(" = add i32 ").emit(r0.getResultVarNameOrConstant()).emit(", ").emit(r1.getResultVarNameOrConstant()).emit('\n');
+
+        if (RangeFacts.isConstant(r1.getResultVarNameOrConstant())) facts.setAffine(res, r0.getResultVarNameOrConstant(), Integer.parseInt(r1.getResultVarNameOrConstant()));
+        else if (RangeFacts.isConstant(r0.getResultVarNameOrConstant())) facts.setAffine(res, r1.getResultVarNameOrConstant(), Integer.parseInt(r0.getResultVarNameOrConstant()));
 
         return new ExtendedVisitorReturnInfo(MiniJavaType.INTEGER, res);
     }
@@ -547,12 +836,11 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f2 -> PrimaryExpression()
      */
     public ExtendedVisitorReturnInfo visit(MinusExpression n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);
-        ExtendedVisitorReturnInfo r1 = n.f2.accept(this, argu);
-        if (r0 == null || r1 == null) return null;
+        ExtendedVisitorReturnInfo r0 = expressions.value(0);
+        ExtendedVisitorReturnInfo r1 = expressions.value(1);
 
         String res = nameGenerator.generateLocalVarName();
-        out.emit("    " + res + " = sub i32 " + r0.getResultVarNameOrConstant() + ", " + r1.getResultVarNameOrConstant() + "\n");
+        out.emit("    ").emit(res).emit(" = sub i32 ").emit(r0.getResultVarNameOrConstant()).emit(", ").emit(r1.getResultVarNameOrConstant()).emit('\n');
 
         return new ExtendedVisitorReturnInfo(MiniJavaType.INTEGER, res);
     }
@@ -563,12 +851,11 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f2 -> PrimaryExpression()
      */
     public ExtendedVisitorReturnInfo visit(TimesExpression n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);
-        ExtendedVisitorReturnInfo r1 = n.f2.accept(this, argu);
-        if (r0 == null || r1 == null) return null;
+        ExtendedVisitorReturnInfo r0 = expressions.value(0);
+        ExtendedVisitorReturnInfo r1 = expressions.value(1);
 
         String res = nameGenerator.generateLocalVarName();
-        out.emit("    " + res + " = mul i32 " + r0.getResultVarNameOrConstant() + ", " + r1.getResultVarNameOrConstant() + "\n");
+        out.emit("    ").emit(res).emit(" = mul i32 ").emit(r0.getResultVarNameOrConstant()).emit(", ").emit(r1.getResultVarNameOrConstant()).emit('\n');
 
         return new ExtendedVisitorReturnInfo(MiniJavaType.INTEGER, res);
     }
@@ -580,37 +867,21 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f3 -> "]"
      */
     public ExtendedVisitorReturnInfo visit(ArrayLookup n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);
-        ExtendedVisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r0 == null || r2 == null) return null;
-
-        String exceptionlabel = nameGenerator.generateLabelName("out_of_bounds");
-        String oklabel = nameGenerator.generateLabelName("in_bounds");
-        String exitlabel = nameGenerator.generateLabelName("exit_oob_check");
-        String arrlen = nameGenerator.generateLocalVarName();
-        String comp = nameGenerator.generateLocalVarName();
+        ExtendedVisitorReturnInfo r0 = expressions.value(0);
+        ExtendedVisitorReturnInfo r2 = expressions.value(1);
+        truncatePendingRoots(expressions.frame().mark);     // (r0 was needed while r2 was generated)
 
-        // check that (unsigned) len < array.length or throw out of bounds exception
         if (EMIT_COMMENTS) out.emit("    ; array lookup\n");
 
-        out.emit("    " + arrlen + " = load i32, i32* " + r0.getResultVarNameOrConstant() + "\n");
-        out.emit("    " + comp + " = icmp ult i32 " + r2.getResultVarNameOrConstant() + ", " + arrlen + "\n");
-        out.emit("    br i1 " + comp + ", label %" + oklabel + ", label %" + exceptionlabel + "\n");
-        out.emit(exceptionlabel + ":\n");
-        out.emit("    call void @throw_oob()\n");
-        out.emit("    br label %" + exitlabel + "\n");
-        out.emit(oklabel + ":\n");
+        emitBoundsCheck(r0.getResultVarNameOrConstant(), r2.getResultVarNameOrConstant(), ArrayAccessWindow.arrayName(n.f0), ArrayAccessWindow.index(n.f2));
 
         String offsetplusone = nameGenerator.generateLocalVarName();
         String elemptr = nameGenerator.generateLocalVarName();
         String element = nameGenerator.generateLocalVarName();
 
-        out.emit("    " + offsetplusone + " = add i32 " + r2.getResultVarNameOrConstant() + ", 1\n");   // negate length in 0 pos
-        out.emit("    " + elemptr + " = getelementptr i32, i32* " + r0.getResultVarNameOrConstant() + ", i32 " + offsetplusone + "\n");
-        out.emit("    " + element + " = load i32, i32* " + elemptr + "\n");
-
-        out.emit("    br label %" + exitlabel + "\n");
-        out.emit(exitlabel + ":\n");
+        out.emit("    ").emit(offsetplusone).emit(" = add i32 ").emit(r2.getResultVarNameOrConstant()).emit(", 1\n");   // negate length in 0 pos
+        out.emit("    ").emit(elemptr).emit(" = getelementptr i32, i32* ").emit(r0.getResultVarNameOrConstant()).emit(", i32 ").emit(offsetplusone).emit('\n');
+        out.emit("    ").emit(element).emit(" = load i32, i32* ").emit(elemptr).emit('\n');
 
         if (EMIT_COMMENTS) out.emit("    ; end of array lookup\n");
 
@@ -623,11 +894,14 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f2 -> "length"
      */
     public ExtendedVisitorReturnInfo visit(ArrayLength n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);
-        if (r0 == null) return null;
+        ExtendedVisitorReturnInfo r0 = expressions.value(0);
 
-        String len = nameGenerator.generateLocalVarName();
-        out.emit("    " + len + " = load i32, i32* " + r0.getResultVarNameOrConstant() + "\n");
+        String len = facts.getArrayLength(r0.getResultVarNameOrConstant());
+        if (len == null){
+            len = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(len).emit(" = load i32, i32* ").emit(r0.getResultVarNameOrConstant()).emit('\n');
+            facts.setArrayLength(r0.getResultVarNameOrConstant(), len);
+        }
 
         return new ExtendedVisitorReturnInfo(MiniJavaType.INTEGER, len);
     }
@@ -641,79 +915,71 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f5 -> ")"
      */
     public ExtendedVisitorReturnInfo visit(MessageSend n, VisitorParameterInfo argu) {
-        if (EMIT_COMMENTS) out.emit("    ; method call\n");
-
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);     // emits code to calculate expression
-        ExtendedVisitorReturnInfo r2 = n.f2.accept(this, new VisitorParameterInfo(argu.getName(), argu.getSupername(), argu.getType(), null));  // null purpose -> only get name
-
-        if (r0 == null || r2 == null) return null;
-        if (r0.getType().getTypeEnum() != TypeEnum.CUSTOM) { System.err.println("Missed something in semantic checks"); return null; }  // should not happen
-
-        MethodInfo methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, r0.getType().getCustomTypeName(), r2.getName());
-        if (methodInfo == null) { System.err.println("Missed something in semantic checks"); return null; }  // should not happen
-
-        if (EMIT_COMMENTS) out.emit("    ; info: called method " + r2.getName() + " of Class " + r0.getType().getCustomTypeName() + "\n");
-
-        String vtableptrptr = nameGenerator.generateLocalVarName();
-        String vtableptr = nameGenerator.generateLocalVarName();
-        String func_ptr = nameGenerator.generateLocalVarName();
-        String func_addr = nameGenerator.generateLocalVarName();
-        String casted_func = nameGenerator.generateLocalVarName();
-        String ret = nameGenerator.generateLocalVarName();
+        // (the receiver and then the arguments have been generated, see startCall())
+        ExtendedVisitorReturnInfo r0 = expressions.value(0);
+        List<ExtendedVisitorReturnInfo> args = expressions.values(1);
+        String name = n.f2.f0.toString();
+        MethodInfo methodInfo = resolved.getMethod(n);
         String obj = r0.getResultVarNameOrConstant();
-
-        int methodIndex = methodInfo.getOffset() / 8;
-
-        ExtendedVisitorParameterInfo exprListArgs = new ExtendedVisitorParameterInfo(argu.getSupername(), argu.getName(), r0.getType().getCustomTypeName(), r2.getName(), argu.getType());
-        n.f4.accept(this, exprListArgs);   // this will emit code to calculate the parameters and store all result var names in exprListArgs
-
-        out.emit("    " + vtableptrptr + " = bitcast i8* " + obj + " to i8***\n");
-        out.emit("    " + vtableptr + " = load i8**, i8*** " + vtableptrptr + "\n");
-        out.emit("    " + func_ptr + " = getelementptr i8*, i8** " + vtableptr + ", i32 " + methodIndex + "\n");
-        out.emit("    " + func_addr + " = load i8*, i8** " + func_ptr + "\n");
-        out.emit("    " + casted_func + " = bitcast i8* " + func_addr + " to " + LLVMCodeGenerating.getMethodType(null, null, methodInfo) + "\n");
-        out.emit("    " + ret + " = call " + methodInfo.getReturnType().getLLVMType() + " " + casted_func + "(i8* " + obj);
-        if (exprListArgs.getListOfResultVars() != null) {
-            for (ExtendedVisitorReturnInfo r : exprListArgs.getListOfResultVars()) {
-                out.emit(", " + r.getType().getLLVMType() + " " + r.getResultVarNameOrConstant());
+        int pending = expressions.frame().mark;
+
+        // (CHA) if no subclass of the static type overrides the method, the one called is known: no vtable lookup
+        methodCalls++;
+        ClassLayout receiverLayout = resolved.getReceiverClass(n).getLayout();
+        String callee;
+        if (receiverLayout.hasSingleImplementation(NameToken.of(n.f2))) {
+            devirtualizedCalls++;
+            ClassInfo calleeClass = receiverLayout.getMethodClass(NameToken.of(n.f2));
+            String calleeClassName = calleeClass.getName();
+            if (shouldInline(methodInfo)) {
+                truncatePendingRoots(pending);
+                String ret = emitInlinedCall(calleeClass, name, methodInfo, obj, args);
+                if (EMIT_COMMENTS) out.emit("    ; end of method call\n");
+                return new ExtendedVisitorReturnInfo(methodInfo.getReturnType(), ret);
             }
+            callee = "@" + calleeClassName + "." + name;
+        } else {
+            String vtableptrptr = nameGenerator.generateLocalVarName();
+            String vtableptr = nameGenerator.generateLocalVarName();
+            String func_ptr = nameGenerator.generateLocalVarName();
+            String func_addr = nameGenerator.generateLocalVarName();
+            callee = nameGenerator.generateLocalVarName();
+
+            int methodIndex = methodInfo.getOffset() / 8;
+
+            out.emit("    ").emit(vtableptrptr).emit(" = bitcast i8* ").emit(obj).emit(" to i8***\n");
+            out.emit("    ").emit(vtableptr).emit(" = load i8**, i8*** ").emit(vtableptrptr).emit('\n');
+            out.emit("    ").emit(func_ptr).emit(" = getelementptr i8*, i8** ").emit(vtableptr).emit(", i32 ").emit(methodIndex).emit('\n');
+            out.emit("    ").emit(func_addr).emit(" = load i8*, i8** ").emit(func_ptr).emit('\n');
+            out.emit("    ").emit(callee).emit(" = bitcast i8* ").emit(func_addr).emit(" to ").emit(LLVMCodeGenerating.getMethodType(null, null, methodInfo)).emit('\n');
+        }
+        emitSafepoint();
+        truncatePendingRoots(pending);
+        String ret = nameGenerator.generateLocalVarName();
+        out.emit("    ").emit(ret).emit(" = call ").emit(methodInfo.getReturnType().getLLVMType()).emit(" ").emit(callee).emit("(i8* ").emit(obj);
+        for (ExtendedVisitorReturnInfo r : args) {
+            out.emit(", ").emit(r.getType().getLLVMType()).emit(" ").emit(r.getResultVarNameOrConstant());
         }
         out.emit(")\n");
+        fieldValues.clear();    // (the method may have changed any field)
 
         if (EMIT_COMMENTS) out.emit("    ; end of method call\n");
 
         return new ExtendedVisitorReturnInfo(methodInfo.getReturnType(), ret);
     }
 
-    /**
-     * f0 -> Expression()
-     * f1 -> ExpressionTail()
-     */
-    public ExtendedVisitorReturnInfo visit(ExpressionList n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r0 = n.f0.accept(this, argu);      // emits code to calculate expression
-        if (r0 == null) return null;
-        argu.addToListOfResultVars(r0);         // (!) must be before n.f1.accept() is called to assert correct order
-        n.f1.accept(this, argu);
-        return null;
-    }
+    /** Once the receiver (r0) of a call is generated: it is needed until the call, after its arguments are generated */
+    private boolean startCall(MessageSend n, ExpressionWalker.Frame frame, ExtendedVisitorReturnInfo r0){
+        if (r0.getType().getTypeEnum() != TypeEnum.CUSTOM) { System.err.println("Missed something in semantic checks"); return false; }  // should not happen
 
-    /**
-     * f0 -> ( ExpressionTerm() )*
-     */
-    public ExtendedVisitorReturnInfo visit(ExpressionTail n, VisitorParameterInfo argu) {
-        return n.f0.accept(this, argu);
-    }
+        MethodInfo methodInfo = resolved.getMethod(n);
+        if (methodInfo == null) { System.err.println("Missed something in semantic checks"); return false; }  // should not happen
 
-    /**
-     * f0 -> ","
-     * f1 -> Expression()
-     */
-    public ExtendedVisitorReturnInfo visit(ExpressionTerm n, VisitorParameterInfo argu) {
-        // calculate expressions (emit such code)
-        ExtendedVisitorReturnInfo r1 = n.f1.accept(this, argu);   // emits code to calculate expression
-        if (r1 == null) return null;
-        argu.addToListOfResultVars(r1);
-        return null;
+        if (EMIT_COMMENTS) out.emit("    ; info: called method ").emit(n.f2.f0.toString()).emit(" of Class ").emit(r0.getType().getCustomTypeName()).emit('\n');
+
+        frame.mark = pendingRoots.size();
+        addPendingRoot(r0);
+        return true;
     }
 
     /**
@@ -721,7 +987,7 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      *       | PrimaryExpression()
      */
     public ExtendedVisitorReturnInfo visit(Clause n, VisitorParameterInfo argu) {
-        return n.f0.accept(this, argu);
+        return expressions.walk(n, argu);
     }
 
     /**
@@ -735,7 +1001,7 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      *       | BracketExpression()
      */
     public ExtendedVisitorReturnInfo visit(PrimaryExpression n, VisitorParameterInfo argu) {
-        return n.f0.accept(this, argu);
+        return expressions.walk(n, argu);
     }
 
     /**
@@ -763,36 +1029,21 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f0 -> <IDENTIFIER>
      */
     public ExtendedVisitorReturnInfo visit(Identifier n, VisitorParameterInfo argu) {
-        if (argu != null && argu.getPurpose() != null && argu.getPurpose().equals("getType"))
-            return new ExtendedVisitorReturnInfo(n.f0.toString(), new MiniJavaType(TypeEnum.CUSTOM, n.f0.toString()), null);
-        else if (argu != null && argu.getPurpose() != null && argu.getPurpose().equals("getVariable")){
-
-            String value = nameGenerator.generateLocalVarName();
-            VariableInfo varInfo;
-            if (argu.getType().equals("main")) {
-                varInfo = ST.lookupMainVariable(n.f0.toString());
+        if (argu != null && argu.getPurpose() == VisitorParameterInfo.Purpose.TYPE)
+            return new ExtendedVisitorReturnInfo(n.f0.toString(), ST.getCustomType(NameToken.of(n)), null);
+        else if (argu != null && argu.getPurpose() == VisitorParameterInfo.Purpose.VARIABLE){
+
+            String value = null;
+            VariableInfo varInfo = resolved.getVariable(n);
+            if (varInfo == null) {
+                System.err.println("Unknown identifier in expression?!");    // should not happen cause of semantic checks
+            } else if (resolved.getStorage(varInfo) != ResolvedSymbols.Storage.FIELD){
+                // identifier is a local variable: use the value it currently holds
+                value = localValues.get(n.f0.toString());
             } else {
-                varInfo = ST.lookupVariable(argu.getSupername(), argu.getName(), n.f0.toString());
+                // identifier is a field of "this" object
+                value = emitFieldLoad(argu.getClassInfo(), n.f0.toString(), varInfo);
             }
-            if (varInfo != null){
-                // identifier is a local variable
-                String llvmType = varInfo.getType().getLLVMType();
-                out.emit("    " + value + " = load " + llvmType + ", " + llvmType + "* %" + n.f0.toString() + "\n");
-            } else if (!argu.getType().equals("main")) {
-                varInfo = SemanticChecks.checkFieldExists(ST, argu.getSupername(), argu.getName(), n.f0.toString());
-                if (varInfo != null){
-                    // identifier is a field of "this" object
-                    String llvmType = varInfo.getType().getLLVMType();
-                    int byteoffset = 8 + varInfo.getOffset();   // + 8 to bypass the vtable pointer
-                    String fieldptr = nameGenerator.generateLocalVarName();
-                    String castedfieldptr = nameGenerator.generateLocalVarName();
-                    if (EMIT_COMMENTS) out.emit("    ; object field lookup\n");
-                    out.emit("    " + fieldptr + " = getelementptr i8, i8* %this, i32 " + byteoffset + "\n");
-                    out.emit("    " + castedfieldptr + " = bitcast i8* " + fieldptr + " to " + llvmType + "*\n");
-                    out.emit("    " + value + " = load " + llvmType + ", " + llvmType + "* " + castedfieldptr + "\n");
-                    if (EMIT_COMMENTS) out.emit("    ; end of object field lookup\n");
-                } else System.err.println("Unknown identifier in expression?!");  // should not happen cause of semantic checks
-            } else System.err.println("Unknown identifier in expression?!");      // ^^
 
             return new ExtendedVisitorReturnInfo(n.f0.toString(), (varInfo != null) ? varInfo.getType() : null, value);
         }
@@ -804,7 +1055,7 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f0 -> "this"
      */
     public ExtendedVisitorReturnInfo visit(ThisExpression n, VisitorParameterInfo argu) {
-        return new ExtendedVisitorReturnInfo("this", new MiniJavaType(TypeEnum.CUSTOM, argu.getSupername()), "%this");
+        return new ExtendedVisitorReturnInfo("this", argu.getClassInfo().getType(), thisValue);
     }
 
     /**
@@ -815,36 +1066,48 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f4 -> "]"
      */
     public ExtendedVisitorReturnInfo visit(ArrayAllocationExpression n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r3 = n.f3.accept(this, argu);
-        if (r3 == null) return null;
+        ExtendedVisitorReturnInfo r3 = expressions.value(0);
 
         if (EMIT_COMMENTS) out.emit("    ; array allocation\n");
 
         // check that len >= 0 or throw exception
         String exceptionlabel = nameGenerator.generateLabelName("negative_array_length");
         String oklabel = nameGenerator.generateLabelName("ok_array_length");
-        String exitlabel = nameGenerator.generateLabelName("exit_nal_check");
         String comp = nameGenerator.generateLocalVarName();
 
-        out.emit("    " + comp + " = icmp sge i32 " + r3.getResultVarNameOrConstant() + ", 0\n");
-        out.emit("    br i1 " + comp + ", label %" + oklabel + ", label %" + exceptionlabel + "\n");
-        out.emit(exceptionlabel + ":\n");
+        out.emit("    ").emit(comp).emit(" = icmp sge i32 ").emit(r3.getResultVarNameOrConstant()).emit(", 0\n");
+        out.emit("    br i1 ").emit(comp).emit(", label %").emit(oklabel).emit(", label %").emit(exceptionlabel).emit('\n');
+        out.emit(exceptionlabel).emit(":\n");
         out.emit("    call void @throw_nal()\n");
-        out.emit("    br label %" + exitlabel + "\n");
-        out.emit(oklabel + ":\n");
-
-        String lenplusone = nameGenerator.generateLocalVarName();
-        String arr = nameGenerator.generateLocalVarName();
-        String castedarr = nameGenerator.generateLocalVarName();
-
-        out.emit("    " + lenplusone + " = add i32 " + r3.getResultVarNameOrConstant() + ", 1\n");
-        out.emit("    " + arr + " = call i8* @calloc(i32 4, i32 " + lenplusone + ")\n");
-        out.emit("    " + castedarr + " = bitcast i8* " + arr + " to i32*\n");
+        out.emit("    unreachable\n");
+        emitLabel(oklabel);
+
+        String castedarr;
+        if (canAllocateInStack(n)) castedarr = emitStackAllocation("i32", Integer.parseInt(r3.getResultVarNameOrConstant()) + 1);
+        else if (gcHeapLimit > 0) {
+            String size = emitArraySize(r3.getResultVarNameOrConstant());
+            String arr = nameGenerator.generateLocalVarName();
+            emitSafepoint();
+            out.emit("    ").emit(arr).emit(" = call i8* @gc_alloc(i64 ").emit(size).emit(", i32* null)\n");
+            castedarr = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(castedarr).emit(" = bitcast i8* ").emit(arr).emit(" to i32*\n");
+        }
+        else if (useArena) {
+            String arr = emitHeapAllocation(emitArraySize(r3.getResultVarNameOrConstant()));
+            castedarr = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(castedarr).emit(" = bitcast i8* ").emit(arr).emit(" to i32*\n");
+        }
+        else {
+            String lenplusone = nameGenerator.generateLocalVarName();
+            String arr = nameGenerator.generateLocalVarName();
+            castedarr = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(lenplusone).emit(" = add i32 ").emit(r3.getResultVarNameOrConstant()).emit(", 1\n");
+            out.emit("    ").emit(arr).emit(" = call i8* @calloc(i32 4, i32 ").emit(lenplusone).emit(")\n");
+            out.emit("    ").emit(castedarr).emit(" = bitcast i8* ").emit(arr).emit(" to i32*\n");
+        }
         // (!) Store length of array at its first element - real elements start from 1...
-        out.emit("    store i32 " + r3.getResultVarNameOrConstant() + ", i32* " + castedarr + "\n");
-
-        out.emit("    br label %" + exitlabel + "\n");
-        out.emit(exitlabel + ":\n");
+        out.emit("    store i32 ").emit(r3.getResultVarNameOrConstant()).emit(", i32* ").emit(castedarr).emit('\n');
+        facts.setArrayLength(castedarr, r3.getResultVarNameOrConstant());
 
         if (EMIT_COMMENTS) out.emit("    ; end of array allocation\n");
 
@@ -860,27 +1123,40 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f3 -> ")"
      */
     public ExtendedVisitorReturnInfo visit(AllocationExpression n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r1 = n.f1.accept(this, new VisitorParameterInfo(argu.getName(), argu.getSupername(), argu.getType(), null));  // do not ask for a variable we only want the class name
+        ExtendedVisitorReturnInfo r1 = n.f1.accept(this, argu.withPurpose(VisitorParameterInfo.Purpose.NAME));  // do not ask for a variable we only want the class name
         if (r1 == null) return null;
 
-        ClassInfo classInfo = ST.lookupClass(r1.getName());
+        ClassInfo classInfo = resolved.getAllocatedClass(n);
         if (classInfo == null) { System.err.println("Unknown class allocation"); return null; }   // should not happen
 
-        String newobj = nameGenerator.generateLocalVarName();
+        String newobj;
         String vtableptr = nameGenerator.generateLocalVarName();
         String vtablefirstelem = nameGenerator.generateLocalVarName();
         int numOfMethods = classInfo.getTotalNumberOfMethods();
 
-        if (EMIT_COMMENTS) out.emit("    ; object allocation of \"" + r1.getName() + "\"\n");
+        if (EMIT_COMMENTS) out.emit("    ; object allocation of \"").emit(r1.getName()).emit("\"\n");
 
-        out.emit("    " + newobj + " = call i8* @calloc(i32 " + (classInfo.getNextFieldOffset() + 8) + ", i32 1)\n");
-        out.emit("    " + vtableptr + " = bitcast i8* " + newobj + " to i8***\n");
-        out.emit("    " + vtablefirstelem + " = getelementptr [" + numOfMethods + " x i8*], [" + numOfMethods + " x i8*]* @." + r1.getName() + "_vtable, i32 0, i32 0\n");
-        out.emit("    store i8** " + vtablefirstelem + ", i8*** " + vtableptr + "\n");
+        if (canAllocateInStack(n)) newobj = emitStackAllocation("i8", classInfo.getNextFieldOffset() + 8);
+        else if (gcHeapLimit > 0) {
+            String map = nameGenerator.generateLocalVarName();
+            String mapType = "[" + GarbageCollectorRuntime.getPointerMapLength(classInfo) + " x i32]";
+            newobj = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(map).emit(" = getelementptr ").emit(mapType).emit(", ").emit(mapType).emit("* @.").emit(r1.getName()).emit("_ptrmap, i32 0, i32 0\n");
+            emitSafepoint();
+            out.emit("    ").emit(newobj).emit(" = call i8* @gc_alloc(i64 ").emit(classInfo.getObjectSize()).emit(", i32* ").emit(map).emit(")\n");
+        }
+        else if (useArena) newobj = emitHeapAllocation(Integer.toString(classInfo.getObjectSize()));
+        else {
+            newobj = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(newobj).emit(" = call i8* @calloc(i32 ").emit(classInfo.getNextFieldOffset() + 8).emit(", i32 1)\n");
+        }
+        out.emit("    ").emit(vtableptr).emit(" = bitcast i8* ").emit(newobj).emit(" to i8***\n");
+        out.emit("    ").emit(vtablefirstelem).emit(" = getelementptr [").emit(numOfMethods).emit(" x i8*], [").emit(numOfMethods).emit(" x i8*]* @.").emit(r1.getName()).emit("_vtable, i32 0, i32 0\n");
+        out.emit("    store i8** ").emit(vtablefirstelem).emit(", i8*** ").emit(vtableptr).emit('\n');
 
         if (EMIT_COMMENTS) out.emit("    ; end of object allocation\n");
 
-        ExtendedVisitorReturnInfo res = new ExtendedVisitorReturnInfo(r1.getName(), new MiniJavaType(TypeEnum.CUSTOM, r1.getName()), newobj);
+        ExtendedVisitorReturnInfo res = new ExtendedVisitorReturnInfo(r1.getName(), classInfo.getType(), newobj);
         res.setAlloced(true);    // probably unnecessary here
         return res;
     }
@@ -890,11 +1166,10 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f1 -> Clause()
      */
     public ExtendedVisitorReturnInfo visit(NotExpression n, VisitorParameterInfo argu) {
-        ExtendedVisitorReturnInfo r1 = n.f1.accept(this, argu);
-        if (r1 == null) return null;
+        ExtendedVisitorReturnInfo r1 = expressions.value(0);
 
         String res = nameGenerator.generateLocalVarName();
-        out.emit("    " + res + " = xor i1 " + r1.getResultVarNameOrConstant() + ", 1\n");   // xor with 1 is "not"
+        out.emit("    ").emit(res).emit(" = xor i1 ").emit(r1.getResultVarNameOrConstant()).emit(", 1\n");   // xor with 1 is "not"
 
         return new ExtendedVisitorReturnInfo(MiniJavaType.BOOLEAN, res);
     }
@@ -905,7 +1180,476 @@ public class LLVMCodeGeneratingVisitor extends GJDepthFirst<ExtendedVisitorRetur
      * f2 -> ")"
      */
     public ExtendedVisitorReturnInfo visit(BracketExpression n, VisitorParameterInfo argu) {
-        return n.f1.accept(this, argu);
+        return expressions.walk(n, argu);
+    }
+
+    ///////////////////////
+    ///  SSA helpers    ///
+    ///////////////////////
+
+    /** Starts the entry block of a function: arguments hold their incoming values and local variables start out zeroed */
+    private void startFunctionBody(MethodInfo methodInfo){
+        facts = new RangeFacts();
+        fieldValues = new HashMap<>();
+        comparisons.clear();
+        boundsChecks = 0;
+        removedBoundsChecks = 0;
+        localValues = new HashMap<>();
+        for ( MyPair<String, VariableInfo> v : methodInfo.getVariables() ){
+            localValues.put(v.getFirst(), zeroValue(v.getSecond().getType()));
+        }
+        for ( MyPair<String, VariableInfo> v : methodInfo.getArgList() ){
+            localValues.put(v.getFirst(), "%." + v.getFirst());
+        }
+        inlinedMethods.clear();
+        inlinedMethods.add(methodInfo);
+        currentMethodInfo = methodInfo;
+        rootSlots.clear();
+        pendingRoots.clear();
+        emitLabel("entry");
+        if (escapeAnalysis != null || gcHeapLimit > 0){
+            functionOut = out;
+            out = functionBody;
+        }
+    }
+
+    private void endFunctionBody(String functionName){
+        if (escapeAnalysis != null || gcHeapLimit > 0){
+            out = functionOut;
+            if (!rootSlots.isEmpty()) emitFramePush();
+            out.emitAndClear(entryAllocations);
+            out.emitAndClear(functionBody);
+        }
+        totalBoundsChecks += boundsChecks;
+        totalRemovedBoundsChecks += removedBoundsChecks;
+        if (removedBoundsChecks > 0) removedBoundsChecksPerMethod.put(functionName, removedBoundsChecks);
+    }
+
+    private void emitLabel(String label){
+        out.emit(label).emit(":\n");
+        currentLabel = label;
+        rootedValues.clear();
+    }
+
+    private static String zeroValue(MiniJavaType type){
+        return (type.getTypeEnum() == TypeEnum.INTEGER || type.getTypeEnum() == TypeEnum.BOOLEAN) ? "0" : "null";
+    }
+
+    /** Values found in both a and b */
+    private static Map<String, String> intersect(Map<String, String> a, Map<String, String> b){
+        Map<String, String> both = new HashMap<>();
+        for (Map.Entry<String, String> e : a.entrySet()){
+            if (e.getValue().equals(b.get(e.getKey()))) both.put(e.getKey(), e.getValue());
+        }
+        return both;
+    }
+
+    ///////////////////////
+    ///    Inlining     ///
+    ///////////////////////
+
+    private boolean shouldInline(MethodInfo methodInfo){
+        if (inlineCandidates == null || inlinedMethods.size() > MAX_INLINE_DEPTH || inlinedMethods.contains(methodInfo)) return false;   // (no recursion)
+        return inlineCandidates.getSize(methodInfo) <= inlineBudget * (1 + Math.min(loopDepth, MAX_INLINE_LOOP_DEPTH));
+    }
+
+    /** Generates the code of a method (already known to be the one called) with the given "this" and arguments
+     *  at the call site and returns the value it returns */
+    private String emitInlinedCall(ClassInfo classInfo, String methodName, MethodInfo methodInfo, String obj, List<ExtendedVisitorReturnInfo> args){
+        if (EMIT_COMMENTS) out.emit("    ; inlined ").emit(classInfo.getName()).emit(".").emit(methodName).emit('\n');
+        inlinedCalls++;
+
+        // the method's own variables (renamed simply by having their own map of values)
+        Map<String, String> callerValues = localValues;
+        String callerThis = thisValue;
+        localValues = new HashMap<>();
+        for ( MyPair<String, VariableInfo> v : methodInfo.getVariables() ){
+            localValues.put(v.getFirst(), zeroValue(v.getSecond().getType()));
+        }
+        for (int i = 0 ; i < methodInfo.getNumberOfArguments() ; i++){
+            localValues.put(methodInfo.getArgList().get(i).getFirst(), args.get(i).getResultVarNameOrConstant());
+        }
+        thisValue = obj;
+        fieldValues = new HashMap<>();      // (fields of another object)
+        inlinedMethods.add(methodInfo);
+
+        // (the accesses of the caller's statements are not the ones of the method's returned expression)
+        NodeListOptional callerStatements = currentStatements;
+        currentStatements = null;
+
+        MethodDeclaration declaration = inlineCandidates.getDeclaration(methodInfo);
+        VisitorParameterInfo calleeArgu = inlinedScopes.get(methodInfo);
+        if (calleeArgu == null || calleeArgu.getClassInfo() != classInfo) {
+            calleeArgu = new VisitorParameterInfo(methodName, classInfo.getName(), VisitorParameterInfo.Scope.METHOD, classInfo, methodInfo);
+            inlinedScopes.put(methodInfo, calleeArgu);
+        }
+        visitStatements(declaration.f8, calleeArgu);
+        String ret = declaration.f10.accept(this, calleeArgu).getResultVarNameOrConstant();
+
+        currentStatements = callerStatements;
+        inlinedMethods.remove(inlinedMethods.size() - 1);
+        localValues = callerValues;
+        thisValue = callerThis;
+        fieldValues = new HashMap<>();      // (the method may have changed any field, as if it was called)
+        return ret;
+    }
+
+    ///////////////////////
+    ///   Allocations   ///
+    ///////////////////////
+
+    /** The arena allocator (see HEAP_CHUNK_SIZE): its state and the slow path of emitHeapAllocation() */
+    private void emitArenaRuntime(){
+        out.emit("declare i8* @mmap(i8*, i64, i32, i32, i32, i64)\n" +
+                "\n" +
+                "@_heap_next = internal global i8* null\n" +
+                "@_heap_end = internal global i8* null\n" +
+                "@_cOOM = constant [15 x i8] c\"Out of memory\\0a\\00\"\n\n" +
+                "define i8* @heap_alloc_slow(i64 %size) {\n" +
+                "    %_large = icmp ugt i64 %size, ").emit(LARGE_ALLOCATION_SIZE).emit("\n" +
+                "    %_length = select i1 %_large, i64 %size, i64 ").emit(HEAP_CHUNK_SIZE).emit("\n" +
+                "    %_mem = call i8* @mmap(i8* null, i64 %_length, i32 3, i32 34, i32 -1, i64 0)\n" +   // read | write, private | anonymous
+                "    %_addr = ptrtoint i8* %_mem to i64\n" +
+                "    %_failed = icmp eq i64 %_addr, -1\n" +
+                "    br i1 %_failed, label %out_of_memory, label %mapped\n" +
+                "out_of_memory:\n" +
+                "    call void @print_flush()\n" +
+                "    %_str = bitcast [15 x i8]* @_cOOM to i8*\n" +
+                "    call i32 (i8*, ...) @printf(i8* %_str)\n" +
+                "    call void @exit(i32 1)\n" +
+                "    unreachable\n" +
+                "mapped:\n" +
+                "    br i1 %_large, label %done, label %new_chunk\n" +
+                "new_chunk:\n" +
+                "    %_next = getelementptr i8, i8* %_mem, i64 %size\n" +
+                "    %_end = getelementptr i8, i8* %_mem, i64 ").emit(HEAP_CHUNK_SIZE).emit("\n" +
+                "    store i8* %_next, i8** @_heap_next\n" +
+                "    store i8* %_end, i8** @_heap_end\n" +
+                "    br label %done\n" +
+                "done:\n" +
+                "    ret i8* %_mem\n" +
+                "}\n\n");
+    }
+
+    /** The size in bytes (an i64) of an int array of length len: 4 * (len + 1) rounded up to a multiple of 8 */
+    private String emitArraySize(String len){
+        if (RangeFacts.isConstant(len)) return Long.toString((Long.parseLong(len) + 2) * 4 & ~7L);
+        String len64 = nameGenerator.generateLocalVarName();
+        String lenplustwo = nameGenerator.generateLocalVarName();
+        String bytes = nameGenerator.generateLocalVarName();
+        String size = nameGenerator.generateLocalVarName();
+        out.emit("    ").emit(len64).emit(" = zext i32 ").emit(len).emit(" to i64\n");
+        out.emit("    ").emit(lenplustwo).emit(" = add i64 ").emit(len64).emit(", 2\n");
+        out.emit("    ").emit(bytes).emit(" = shl i64 ").emit(lenplustwo).emit(", 2\n");
+        out.emit("    ").emit(size).emit(" = and i64 ").emit(bytes).emit(", -8\n");
+        return size;
+    }
+
+    /** Emits the allocation of size (an i64, a multiple of 8) zeroed bytes from the arena and returns the pointer to them.
+     *  Allocations larger than LARGE_ALLOCATION_SIZE always take the slow path, which maps them on their own. */
+    private String emitHeapAllocation(String size){
+        String mem = nameGenerator.generateLocalVarName();
+        boolean constant = RangeFacts.isConstant(size);
+        if (constant && Long.parseLong(size) > LARGE_ALLOCATION_SIZE) {
+            out.emit("    ").emit(mem).emit(" = call i8* @heap_alloc_slow(i64 ").emit(size).emit(")\n");
+            return mem;
+        }
+
+        String next = nameGenerator.generateLocalVarName();
+        String end = nameGenerator.generateLocalVarName();
+        String bumped = nameGenerator.generateLocalVarName();
+        String fits = nameGenerator.generateLocalVarName();
+        String slow = nameGenerator.generateLocalVarName();
+        String fastlabel = nameGenerator.generateLabelName("heap_fast");
+        String slowlabel = nameGenerator.generateLabelName("heap_slow");
+        String donelabel = nameGenerator.generateLabelName("heap_done");
+
+        out.emit("    ").emit(next).emit(" = load i8*, i8** @_heap_next\n");
+        out.emit("    ").emit(end).emit(" = load i8*, i8** @_heap_end\n");
+        out.emit("    ").emit(bumped).emit(" = getelementptr i8, i8* ").emit(next).emit(", i64 ").emit(size).emit('\n');
+        out.emit("    ").emit(fits).emit(" = icmp ule i8* ").emit(bumped).emit(", ").emit(end).emit('\n');
+        if (!constant) {
+            String small = nameGenerator.generateLocalVarName();
+            String both = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(small).emit(" = icmp ule i64 ").emit(size).emit(", ").emit(LARGE_ALLOCATION_SIZE).emit('\n');
+            out.emit("    ").emit(both).emit(" = and i1 ").emit(fits).emit(", ").emit(small).emit('\n');
+            fits = both;
+        }
+        out.emit("    br i1 ").emit(fits).emit(", label %").emit(fastlabel).emit(", label %").emit(slowlabel).emit(", !prof !0\n");
+        emitLabel(fastlabel);
+        out.emit("    store i8* ").emit(bumped).emit(", i8** @_heap_next\n");
+        out.emit("    br label %").emit(donelabel).emit('\n');
+        emitLabel(slowlabel);
+        out.emit("    ").emit(slow).emit(" = call i8* @heap_alloc_slow(i64 ").emit(size).emit(")\n");
+        out.emit("    br label %").emit(donelabel).emit('\n');
+        emitLabel(donelabel);
+        out.emit("    ").emit(mem).emit(" = phi i8* [ ").emit(next).emit(", %").emit(fastlabel).emit(" ], [ ").emit(slow).emit(", %").emit(slowlabel).emit(" ]\n");
+        return mem;
+    }
+
+    /** Allocations run at most once per call of the function being generated (not in a loop, inlined ones included) can
+     *  use a slot of its stack frame if their value does not escape */
+    private boolean canAllocateInStack(Node allocation){
+        boolean inStack = escapeAnalysis != null && loopDepth == 0 && escapeAnalysis.canAllocateInStack(allocation);
+        if (inStack) stackAllocations++;
+        else heapAllocations++;
+        return inStack;
+    }
+
+    /** Emits a zeroed stack slot of length elements of elementType in the entry block and returns a pointer to its first element */
+    private String emitStackAllocation(String elementType, int length){
+        String slot = nameGenerator.generateLocalVarName();
+        String ptr = nameGenerator.generateLocalVarName();
+        String bytes = ptr;
+        String arrayType = "[" + length + " x " + elementType + "]";
+        entryAllocations.emit("    ").emit(slot).emit(" = alloca ").emit(arrayType).emit(", align 8\n");
+        entryAllocations.emit("    ").emit(ptr).emit(" = getelementptr ").emit(arrayType).emit(", ").emit(arrayType).emit("* ").emit(slot).emit(", i32 0, i32 0\n");
+        if (!elementType.equals("i8")){
+            bytes = nameGenerator.generateLocalVarName();
+            entryAllocations.emit("    ").emit(bytes).emit(" = bitcast ").emit(elementType).emit("* ").emit(ptr).emit(" to i8*\n");
+        }
+        int size = length * (elementType.equals("i8") ? 1 : 4);
+        entryAllocations.emit("    call void @llvm.memset.p0i8.i32(i8* ").emit(bytes).emit(", i8 0, i32 ").emit(size).emit(", i1 false)\n");
+        return ptr;
     }
 
+    ///////////////////////
+    ///  Shadow stack   ///
+    ///////////////////////
+
+    private static boolean isPointer(MiniJavaType type){
+        return type != null && (type.getTypeEnum() == TypeEnum.CUSTOM || type.getTypeEnum() == TypeEnum.INTARRAY);
+    }
+
+    /** r is a temporary used after the code that comes next (until truncatePendingRoots()) */
+    private void addPendingRoot(ExtendedVisitorReturnInfo r){
+        if (gcHeapLimit > 0 && isPointer(r.getType())) pendingRoots.add(r);
+    }
+
+    private void truncatePendingRoots(int size){
+        while (pendingRoots.size() > size) pendingRoots.remove(pendingRoots.size() - 1);
+    }
+
+    /** Before a call or an allocation: stores every object and array the function still needs in its frame's slots */
+    private void emitSafepoint(){
+        if (gcHeapLimit == 0) return;
+        if (currentMethodInfo != ST.getMainMethodInfo()) emitRootStore("this", thisValue, "i8*");
+        for (MyPair<String, VariableInfo> v : currentMethodInfo.getVariables()){
+            if (isPointer(v.getSecond().getType())) emitRootStore(v.getFirst(), localValues.get(v.getFirst()), v.getSecond().getType().getLLVMType());
+        }
+        for (int i = 0 ; i < pendingRoots.size() ; i++){
+            ExtendedVisitorReturnInfo r = pendingRoots.get(i);
+            emitRootStore("#" + i, r.getResultVarNameOrConstant(), r.getType().getLLVMType());
+        }
+    }
+
+    /** Stores value (of type llvmType) in the slot of root, unless it is there already */
+    private void emitRootStore(String root, String value, String llvmType){
+        Integer slot = rootSlots.get(root);
+        if (slot == null) {
+            slot = rootSlots.size() + 2;     // (after the link to the previous frame and the number of slots)
+            rootSlots.put(root, slot);
+        }
+        if (value.equals(rootedValues.get(slot))) return;
+        rootedValues.put(slot, value);
+        String slotptr = nameGenerator.generateLocalVarName();
+        String casted = value;
+        if (!llvmType.equals("i8*") && !value.equals("null")) {
+            casted = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(casted).emit(" = bitcast ").emit(llvmType).emit(' ').emit(value).emit(" to i8*\n");
+        }
+        out.emit("    ").emit(slotptr).emit(" = getelementptr i8*, i8** %gc_frame, i32 ").emit(slot).emit('\n');
+        out.emit("    store i8* ").emit(casted).emit(", i8** ").emit(slotptr).emit('\n');
+    }
+
+    /** Emits the function's frame (once all its slots are known) and makes it the top of the shadow stack */
+    private void emitFramePush(){
+        int length = rootSlots.size() + 2;
+        String frameType = "[" + length + " x i8*]";
+        out.emit("    %gc_slots = alloca ").emit(frameType).emit('\n');
+        out.emit("    %gc_frame = getelementptr ").emit(frameType).emit(", ").emit(frameType).emit("* %gc_slots, i32 0, i32 0\n");
+        out.emit("    %gc_bytes = bitcast i8** %gc_frame to i8*\n");
+        out.emit("    call void @llvm.memset.p0i8.i32(i8* %gc_bytes, i8 0, i32 ").emit(length * 8).emit(", i1 false)\n");
+        out.emit("    %gc_previous = load i8**, i8*** @gc_top\n");
+        out.emit("    %gc_link = bitcast i8** %gc_previous to i8*\n");
+        out.emit("    store i8* %gc_link, i8** %gc_frame\n");
+        out.emit("    %gc_count = inttoptr i64 ").emit(rootSlots.size()).emit(" to i8*\n");
+        out.emit("    %gc_countptr = getelementptr i8*, i8** %gc_frame, i32 1\n");
+        out.emit("    store i8* %gc_count, i8** %gc_countptr\n");
+        out.emit("    store i8** %gc_frame, i8*** @gc_top\n");
+    }
+
+    /** Before returning: the caller's frame is the top of the shadow stack again */
+    private void emitFramePop(){
+        if (gcHeapLimit > 0 && !rootSlots.isEmpty()) out.emit("    store i8** %gc_previous, i8*** @gc_top\n");
+    }
+
+    ///////////////////////
+    /// Bounds checks   ///
+    ///////////////////////
+
+    /** Visits a list of statements and the statements in them, from a stack instead of recursively: a statement that
+     *  holds others (Block, If, While) pushes what is left to generate of it, the statements it holds included */
+    private void visitStatements(NodeListOptional statements, VisitorParameterInfo argu){
+        int bottom = pendingStatements.size();
+        pushStatements(statements, argu);
+        while (pendingStatements.size() > bottom) pendingStatements.remove(pendingStatements.size() - 1).run();
+    }
+
+    /** Pushes a list of statements, keeping track of which one is generated (see ArrayAccessWindow) */
+    private void pushStatements(NodeListOptional statements, VisitorParameterInfo argu){
+        NodeListOptional outerStatements = currentStatements;
+        int outerStatementIndex = currentStatementIndex;
+        ArrayAccessWindow outerWindow = currentWindow;
+        pendingStatements.add(() -> {
+            currentStatements = outerStatements;
+            currentStatementIndex = outerStatementIndex;
+            currentWindow = outerWindow;
+        });
+        for (int i = statements.size() - 1 ; i >= 0 ; i--){
+            int index = i;
+            pendingStatements.add(() -> {
+                currentStatements = statements;
+                currentStatementIndex = index;
+                currentWindow = null;
+                statements.elementAt(index).accept(this, argu);
+            });
+        }
+    }
+
+    /** Loads an int[] field of "this" only if its value is not known already */
+    private String emitFieldLoad(ClassInfo classInfo, String name, VariableInfo varInfo){
+        boolean isArray = varInfo.getType() == MiniJavaType.INTARRAY;
+        if (isArray && fieldValues.containsKey(name)) return fieldValues.get(name);
+
+        String llvmType = varInfo.getType().getLLVMType();
+        if (EMIT_COMMENTS) out.emit("    ; object field lookup\n");
+        String fieldptr = emitFieldPointer(classInfo, varInfo);
+        String value = nameGenerator.generateLocalVarName();
+        out.emit("    ").emit(value).emit(" = load ").emit(llvmType).emit(", ").emit(llvmType).emit("* ").emit(fieldptr).emit('\n');
+        if (EMIT_COMMENTS) out.emit("    ; end of object field lookup\n");
+
+        if (isArray) fieldValues.put(name, value);
+        return value;
+    }
+
+    /** A pointer (to the field's LLVM type) to a field of "this", an object of classInfo's class or of a subclass of it */
+    private String emitFieldPointer(ClassInfo classInfo, VariableInfo varInfo){
+        String structType = LLVMCodeGenerating.getStructType(classInfo.getName());
+        String object = nameGenerator.generateLocalVarName();
+        String fieldptr = nameGenerator.generateLocalVarName();
+        out.emit("    ").emit(object).emit(" = bitcast i8* ").emit(thisValue).emit(" to ").emit(structType).emit("*\n");
+        out.emit("    ").emit(fieldptr).emit(" = getelementptr ").emit(structType).emit(", ").emit(structType).emit("* ").emit(object).emit(", i32 0, i32 ").emit(varInfo.getIndex()).emit('\n');
+        return fieldptr;
+    }
+
+    /** Emits the check that (unsigned) index < length of array, unless it is known to hold, and goes on in the block where it does.
+     *  arrayName and syntacticIndex (see ArrayAccessWindow) are used to check the accesses that follow to the same array at once. */
+    private void emitBoundsCheck(String array, String index, String arrayName, String[] syntacticIndex){
+        boundsChecks++;
+        if (facts.isInBounds(array, index)){
+            removedBoundsChecks++;
+            if (EMIT_COMMENTS) out.emit("    ; (no bounds check needed)\n");
+            return;
+        }
+
+        String arrlen = facts.getArrayLength(array);
+        if (arrlen == null){
+            arrlen = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(arrlen).emit(" = load i32, i32* ").emit(array).emit('\n');
+            facts.setArrayLength(array, arrlen);
+        }
+
+        // the lowest and highest offsets from the same base accessed from here on without anything observable in between
+        String base = facts.getBase(index);
+        long offset = facts.getOffset(index);
+        long lo = offset, hi = offset;
+        if (arrayName != null && syntacticIndex != null && currentStatements != null){
+            if (currentWindow == null) currentWindow = ArrayAccessWindow.of(currentStatements, currentStatementIndex);
+            long[] range = currentWindow.getRange(arrayName, syntacticIndex[0]);
+            long shift = offset - Long.parseLong(syntacticIndex[1]);      // (the value of the syntactic base is base + shift)
+            if (range != null && range[0] + shift >= 0 && range[1] + shift <= Integer.MAX_VALUE / 2){
+                lo = Math.min(lo, range[0] + shift);
+                hi = Math.max(hi, range[1] + shift);
+            }
+        }
+
+        String exceptionlabel = nameGenerator.generateLabelName("out_of_bounds");
+        String oklabel = nameGenerator.generateLabelName("in_bounds");
+
+        String hiindex = emitIndex(index, base, offset, hi);
+        String comp = nameGenerator.generateLocalVarName();
+        out.emit("    ").emit(comp).emit(" = icmp ult i32 ").emit(hiindex).emit(", ").emit(arrlen).emit('\n');
+        if (lo < hi && !base.equals(RangeFacts.CONSTANT) && !facts.isNonNegative(base)){
+            // (the lowest index must be checked as well, unless base + lo can not be negative)
+            String loindex = emitIndex(index, base, offset, lo);
+            String locomp = nameGenerator.generateLocalVarName();
+            String both = nameGenerator.generateLocalVarName();
+            out.emit("    ").emit(locomp).emit(" = icmp ult i32 ").emit(loindex).emit(", ").emit(arrlen).emit('\n');
+            out.emit("    ").emit(both).emit(" = and i1 ").emit(comp).emit(", ").emit(locomp).emit('\n');
+            comp = both;
+        }
+
+        // (the exception block never returns, so the rest of the code goes on in the in-bounds block)
+        out.emit("    br i1 ").emit(comp).emit(", label %").emit(oklabel).emit(", label %").emit(exceptionlabel).emit('\n');
+        out.emit(exceptionlabel).emit(":\n");
+        out.emit("    call void @throw_oob()\n");
+        out.emit("    unreachable\n");
+        emitLabel(oklabel);
+
+        facts.addCheckedRange(array, base, lo, hi);
+        facts.addNonNegative(index);
+        facts.addLessThan(index, arrlen);
+    }
+
+    /** base + wantedOffset, given that index = base + offset */
+    private String emitIndex(String index, String base, long offset, long wantedOffset){
+        if (wantedOffset == offset) return index;
+        if (base.equals(RangeFacts.CONSTANT)) return String.valueOf(wantedOffset);
+        if (wantedOffset == 0) return base;
+        String res = nameGenerator.generateLocalVarName();
+        out.emit("    ").emit(res).emit(" = add i32 ").emit(base).emit(", ").emit((int) wantedOffset).emit('\n');
+        return res;
+    }
+
+    /** Adds what is known in the block entered when condition is true */
+    private void addConditionFacts(String condition){
+        ArrayList<String[]> conditionComparisons = comparisons.get(condition);
+        if (conditionComparisons == null) return;
+        for (String[] c : conditionComparisons) facts.addLessThan(c[0], c[1]);
+    }
+
+    /** Local int variables whose current value is known to be non-negative */
+    private Set<String> getNonNegativeVariables(MethodInfo methodInfo){
+        Set<String> nonNegative = new HashSet<>();
+        for ( MyPair<String, VariableInfo> v : methodInfo.getVariables() ){
+            if (v.getSecond().getType() == MiniJavaType.INTEGER && facts.isNonNegative(localValues.get(v.getFirst()))) nonNegative.add(v.getFirst());
+        }
+        return nonNegative;
+    }
+
+    /** Number of method calls generated so far */
+    public long getNumberOfMethodCalls() { return methodCalls; }
+
+    /** Number of them made directly instead of through the vtable */
+    public long getNumberOfDevirtualizedCalls() { return devirtualizedCalls; }
+
+    /** Number of them whose method was inlined */
+    public long getNumberOfInlinedCalls() { return inlinedCalls; }
+
+    /** Number of objects and arrays allocated in the heap (code generated so far) */
+    public long getNumberOfHeapAllocations() { return heapAllocations; }
+
+    /** Number of objects and arrays allocated in the stack instead */
+    public long getNumberOfStackAllocations() { return stackAllocations; }
+
+    /** Number of array accesses generated so far */
+    public long getNumberOfBoundsChecks() { return totalBoundsChecks; }
+
+    /** Number of them that needed no bounds check */
+    public long getNumberOfRemovedBoundsChecks() { return totalRemovedBoundsChecks; }
+
+    /** Number of array accesses that needed no bounds check per method ("Class.method", only those with any) */
+    public Map<String, Integer> getRemovedBoundsChecksPerMethod() { return removedBoundsChecksPerMethod; }
+
 }
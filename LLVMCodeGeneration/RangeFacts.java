@@ -0,0 +1,154 @@
+package LLVMCodeGeneration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/** What is known about the (i32 and i32*) SSA values of the method being generated, used to drop array bounds checks:
+ *    - which values are non-negative
+ *    - which values are (signed) less than some other value (from loop and if conditions)
+ *    - the length of array values (array lengths never change once allocated)
+ *    - which index ranges [base + lo, base + hi] have already been checked to be in the bounds of an array value
+ *  Values are register names or integer constants (an index without a base register is a constant one).
+ *  A fact only holds in the code dominated by where it was found, so facts are scoped: mark() before generating a
+ *  branch or a loop body and undo(mark) when leaving it.
+ *  Affine forms (register = base + offset) are not scoped since registers are defined only once.
+ */
+class RangeFacts {
+
+    static final String CONSTANT = "";     // base of constant indices
+
+    private final Map<String, Boolean> nonNegative = new HashMap<>();
+    private final Map<String, ArrayList<String>> upperBounds = new HashMap<>();    // value -> values it is less than
+    private final Map<String, String> arrayLengths = new HashMap<>();              // array -> its length
+    private final Map<String, long[]> checkedRanges = new HashMap<>();             // array + "[" + base -> checked {lo, hi} offsets
+    private final Map<String, String> affineBases = new HashMap<>();               // register -> base
+    private final Map<String, Integer> affineOffsets = new HashMap<>();            // register -> offset (>= 0)
+
+    // (undo log: the map changed, the key and its previous value or null)
+    private final ArrayList<Map<String, ?>> changedMaps = new ArrayList<>();
+    private final ArrayList<String> changedKeys = new ArrayList<>();
+    private final ArrayList<Object> previousValues = new ArrayList<>();
+
+
+    int mark() { return changedKeys.size(); }
+
+    @SuppressWarnings("unchecked")
+    void undo(int mark) {
+        for (int i = changedKeys.size() - 1 ; i >= mark ; i--) {
+            Map<String, Object> map = (Map<String, Object>) changedMaps.get(i);
+            if (previousValues.get(i) == null) map.remove(changedKeys.get(i));
+            else map.put(changedKeys.get(i), previousValues.get(i));
+            changedMaps.remove(i);
+            changedKeys.remove(i);
+            previousValues.remove(i);
+        }
+    }
+
+    private <V> void put(Map<String, V> map, String key, V value) {
+        changedMaps.add(map);
+        changedKeys.add(key);
+        previousValues.add(map.put(key, value));
+    }
+
+    /////////////////////
+    ///   Affine forms ///
+    /////////////////////
+
+    /** register = value + offset, where offset is a non-negative constant */
+    void setAffine(String register, String value, int offset) {
+        String base = getBase(value);
+        long totalOffset = (long) getOffset(value) + offset;
+        if (base.equals(CONSTANT) || totalOffset > Integer.MAX_VALUE / 2) return;
+        affineBases.put(register, base);
+        affineOffsets.put(register, (int) totalOffset);
+    }
+
+    /** Base register of a value, or CONSTANT for integer constants */
+    String getBase(String value) {
+        if (isConstant(value)) return CONSTANT;
+        String base = affineBases.get(value);
+        return (base != null) ? base : value;
+    }
+
+    /** Offset of a value from getBase(value) (the constant itself for constants) */
+    int getOffset(String value) {
+        if (isConstant(value)) return Integer.parseInt(value);
+        Integer offset = affineOffsets.get(value);
+        return (offset != null) ? offset : 0;
+    }
+
+    static boolean isConstant(String value) {
+        char c = value.charAt(0);
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    /////////////////////
+    ///     Ranges     ///
+    /////////////////////
+
+    void addNonNegative(String value) {
+        if (!isConstant(value) && !nonNegative.containsKey(value)) put(nonNegative, value, Boolean.TRUE);
+    }
+
+    boolean isNonNegative(String value) {
+        if (isConstant(value)) return Integer.parseInt(value) >= 0;
+        if (nonNegative.containsKey(value)) return true;
+        // base + 1 can not overflow if base is less than something, so it stays non-negative
+        Integer offset = affineOffsets.get(value);
+        if (offset == null || offset > 1) return false;
+        String base = affineBases.get(value);
+        return nonNegative.containsKey(base) && upperBounds.containsKey(base);
+    }
+
+    /** value < bound (signed) */
+    void addLessThan(String value, String bound) {
+        if (isConstant(value)) return;
+        ArrayList<String> bounds = upperBounds.get(value);
+        if (bounds != null && bounds.contains(bound)) return;      // (nested ifs on the same condition would copy ever longer lists)
+        ArrayList<String> updated = (bounds != null) ? new ArrayList<>(bounds) : new ArrayList<>(1);
+        updated.add(bound);
+        put(upperBounds, value, updated);
+    }
+
+    boolean isLessThan(String value, String bound) {
+        if (isConstant(value) && isConstant(bound)) return Integer.parseInt(value) < Integer.parseInt(bound);
+        ArrayList<String> bounds = upperBounds.get(value);
+        return bounds != null && bounds.contains(bound);
+    }
+
+    /////////////////////
+    ///     Arrays     ///
+    /////////////////////
+
+    void setArrayLength(String array, String length) {
+        if (!arrayLengths.containsKey(array)) put(arrayLengths, array, length);
+        addNonNegative(length);
+    }
+
+    String getArrayLength(String array) { return arrayLengths.get(array); }
+
+    /** All indices from base + lo to base + hi have been checked to be in the bounds of array */
+    void addCheckedRange(String array, String base, long lo, long hi) {
+        String key = array + "[" + base;
+        long[] range = checkedRanges.get(key);
+        if (range != null) {
+            if (range[0] <= lo && hi <= range[1]) return;
+            // (the indices in between two checked ones are in bounds as well)
+            lo = Math.min(lo, range[0]);
+            hi = Math.max(hi, range[1]);
+        }
+        put(checkedRanges, key, new long[] { lo, hi });
+    }
+
+    /** Whether index is known to be within the bounds of array */
+    boolean isInBounds(String array, String index) {
+        String base = getBase(index);
+        long[] range = checkedRanges.get(array + "[" + base);
+        if (range != null && range[0] <= getOffset(index) && getOffset(index) <= range[1]) return true;
+        String length = arrayLengths.get(array);
+        return length != null && isNonNegative(index) && isLessThan(index, length);
+    }
+
+}
@@ -0,0 +1,89 @@
+package LLVMCodeGeneration;
+
+import syntaxtree.*;
+import visitor.DepthFirstVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/** A DepthFirstVisitor that visits statements and expressions nested to any depth without overflowing the Java stack:
+ *  what a Statement, Expression or Clause holds is not visited at once but kept in a stack of its own and visited
+ *  once the node that holds it has been. So the visit of a node ends before the ones of the statements and expressions
+ *  in it start, but these are still visited in the order they are in the program.
+ *  Scanners that count something about where a node is (enclosing loops, ...) keep it in context, which is saved
+ *  with every node kept for later and restored when it is visited.
+ */
+abstract class SyntaxScanner extends DepthFirstVisitor {
+
+    protected int context = 0;
+
+    private final ArrayList<Node> pending = new ArrayList<>();
+    private int[] contexts = new int[16];       // (the context of every pending node)
+
+
+    /** Visits n and everything in it */
+    void scan(Node n) {
+        int bottom = pending.size();
+        int outer = context;
+        scanNode(n, bottom);
+        while (pending.size() > bottom) {
+            context = contexts[pending.size() - 1];
+            scanNode(pending.remove(pending.size() - 1), pending.size());
+        }
+        context = outer;
+    }
+
+    /** Visits n, leaving what it holds in the stack with its first part on top */
+    private void scanNode(Node n, int top) {
+        n.accept(this);
+        for (int i = top, j = pending.size() - 1 ; i < j ; i++, j--) {
+            pending.set(j, pending.set(i, pending.get(j)));
+            int c = contexts[i];
+            contexts[i] = contexts[j];
+            contexts[j] = c;
+        }
+    }
+
+    private void defer(Node n) {
+        if (pending.size() == contexts.length) contexts = Arrays.copyOf(contexts, 2 * contexts.length);
+        contexts[pending.size()] = context;
+        pending.add(n);
+    }
+
+    /**
+     * f0 -> Block()
+     *       | AssignmentStatement()
+     *       | ArrayAssignmentStatement()
+     *       | IfStatement()
+     *       | WhileStatement()
+     *       | PrintStatement()
+     */
+    public void visit(Statement n) {
+        defer(n.f0.choice);
+    }
+
+    /**
+     * f0 -> AndExpression()
+     *       | CompareExpression()
+     *       | PlusExpression()
+     *       | MinusExpression()
+     *       | TimesExpression()
+     *       | ArrayLookup()
+     *       | ArrayLength()
+     *       | MessageSend()
+     *       | Clause()
+     */
+    public void visit(Expression n) {
+        defer(n.f0.choice);
+    }
+
+    /**
+     * f0 -> NotExpression()
+     *       | PrimaryExpression()
+     */
+    public void visit(Clause n) {
+        defer(n.f0.choice);
+    }
+
+}
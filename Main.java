@@ -1,78 +1,175 @@
+import Compiler.CompilationResult;
+import Compiler.Compiler;
 import LLVMCodeGeneration.LLVMCodeGeneratingVisitor;
-import SemanticAnalysis.CreateSymbolTableVisitor;
-import SemanticAnalysis.SemanticCheckingVisitor;
-import SymbolTable.*;
-import syntaxtree.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 class Main {
 
-	private static final boolean DEBUG_MODE = false;                 // set if you want to see debug information of the Symbol Table for correct inputs
+	private static final String SEPARATOR = "----------------------------------------------";
+
+	private static final Compiler compiler = new Compiler();     // (!) shared by all threads
+
+	private static boolean printStatistics = false;
 
     public static void main (String [] args){
-		for (int i = 0 ; i < args.length ; i++){                     // for each input file
-			FileInputStream fis = null;
-			System.out.println("Running program \"" + args[i] + "\"...");
-			try {
-			    fis = new FileInputStream(args[i]);
-			    MiniJavaParser parser = new MiniJavaParser(fis);
-
-			    // Parse input file
-			    Goal root = parser.Goal();
-				System.out.println("[√] Parsed OK!");
-
-				// Create Symbol Table with a first visitor who also catches some semantic errors (that need not the Symbol Table done)
-				SymbolTable symbolTable = new SymbolTable();
-				CreateSymbolTableVisitor STVisitor = new CreateSymbolTableVisitor(symbolTable);
-			    root.accept(STVisitor, null);
-			    if (STVisitor.detectedSemanticError) {
-			    	System.out.println("[x] " + ((STVisitor.errorMsg.equals("")) ? "Semantic error" : "Semantic error " + STVisitor.errorMsg));
-					continue;
+		// options
+		int threads = 1;
+		int serverPort = -1;
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0 ; i < args.length ; i++){
+			if (args[i].equals("-j") && i + 1 < args.length){         // -j <threads> : compile input files in parallel
+				try {
+					threads = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException ex){
+					System.err.println("Invalid number of threads \"" + args[i] + "\"");
+					return;
 				}
-
-			    // Then call a second visitor to check all the rest of semantic errors
-				SemanticCheckingVisitor SCVisitor = new SemanticCheckingVisitor(symbolTable);
-				root.accept(SCVisitor, null);
-				if (SCVisitor.detectedSemanticError){
-					System.out.println("[x] " + ((SCVisitor.errorMsg.equals("")) ? "Semantic error" : "Semantic error " + SCVisitor.errorMsg));
-					continue;
+			}
+			else if (args[i].equals("--inline-budget") && i + 1 < args.length){   // --inline-budget <size> : largest method inlined (0: none)
+				try {
+					compiler.setInlineBudget(Integer.parseInt(args[++i]));
+				} catch (NumberFormatException ex){
+					System.err.println("Invalid inline budget \"" + args[i] + "\"");
+					return;
 				}
+			}
+			else if (args[i].equals("--calloc")){                     // --calloc : allocate with calloc instead of the arena allocator
+				compiler.setArenaAllocation(false);
+			}
+			else if (args[i].equals("--gc")){                         // --gc [MB] : collect garbage, in a heap of at most MB megabytes
+				long limit = LLVMCodeGeneratingVisitor.DEFAULT_GC_HEAP_LIMIT;
+				if (i + 1 < args.length && args[i + 1].matches("\\d+")) limit = Long.parseLong(args[++i]) << 20;
+				compiler.setGarbageCollection(limit);
+			}
+			else if (args[i].equals("--fused")){                      // --fused : fill the symbol table from the declarations only, check in a single traversal
+				compiler.setFusedChecking(true);
+			}
+			else if (args[i].equals("--stats")){                      // --stats : also print phase times and counters of each compilation
+				printStatistics = true;
+			}
+			else if (args[i].equals("--server")){                     // --server [port] : run as a compile daemon (see CompileServer)
+				serverPort = CompileServer.DEFAULT_PORT;
+				if (i + 1 < args.length && args[i + 1].matches("\\d+")) serverPort = Integer.parseInt(args[++i]);
+			}
+			else inputs.add(args[i]);
+		}
 
-				System.out.println("[√] Semantic check OK!");
-
-				// calculate offsets
-				symbolTable.calculateOffsets();
+		if (serverPort >= 0) {
+			try {
+				new CompileServer(serverPort).run();
+			} catch (IOException ex) {
+				System.err.println("Compile server failed: " + ex.getMessage());
+			}
+		}
+		else if (threads > 1 && inputs.size() > 1) compileInParallel(inputs, threads);
+		else compileSequentially(inputs);
+    }
 
-				// Debug:
-				if (DEBUG_MODE) {
-					System.out.println("\nDebug Info is:");
-					symbolTable.printDebugInfo();
-				}
+	private static void compileSequentially(List<String> inputs){
+		for (int i = 0 ; i < inputs.size() ; i++){                   // for each input file
+			compile(inputs.get(i), System.out);
+			if (i + 1 < inputs.size())
+				// Print a line to separate different inputs/outputs
+				System.out.println(SEPARATOR);
+		}
+	}
 
-				// Generate .ll file
-				LLVMCodeGeneratingVisitor LLVMVisitor = new LLVMCodeGeneratingVisitor(symbolTable, convertToLLFile(args[i]));
-				root.accept(LLVMVisitor, null);
-			}
-			catch(ParseException ex){
-			    System.out.println("[x] Parsing error: " + ex.getMessage());
-			}
-			catch(FileNotFoundException ex){
-			    System.out.println(ex.getMessage());
+	private static void compileInParallel(List<String> inputs, int threads){
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			// each input file is compiled by its own task which buffers its own output
+			List<ForkJoinTask<String>> tasks = new ArrayList<>(inputs.size());
+			for (String input : inputs){
+				tasks.add(pool.submit(() -> compileToString(input)));
 			}
-			finally {
-				if (i + 1 < args.length)
+			// then print outputs in input order (as soon as each one is ready)
+			for (int i = 0 ; i < tasks.size() ; i++){
+				System.out.print(tasks.get(i).join());
+				if (i + 1 < tasks.size())
 					// Print a line to separate different inputs/outputs
-					System.out.println("----------------------------------------------");
-			    try {
-					if (fis != null) fis.close();
-			    }
-			    catch (IOException ex){
-					System.err.println(ex.getMessage());
-			    }
+					System.out.println(SEPARATOR);
+				System.out.flush();
 			}
+		} finally {
+			pool.shutdown();
 		}
-    }
+	}
+
+	private static String compileToString(String input){
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(buffer, true);
+		try {
+			compile(input, out);
+		}
+		catch (RuntimeException | StackOverflowError ex){
+			// (!) a failure on one input must not affect the rest of the batch
+			out.println("[x] Internal compiler error: " + ex);
+		}
+		out.flush();
+		return buffer.toString();
+	}
+
+	static boolean compile(String input, PrintStream out){
+		out.println("Running program \"" + input + "\"...");
+		CompilationResult result;
+		try (Reader reader = new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8)) {
+			result = compiler.compile(reader);
+		}
+		catch(FileNotFoundException ex){
+			out.println(ex.getMessage());
+			return false;
+		}
+		catch(IOException ex){
+			out.println(ex.getMessage());
+			return false;
+		}
+
+		for (CompilationResult.Diagnostic d : result.getDiagnostics()){
+			switch (d.getKind()){
+				case LEXICAL_ERROR:
+					out.println("[x] Lexical error: " + d.getMessage());
+					return false;
+				case SYNTAX_ERROR:
+					out.println("[x] Parsing error: " + d.getMessage());
+					return false;
+				case SEMANTIC_ERROR:
+					out.println("[√] Parsed OK!");
+					out.println("[x] " + ((d.getMessage().equals("")) ? "Semantic error" : "Semantic error " + d.getMessage()));
+					return false;
+			}
+		}
+		out.println("[√] Parsed OK!");
+		out.println("[√] Semantic check OK!");
+		if (printStatistics) printStatistics(result, out);
+
+		// Write .ll file
+		try {
+			Files.write(Paths.get(convertToLLFile(input)), result.getLLVMIR().getBytes(StandardCharsets.UTF_8));
+		}
+		catch (IOException ex){
+			out.println("Could not find/create output file: " + ex.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	private static void printStatistics(CompilationResult result, PrintStream out){
+		for (Map.Entry<CompilationResult.Phase, Long> t : result.getPhaseTimes().entrySet()){
+			out.printf("[i] %s: %.3f ms%n", t.getKey(), t.getValue() / 1e6);
+		}
+		for (Map.Entry<String, Long> c : result.getCounters().entrySet()){
+			out.println("[i] " + c.getKey() + ": " + c.getValue());
+		}
+	}
 
 	private static String convertToLLFile(String input){
 		return input.substring(0, input.lastIndexOf('.') + 1) + "ll";
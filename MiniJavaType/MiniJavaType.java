@@ -1,17 +1,27 @@
 package MiniJavaType;
 
 
+/** Custom types should be taken from the compilation's TypeRegistry (SymbolTable.getCustomType()) and primitive
+ *  ones are the constants below, so that there is a single instance of each type and types can be compared by identity.
+ */
 public class MiniJavaType {
     private TypeEnum type = null;
     private String customTypeName = null;
+    private int classId = -1;       // id of the class of a custom type in the SymbolTable (-1 until it is resolved)
+    private final String llvmType;  // (cached since types never change)
+    private final int offset;       // ^^
 
     public MiniJavaType(TypeEnum _type){
         type = _type;
+        llvmType = computeLLVMType();
+        offset = computeOffsetOfType();
     }
 
     public MiniJavaType(String _customTypeName){
         type = TypeEnum.CUSTOM;
         customTypeName = _customTypeName;
+        llvmType = computeLLVMType();
+        offset = computeOffsetOfType();
     }
 
     public MiniJavaType(TypeEnum _type, String _customTypeName){
@@ -23,6 +33,8 @@ public class MiniJavaType {
         } else {
             type = _type;
         }
+        llvmType = computeLLVMType();
+        offset = computeOffsetOfType();
     }
 
     public TypeEnum getTypeEnum() { return type; }
@@ -31,11 +43,22 @@ public class MiniJavaType {
 
     public boolean isCustom() { return type == TypeEnum.CUSTOM && customTypeName != null; }
 
+    public int getClassId() { return classId; }
+
+    /** Only meant to be called by SymbolTable.lookupClass(MiniJavaType) */
+    public void setClassId(int _classId) { classId = _classId; }
+
     public boolean equals(MiniJavaType other){
-        return (this.type == other.type && (this.type != TypeEnum.CUSTOM || (this.getCustomTypeName() != null && this.customTypeName.equals(other.getCustomTypeName()))));
+        if (this == other) return true;
+        if (this.type != other.type) return false;
+        if (this.type != TypeEnum.CUSTOM) return true;
+        if (this.classId >= 0 && other.classId >= 0) return this.classId == other.classId;   // (both resolved)
+        return this.getCustomTypeName() != null && this.customTypeName.equals(other.getCustomTypeName());
     }
 
-    public int getOffsetOfType(){
+    public int getOffsetOfType() { return offset; }
+
+    private int computeOffsetOfType(){
         if (type == TypeEnum.BOOLEAN) return 1;
         else if (type == TypeEnum.INTEGER) return 4;
         else if (type == TypeEnum.INTARRAY) return 8;
@@ -57,7 +80,9 @@ public class MiniJavaType {
     public static final MiniJavaType VOID = new MiniJavaType(null, null);
 
     // LLVM
-    public String getLLVMType(){
+    public String getLLVMType() { return llvmType; }
+
+    private String computeLLVMType(){
         if (type == TypeEnum.CUSTOM) return "i8*";
         else if (type == TypeEnum.INTEGER) return "i32";
         else if (type == TypeEnum.INTARRAY) return "i32*";
@@ -0,0 +1,36 @@
+package MiniJavaType;
+
+import java.util.Arrays;
+
+
+/** Hands out one canonical MiniJavaType per class name (kept by the id of the name, see Util.Names) for a single
+ *  compilation (one per SymbolTable), so that types never need to be allocated again while visiting and can be
+ *  compared by identity.
+ *  Primitive types are the MiniJavaType constants.
+ */
+public class TypeRegistry {
+
+    private MiniJavaType[] customTypes = new MiniJavaType[16];     // class name id -> its type
+    private int types = 0;
+    private long requests = 0;
+
+
+    public MiniJavaType getCustomType(int classNameId, String className) {
+        requests++;
+        if (classNameId >= customTypes.length) customTypes = Arrays.copyOf(customTypes, Math.max(2 * customTypes.length, classNameId + 1));
+        MiniJavaType type = customTypes[classNameId];
+        if (type == null) {
+            type = new MiniJavaType(TypeEnum.CUSTOM, className);
+            customTypes[classNameId] = type;
+            types++;
+        }
+        return type;
+    }
+
+    /** Number of types asked for (each one used to be a new MiniJavaType) */
+    public long getNumberOfRequests() { return requests; }
+
+    /** Number of MiniJavaType instances actually created */
+    public int getNumberOfTypes() { return types; }
+
+}
@@ -0,0 +1,161 @@
+; Runtime of the programs generated by the MiniJava compiler, linked with every one of them (see "make runtime").
+;
+; System.out.println goes through a buffer that is written to stdout when it is full, before a runtime error and
+; when main returns (@print_flush), instead of calling printf for every number. Numbers are formatted from the
+; end, two digits at a time from a table, and the number of digits is counted without branches.
+
+declare i64 @write(i32, i8*, i64)
+declare void @exit(i32)
+
+@print_buffer = internal global [65536 x i8] zeroinitializer
+@print_length = internal global i64 0
+@digit_pairs = internal constant [200 x i8] c"00010203040506070809101112131415161718192021222324252627282930313233343536373839404142434445464748495051525354555657585960616263646566676869707172737475767778798081828384858687888990919293949596979899"
+@_cOOB = internal constant [15 x i8] c"Out of bounds\0a\00"
+@_cNAL = internal constant [23 x i8] c"Negative array length\0a\00"
+
+define void @print_flush() {
+entry:
+    %length = load i64, i64* @print_length
+    br label %loop
+loop:
+    %done = phi i64 [0, %entry], [%next, %written]
+    %left = icmp slt i64 %done, %length
+    br i1 %left, label %write, label %exit
+write:
+    %from = getelementptr [65536 x i8], [65536 x i8]* @print_buffer, i64 0, i64 %done
+    %count = sub i64 %length, %done
+    %wrote = call i64 @write(i32 1, i8* %from, i64 %count)
+    %failed = icmp slt i64 %wrote, 1
+    br i1 %failed, label %exit, label %written
+written:
+    %next = add i64 %done, %wrote
+    br label %loop
+exit:
+    store i64 0, i64* @print_length
+    ret void
+}
+
+; (at most 12 bytes: "-2147483648\n")
+define void @print_int(i32 %i) {
+entry:
+    %length = load i64, i64* @print_length
+    %full = icmp ugt i64 %length, 65524
+    br i1 %full, label %flush, label %format
+flush:
+    call void @print_flush()
+    br label %format
+format:
+    %start = phi i64 [%length, %entry], [0, %flush]
+    %negative = icmp slt i32 %i, 0
+    %negated = sub i32 0, %i
+    %abs = select i1 %negative, i32 %negated, i32 %i      ; (unsigned from here on, for -2147483648)
+
+    ; digits = 1 + (abs >= 10) + (abs >= 100) + ... + (abs >= 10^9)
+    %ge1 = icmp uge i32 %abs, 10
+    %ge2 = icmp uge i32 %abs, 100
+    %ge3 = icmp uge i32 %abs, 1000
+    %ge4 = icmp uge i32 %abs, 10000
+    %ge5 = icmp uge i32 %abs, 100000
+    %ge6 = icmp uge i32 %abs, 1000000
+    %ge7 = icmp uge i32 %abs, 10000000
+    %ge8 = icmp uge i32 %abs, 100000000
+    %ge9 = icmp uge i32 %abs, 1000000000
+    %d1 = zext i1 %ge1 to i64
+    %d2 = zext i1 %ge2 to i64
+    %d3 = zext i1 %ge3 to i64
+    %d4 = zext i1 %ge4 to i64
+    %d5 = zext i1 %ge5 to i64
+    %d6 = zext i1 %ge6 to i64
+    %d7 = zext i1 %ge7 to i64
+    %d8 = zext i1 %ge8 to i64
+    %d9 = zext i1 %ge9 to i64
+    %s1 = add i64 %d1, %d2
+    %s2 = add i64 %d3, %d4
+    %s3 = add i64 %d5, %d6
+    %s4 = add i64 %d7, %d8
+    %s5 = add i64 %s1, %s2
+    %s6 = add i64 %s3, %s4
+    %s7 = add i64 %s5, %s6
+    %s8 = add i64 %s7, %d9
+    %digits = add i64 %s8, 1
+    %sign = zext i1 %negative to i64
+    %width = add i64 %digits, %sign
+    %newline = add i64 %start, %width
+    %end = add i64 %newline, 1
+    br label %pairs
+
+pairs:                                                  ; two digits at a time, from the last ones
+    %value = phi i32 [%abs, %format], [%quotient, %pair]
+    %at = phi i64 [%newline, %format], [%before, %pair]
+    %more = icmp uge i32 %value, 100
+    br i1 %more, label %pair, label %last
+pair:
+    %quotient = udiv i32 %value, 100
+    %hundreds = mul i32 %quotient, 100
+    %remainder = sub i32 %value, %hundreds
+    %before = sub i64 %at, 2
+    call void @print_pair(i32 %remainder, i64 %before)
+    br label %pairs
+
+last:                                                   ; one or two digits left, then the sign and the newline
+    %two = icmp uge i32 %value, 10
+    %back = select i1 %two, i64 2, i64 1
+    %first = sub i64 %at, %back
+    %index = zext i32 %value to i64
+    %tens = shl i64 %index, 1
+    %skip = zext i1 %two to i64
+    %high = xor i64 %skip, 1
+    %digit = add i64 %tens, %high
+    %digitp = getelementptr [200 x i8], [200 x i8]* @digit_pairs, i64 0, i64 %digit
+    %c = load i8, i8* %digitp
+    %lastp = getelementptr [65536 x i8], [65536 x i8]* @print_buffer, i64 0, i64 %first
+    store i8 %c, i8* %lastp
+    %units = add i64 %tens, 1
+    %unitsp = getelementptr [200 x i8], [200 x i8]* @digit_pairs, i64 0, i64 %units
+    %u = load i8, i8* %unitsp
+    %unitsat = sub i64 %at, 1
+    %unitsdest = getelementptr [65536 x i8], [65536 x i8]* @print_buffer, i64 0, i64 %unitsat
+    store i8 %u, i8* %unitsdest
+    %minusat = select i1 %negative, i64 %start, i64 %newline    ; (positive: where the newline goes)
+    %minusp = getelementptr [65536 x i8], [65536 x i8]* @print_buffer, i64 0, i64 %minusat
+    store i8 45, i8* %minusp
+    %newlinep = getelementptr [65536 x i8], [65536 x i8]* @print_buffer, i64 0, i64 %newline
+    store i8 10, i8* %newlinep
+    store i64 %end, i64* @print_length
+    ret void
+}
+
+define internal void @print_pair(i32 %pair, i64 %at) {
+    %index = zext i32 %pair to i64
+    %tens = shl i64 %index, 1
+    %units = add i64 %tens, 1
+    %tensp = getelementptr [200 x i8], [200 x i8]* @digit_pairs, i64 0, i64 %tens
+    %unitsp = getelementptr [200 x i8], [200 x i8]* @digit_pairs, i64 0, i64 %units
+    %t = load i8, i8* %tensp
+    %u = load i8, i8* %unitsp
+    %dest = getelementptr [65536 x i8], [65536 x i8]* @print_buffer, i64 0, i64 %at
+    %next = add i64 %at, 1
+    %destnext = getelementptr [65536 x i8], [65536 x i8]* @print_buffer, i64 0, i64 %next
+    store i8 %t, i8* %dest
+    store i8 %u, i8* %destnext
+    ret void
+}
+
+define internal void @print_error(i8* %message, i64 %length) {
+    call void @print_flush()
+    %wrote = call i64 @write(i32 1, i8* %message, i64 %length)
+    call void @exit(i32 1)
+    unreachable
+}
+
+define void @throw_oob() {
+    %message = bitcast [15 x i8]* @_cOOB to i8*
+    call void @print_error(i8* %message, i64 14)
+    unreachable
+}
+
+define void @throw_nal() {
+    %message = bitcast [23 x i8]* @_cNAL to i8*
+    call void @print_error(i8* %message, i64 22)
+    unreachable
+}
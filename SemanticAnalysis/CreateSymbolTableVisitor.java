@@ -2,6 +2,7 @@ package SemanticAnalysis;
 
 import MiniJavaType.*;
 import SymbolTable.*;
+import Util.NameToken;
 import Util.VisitorParameterInfo;
 import Util.VisitorReturnInfo;
 import syntaxtree.*;
@@ -13,7 +14,9 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     // Fields used to detect error and stop DFS
     public boolean detectedSemanticError = false;
     public String errorMsg = "";
+    public int errorLine = -1;      // (the line errorMsg is about, -1 if not known)
     public SymbolTable ST;
+    private long visits = 0;
 
     public CreateSymbolTableVisitor(SymbolTable _ST){
         super();
@@ -24,6 +27,28 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
         }
     }
 
+    /** Number of nodes visited so far (by the visit()s of this class) */
+    public long getNumberOfVisits() { return visits; }
+
+
+    /**
+    * f0 -> MainClass()
+    * f1 -> ( TypeDeclaration() )*
+    * f2 -> <EOF>
+    */
+    public VisitorReturnInfo visit(Goal n, VisitorParameterInfo argu) {
+        visits++;
+        n.f0.accept(this, argu);
+        n.f1.accept(this, argu);
+        n.f2.accept(this, argu);
+        // Symbol Table is complete: flatten every class's inherited fields and methods, number the class hierarchy and find overridden methods once
+        if (!detectedSemanticError) {
+            ST.buildClassLayouts();
+            ST.numberClassHierarchy();
+            ST.analyzeClassHierarchy();
+        }
+        return null;
+    }
 
     /**
     * f0 -> "class"
@@ -46,6 +71,7 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     * f17 -> "}"
     */
     public VisitorReturnInfo visit(MainClass n, VisitorParameterInfo argu)  {
+        visits++;
         n.f0.accept(this, null);
         VisitorReturnInfo r1 = n.f1.accept(this, null);      // r1 -> main class name
         if (r1 == null) return null;
@@ -60,11 +86,11 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
         n.f10.accept(this, null);
         VisitorReturnInfo r11 = n.f11.accept(this, null);
         if (r11 == null) return null;
-        ST.setMainClassNameAndArg(r1.getName(), r11.getName());
+        ST.setMainClassNameAndArg(r1.getNameId(), r11.getNameId());
         n.f12.accept(this, null);
         n.f13.accept(this, null);
-        n.f14.accept(this, new VisitorParameterInfo(null, "mainclass"));
-        n.f15.accept(this, null);
+        n.f14.accept(this, new VisitorParameterInfo(null, null, VisitorParameterInfo.Scope.MAIN));
+        //n.f15.accept(this, null);  // no need to check statements
         n.f16.accept(this, null);
         n.f17.accept(this, null);
         return null;
@@ -80,17 +106,21 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(ClassDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, null);
         VisitorReturnInfo r1 = n.f1.accept(this, null);
         if (r1 == null) return null;
-        if (!ST.putClass(r1.getName(), new ClassInfo())){
+        ClassInfo classInfo = new ClassInfo();
+        if (!ST.putClass(r1.getNameId(), classInfo)){
             this.detectedSemanticError = true;
+            this.errorLine = r1.getBeginLine();
             this.errorMsg = SemanticErrors.duplicateClass(r1.getName(), r1.getBeginLine());
             return null;
         }
         n.f2.accept(this, null);
-        n.f3.accept(this, new VisitorParameterInfo(r1.getName(), "class"));
-        n.f4.accept(this, new VisitorParameterInfo(r1.getName(), "class"));
+        VisitorParameterInfo classScope = new VisitorParameterInfo(r1.getName(), null, VisitorParameterInfo.Scope.CLASS, classInfo, null);
+        n.f3.accept(this, classScope);
+        n.f4.accept(this, classScope);
         n.f5.accept(this, null);
         return null;
     }
@@ -107,6 +137,7 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(ClassExtendsDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, null);
         VisitorReturnInfo r1 = n.f1.accept(this, null);
         if (r1 == null) return null;
@@ -114,20 +145,24 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
         VisitorReturnInfo r3 = n.f3.accept(this, null);
         if (r3 == null) return null;
 
-        ClassInfo motherClass = ST.lookupClass(r3.getName());
+        ClassInfo motherClass = ST.lookupClass(r3.getNameId());
         if (motherClass == null){  // in "class B extends A", if A is not defined previously then error
             this.detectedSemanticError = true;
+            this.errorLine = r3.getBeginLine();
             this.errorMsg = SemanticErrors.extendingNonDefinedYet(r1.getName(), r3.getName(), r3.getBeginLine());
             return null;
         }
-        if (!ST.putClass(r1.getName(), new ClassInfo(r3.getName(), motherClass))){
+        ClassInfo classInfo = new ClassInfo(r3.getName(), motherClass);
+        if (!ST.putClass(r1.getNameId(), classInfo)){
             this.detectedSemanticError = true;
+            this.errorLine = r1.getBeginLine();
             this.errorMsg = SemanticErrors.duplicateClass(r1.getName(), r1.getBeginLine());
             return null;
         }
         n.f4.accept(this, null);
-        n.f5.accept(this, new VisitorParameterInfo(r1.getName(), r3.getName(), "class"));
-        n.f6.accept(this, new VisitorParameterInfo(r1.getName(), r3.getName(), "class"));
+        VisitorParameterInfo classScope = new VisitorParameterInfo(r1.getName(), r3.getName(), VisitorParameterInfo.Scope.CLASS, classInfo, null);
+        n.f5.accept(this, classScope);
+        n.f6.accept(this, classScope);
         n.f7.accept(this, null);
         return null;
     }
@@ -139,37 +174,41 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(VarDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r0 = n.f0.accept(this, null);
         VisitorReturnInfo r1 = n.f1.accept(this, null);
         if (r0 == null || r1 == null) return null;
         boolean feedback;
-        switch(argu.getType()){
-            case "mainclass":
-                feedback = ST.putMainVariable(r1.getName(),  new VariableInfo(r0.getType()));
+        switch(argu.getScope()){
+            case MAIN:
+                feedback = ST.putMainVariable(r1.getNameId(),  new VariableInfo(r0.getType()));
                 if (!feedback){
                     this.detectedSemanticError = true;
+                    this.errorLine = r1.getBeginLine();
                     this.errorMsg = SemanticErrors.duplicateVarDeclaration(r1.getName(), r1.getBeginLine());
                     return null;
                 }
                 break;
-            case "class":
-                feedback = ST.putField(argu.getName(), r1.getName(), new VariableInfo(r0.getType()));
+            case CLASS:
+                feedback = ST.putField(argu.getClassInfo(), r1.getNameId(), new VariableInfo(r0.getType()));
                 if (!feedback){
                     this.detectedSemanticError = true;
+                    this.errorLine = r1.getBeginLine();
                     this.errorMsg = SemanticErrors.duplicateFieldDeclaration(argu.getName(), r1.getName(), r1.getBeginLine());
                     return null;
                 }
                 break;
-            case "method":
-                feedback = ST.putVariable(argu.getSupername(), argu.getName(), r1.getName(), new VariableInfo(r0.getType()));
+            case METHOD:
+                feedback = ST.putVariable(argu.getMethodInfo(), r1.getNameId(), new VariableInfo(r0.getType()));
                 if (!feedback){
                     this.detectedSemanticError = true;
+                    this.errorLine = r1.getBeginLine();
                     this.errorMsg = SemanticErrors.duplicateVarDeclaration(argu.getSupername(), argu.getName(), r1.getName(), r1.getBeginLine());
                     return null;
                 }
                 break;
             default:
-                System.err.println("Error: invalid type parameter in visit(VarDeclaration)! Please debug...");
+                System.err.println("Error: invalid scope parameter in visit(VarDeclaration)! Please debug...");
                 return null;
         }
         n.f2.accept(this, null);
@@ -193,31 +232,36 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(MethodDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, null);
         VisitorReturnInfo r1 = n.f1.accept(this, null);
         VisitorReturnInfo r2 = n.f2.accept(this, null);
         if (r1 == null || r2 == null) return null;
 
-        if (!ST.putMethod(argu.getName(), r2.getName(), new MethodInfo(r1.getType()))){
+        MethodInfo methodInfo = new MethodInfo(r1.getType());
+        if (!ST.putMethod(argu.getClassInfo(), r2.getNameId(), methodInfo)){
             this.detectedSemanticError = true;
+            this.errorLine = r2.getBeginLine();
             this.errorMsg = SemanticErrors.duplicateMethodDeclaration(argu.getName(), r2.getName(), r2.getBeginLine());
             return null;
         }
 
         n.f3.accept(this, null);
-        n.f4.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(),"method"));
+        VisitorParameterInfo methodScope = new VisitorParameterInfo(r2.getName(), argu.getName(), VisitorParameterInfo.Scope.METHOD, argu.getClassInfo(), methodInfo);
+        n.f4.accept(this, methodScope);
         n.f5.accept(this, null);
         n.f6.accept(this, null);
-        n.f7.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(),"method"));
+        n.f7.accept(this, methodScope);
         //n.f8.accept(this, null);   // no need to check statements
         n.f9.accept(this, null);
-        n.f10.accept(this, null);
+        //n.f10.accept(this, null);  // nor the returned expression
         n.f11.accept(this, null);
         n.f12.accept(this, null);
 
         // (!) Have to check after method declaration is added to SymbolTable so that it has all the arguments, etc
-        if (!SemanticChecks.checkThatIfOverrideThenCorrect(ST, argu.getName(), r2.getName())){
+        if (!SemanticChecks.checkThatIfOverrideThenCorrect(argu.getClassInfo(), r2.getNameId())){
             this.detectedSemanticError = true;
+            this.errorLine = r2.getBeginLine();
             this.errorMsg = SemanticErrors.invalidOverride(argu.getName(), r2.getName(), r2.getBeginLine());
             return null;
         }
@@ -231,6 +275,7 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(FormalParameterList n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, argu);
         n.f1.accept(this, argu);
         return null;
@@ -242,12 +287,14 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(FormalParameter n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r0 = n.f0.accept(this, null);
         VisitorReturnInfo r1 = n.f1.accept(this, null);
         if (r0 == null || r1 == null) return null;
-        boolean feedback = ST.putArgument(argu.getSupername(), argu.getName(), r1.getName(), new VariableInfo(r0.getType()));
+        boolean feedback = ST.putArgument(argu.getMethodInfo(), r1.getNameId(), new VariableInfo(r0.getType()));
         if (!feedback){
             this.detectedSemanticError = true;
+            this.errorLine = r1.getBeginLine();
             this.errorMsg = SemanticErrors.duplicateFormalParameter(argu.getSupername(), argu.getName(), r1.getName(), r1.getBeginLine());
             return null;
         }
@@ -259,6 +306,7 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(FormalParameterTail n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, argu);
         return null;
     }
@@ -269,6 +317,7 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(FormalParameterTerm n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, null);
         n.f1.accept(this, argu);
         return null;
@@ -282,7 +331,8 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(Type n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        return n.f0.accept(this, new VisitorParameterInfo(null, null, null, "getTypeEnum"));  // getTypeEnum is used in Identifier()'s visit() for custom types
+        visits++;
+        return n.f0.accept(this, VisitorParameterInfo.TYPES);  // (the purpose is used in Identifier()'s visit() for custom types)
     }
 
     /**
@@ -292,6 +342,7 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(ArrayType n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, null);
         n.f1.accept(this, null);
         n.f2.accept(this, null);
@@ -303,6 +354,7 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(BooleanType n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return new VisitorReturnInfo(MiniJavaType.BOOLEAN);
     }
 
@@ -311,6 +363,7 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(IntegerType n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return new VisitorReturnInfo(MiniJavaType.INTEGER);
     }
 
@@ -319,8 +372,10 @@ public class CreateSymbolTableVisitor extends GJDepthFirst<VisitorReturnInfo, Vi
     */
     public VisitorReturnInfo visit(Identifier n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        if (argu != null && argu.getPurpose().equals("getTypeEnum")) return new VisitorReturnInfo(n.f0.toString(), new MiniJavaType(TypeEnum.CUSTOM, n.f0.toString()), n.f0.beginLine);
-        else return new VisitorReturnInfo(n.f0.toString(), null, n.f0.beginLine);
+        visits++;
+        int nameId = NameToken.of(n);
+        if (argu != null && argu.getPurpose() == VisitorParameterInfo.Purpose.TYPE) return new VisitorReturnInfo(n.f0.toString(), nameId, ST.getCustomType(nameId), n.f0.beginLine);
+        else return new VisitorReturnInfo(n.f0.toString(), nameId, null, n.f0.beginLine);
     }
 
 }
@@ -0,0 +1,55 @@
+package SemanticAnalysis;
+
+import SymbolTable.ClassInfo;
+import SymbolTable.MethodInfo;
+import SymbolTable.VariableInfo;
+import syntaxtree.*;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+
+/** What the semantic checks resolved the names of the program to, kept by node (each node is a single use of the name)
+ *  so that code generation does not have to look them up again: the variable of every identifier used as a variable
+ *  and where it is stored, the method called by every message send with the class of its receiver's static type, and
+ *  the class of every object allocation.
+ *  Resolutions only depend on where a node is in the program, so they also hold when a method's body is inlined.
+ */
+public class ResolvedSymbols {
+
+    public enum Storage { LOCAL, FIELD, MAIN_LOCAL }     // (arguments are locals)
+
+    private final Map<Identifier, VariableInfo> variables = new IdentityHashMap<>();
+    private final Map<VariableInfo, Storage> storages = new IdentityHashMap<>();    // (a variable is always stored in the same place)
+    private final Map<MessageSend, MethodInfo> methods = new IdentityHashMap<>();
+    private final Map<Node, ClassInfo> classes = new IdentityHashMap<>();    // receiver class of a MessageSend, allocated class of an AllocationExpression
+
+
+    void putVariable(Identifier n, VariableInfo varInfo) { variables.put(n, varInfo); }
+
+    void putStorage(VariableInfo varInfo, Storage storage) { storages.put(varInfo, storage); }
+
+    void putCall(MessageSend n, MethodInfo methodInfo, ClassInfo receiverClass) {
+        methods.put(n, methodInfo);
+        classes.put(n, receiverClass);
+    }
+
+    void putAllocation(AllocationExpression n, ClassInfo classInfo) { classes.put(n, classInfo); }
+
+    /** The variable an identifier used as a variable (in an expression or as the target of an assignment) refers to */
+    public VariableInfo getVariable(Identifier n) { return variables.get(n); }
+
+    /** Where a variable found by getVariable() is stored */
+    public Storage getStorage(VariableInfo varInfo) { return storages.get(varInfo); }
+
+    /** The method a message send calls, as found in the class of its receiver's static type (see getReceiverClass()) */
+    public MethodInfo getMethod(MessageSend n) { return methods.get(n); }
+
+    public ClassInfo getReceiverClass(MessageSend n) { return classes.get(n); }
+
+    public ClassInfo getAllocatedClass(AllocationExpression n) { return classes.get(n); }
+
+    /** Number of nodes resolved */
+    public int size() { return variables.size() + classes.size(); }     // (every call has its receiver class)
+
+}
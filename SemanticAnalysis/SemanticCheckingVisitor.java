@@ -2,29 +2,69 @@ package SemanticAnalysis;
 
 import MiniJavaType.*;
 import SymbolTable.*;
-import Util.ExtendedVisitorParameterInfo;
+import Util.ExpressionWalker;
+import Util.NameToken;
 import Util.VisitorParameterInfo;
 import Util.VisitorReturnInfo;
 import syntaxtree.*;
 import visitor.GJDepthFirst;
 
+import java.util.ArrayList;
+
 
 public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, VisitorParameterInfo> {
 
     // Fields used to detect error and stop DFS
     public boolean detectedSemanticError = false;
     public String errorMsg = "";
+    public int errorLine = -1;      // (the line errorMsg is about, -1 if not known)
     public SymbolTable ST;
+    private final ResolvedSymbols resolved = new ResolvedSymbols();
+    private final ArrayList<Node> pendingStatements = new ArrayList<>();      // (see checkStatements())
+    private final SignatureScanner signatures;      // the declarations, if already read by it (else they are visited)
+    private long visits = 0;
+
+    // expressions are walked without recursion, the arguments of a call are checked as soon as each one is visited
+    private final ExpressionWalker<VisitorReturnInfo, VisitorParameterInfo> expressions = new ExpressionWalker<VisitorReturnInfo, VisitorParameterInfo>(this) {
+        protected boolean visited(Frame frame, int i, VisitorReturnInfo value, VisitorParameterInfo argu) {
+            if (!(frame.getNode() instanceof MessageSend)) return true;
+            if (i == 0) return checkCallee((MessageSend) frame.getNode(), value, argu);
+            return checkArgument((MessageSend) frame.getNode(), i - 1, value, argu);
+        }
+    };
 
     public SemanticCheckingVisitor(SymbolTable _ST){
+        this(_ST, null);
+    }
+
+    /** To check a program whose Symbol Table was filled by a SignatureScanner: its declarations are not visited again,
+     *  only the classes it kept as types of declarations are checked to exist, with the bodies */
+    public SemanticCheckingVisitor(SymbolTable _ST, SignatureScanner _signatures){
         super();
         this.ST = _ST;
+        this.signatures = _signatures;
         if (_ST == null) {
             this.detectedSemanticError = true;
             this.errorMsg = "Null Symbol Table parameter given";
         }
     }
 
+    /** What every variable use, method call and allocation of the program was resolved to (complete if no error was found) */
+    public ResolvedSymbols getResolvedSymbols() { return resolved; }
+
+    /** Number of nodes visited so far (by the visit()s of this class) */
+    public long getNumberOfVisits() { return visits; }
+
+    /** Remembers what a variable use was resolved to, and the first time the variable is used where it is stored: a local
+     *  of main, else a local (or argument) of the method or a field */
+    private void resolveVariable(Identifier n, VariableInfo varInfo, VisitorParameterInfo argu) {
+        resolved.putVariable(n, varInfo);
+        if (resolved.getStorage(varInfo) != null) return;
+        if (argu.isMain()) resolved.putStorage(varInfo, ResolvedSymbols.Storage.MAIN_LOCAL);
+        else if (argu.getMethodInfo() != null && argu.getMethodInfo().getVariableInfo(NameToken.of(n)) == varInfo) resolved.putStorage(varInfo, ResolvedSymbols.Storage.LOCAL);
+        else resolved.putStorage(varInfo, ResolvedSymbols.Storage.FIELD);
+    }
+
     /**
      * f0 -> "class"
      * f1 -> Identifier()
@@ -47,8 +87,11 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(MainClass n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        n.f14.accept(this, new VisitorParameterInfo("main", ST.getMainClassName(), "main"));
-        n.f15.accept(this, new VisitorParameterInfo("main", ST.getMainClassName(), "main"));
+        visits++;
+        VisitorParameterInfo mainScope = new VisitorParameterInfo("main", ST.getMainClassName(), VisitorParameterInfo.Scope.MAIN, ST.getMainClassInfo(), ST.getMainMethodInfo());
+        if (signatures != null) checkClassTypes(n, mainScope);
+        else n.f14.accept(this, mainScope);
+        checkStatements(n.f15, mainScope);
         return null;
     }
 
@@ -58,6 +101,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(TypeDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return n.f0.accept(this, argu);
     }
 
@@ -71,10 +115,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(ClassDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r1 = n.f1.accept(this, null);
         if (r1 == null) return null;
-        n.f3.accept(this, new VisitorParameterInfo(r1.getName(), "method"));
-        n.f4.accept(this, new VisitorParameterInfo(r1.getName(), "method"));    // pass class name
+        ClassInfo classInfo = ST.lookupClass(r1.getNameId());
+        VisitorParameterInfo classScope = new VisitorParameterInfo(r1.getName(), null, VisitorParameterInfo.Scope.CLASS, classInfo, null);
+        if (signatures != null) checkClassTypes(n, classScope);
+        else n.f3.accept(this, classScope);
+        n.f4.accept(this, classScope);    // pass class name
         return null;
     }
 
@@ -90,11 +138,15 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(ClassExtendsDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r1 = n.f1.accept(this, null);
         if (r1 == null) return null;
         //n.f3.accept(this, argu);  // this is checked by previous visitor
-        n.f5.accept(this, new VisitorParameterInfo(r1.getName(),"method"));
-        n.f6.accept(this, new VisitorParameterInfo(r1.getName(),"method"));     // pass class name
+        ClassInfo classInfo = ST.lookupClass(r1.getNameId());
+        VisitorParameterInfo classScope = new VisitorParameterInfo(r1.getName(), null, VisitorParameterInfo.Scope.CLASS, classInfo, null);
+        if (signatures != null) checkClassTypes(n, classScope);
+        else n.f5.accept(this, classScope);
+        n.f6.accept(this, classScope);     // pass class name
         return null;
     }
 
@@ -105,13 +157,15 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(VarDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r0 = n.f0.accept(this, null);
         if (r0 == null) return null;
 
         // if custom type then check that it exists
-        if (r0.getType().getTypeEnum() == TypeEnum.CUSTOM && ST.lookupClass(r0.getType().getCustomTypeName()) == null ){
+        if (r0.getType().getTypeEnum() == TypeEnum.CUSTOM && ST.lookupClass(r0.getType()) == null ){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.nonExistantType("variable declaration", r0.getName(), r0.getBeginLine());
             } else if (argu.getSupername() == null){
                 this.errorMsg = SemanticErrors.nonExistantType(argu.getName(), "field declaration", r0.getName(), r0.getBeginLine());
@@ -141,29 +195,41 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(MethodDeclaration n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r1 = n.f1.accept(this, null);
+        visits++;
         VisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r1 == null || r2 == null) return null;
+        if (r2 == null) return null;
 
-        // check that return type exists
-        if (r1.getType().getTypeEnum() == TypeEnum.CUSTOM && ST.lookupClass(r1.getName()) == null){
-            this.detectedSemanticError = true;
-            this.errorMsg = SemanticErrors.nonExistantType(argu.getName(), r2.getName(), "return type", r1.getName(), r1.getBeginLine());
-            return null;
+        // check that return type exists (if read by a SignatureScanner, it is checked with the parameters below)
+        if (signatures == null) {
+            VisitorReturnInfo r1 = n.f1.accept(this, null);
+            if (r1 == null) return null;
+            if (r1.getType().getTypeEnum() == TypeEnum.CUSTOM && ST.lookupClass(r1.getType()) == null){
+                this.detectedSemanticError = true;
+                this.errorLine = r1.getBeginLine();
+                this.errorMsg = SemanticErrors.nonExistantType(argu.getName(), r2.getName(), "return type", r1.getName(), r1.getBeginLine());
+                return null;
+            }
         }
 
-        n.f4.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(), "method"));                           // pass method name, class name
-        n.f7.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(), "method"));                           // ^^
-        n.f8.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(), "method"));                           // ^^
-        VisitorReturnInfo r10 = n.f10.accept(this, new VisitorParameterInfo(r2.getName(), argu.getName(), "method"));  // ^^
+        ClassInfo classInfo = argu.getClassInfo();
+        MethodInfo methodInfo = classInfo.getMethodInfo(r2.getNameId());
+        if (methodInfo == null) { System.err.println("Warning: Missing method from SymbolTable.SymbolTable?"); return null; }
+
+        VisitorParameterInfo methodScope = new VisitorParameterInfo(r2.getName(), argu.getName(), VisitorParameterInfo.Scope.METHOD, classInfo, methodInfo);   // pass method name, class name
+        if (signatures != null) {
+            checkClassTypes(n, methodScope);
+        } else {
+            n.f4.accept(this, methodScope);
+            n.f7.accept(this, methodScope);
+        }
+        checkStatements(n.f8, methodScope);
+        VisitorReturnInfo r10 = n.f10.accept(this, methodScope);
         if (r10 == null) return null;
 
         // check that expression is of the method's return type
-        MethodInfo methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, argu.getName(), r2.getName());
-        if (methodInfo == null) { System.err.println("Warning: Missing method from SymbolTable.SymbolTable?"); return null; }
-
         if (!SemanticChecks.checkType(ST, r10.getType(), methodInfo.getReturnType())){
             this.detectedSemanticError = true;
+            this.errorLine = r10.getBeginLine();
             this.errorMsg = SemanticErrors.expectedCertainType(argu.getName(), r2.getName(), "method return type", methodInfo.getReturnType(), r10.getType(), r10.getBeginLine());
             return null;
         }
@@ -177,6 +243,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(FormalParameterList n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, argu);
         n.f1.accept(this, argu);
         return null;
@@ -188,12 +255,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(FormalParameter n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r0 = n.f0.accept(this, argu);
         if (r0 == null) return null;
 
         // check if type exists
-        if (r0.getType().getTypeEnum() == TypeEnum.CUSTOM && ST.lookupClass(r0.getType().getCustomTypeName()) == null){
+        if (r0.getType().getTypeEnum() == TypeEnum.CUSTOM && ST.lookupClass(r0.getType()) == null){
             this.detectedSemanticError = true;
+            this.errorLine = r0.getBeginLine();
             this.errorMsg = SemanticErrors.nonExistantType(argu.getSupername(), argu.getName(), "method parameter", r0.getName(), r0.getBeginLine());
             return null;
         }
@@ -207,6 +276,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(FormalParameterTail n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return n.f0.accept(this, argu);
     }
 
@@ -216,6 +286,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(FormalParameterTerm n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f1.accept(this, argu);
         return null;
     }
@@ -228,7 +299,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(Type n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        return n.f0.accept(this, new VisitorParameterInfo(null, null, null, "getType"));  // getTypeEnum is used in Identifier()'s visit() for custom types
+        visits++;
+        return n.f0.accept(this, VisitorParameterInfo.TYPES);  // (the purpose is used in Identifier()'s visit() for custom types)
     }
 
     /**
@@ -238,6 +310,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(ArrayType n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, null);
         n.f1.accept(this, null);
         n.f2.accept(this, null);
@@ -249,6 +322,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(BooleanType n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return new VisitorReturnInfo(MiniJavaType.BOOLEAN);
     }
 
@@ -257,9 +331,50 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(IntegerType n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return new VisitorReturnInfo(MiniJavaType.INTEGER);
     }
 
+    /** Checks that the classes kept by the SignatureScanner as types of the declarations in a MainClass, class or
+     *  MethodDeclaration exist, as visiting the declarations would */
+    private void checkClassTypes(Node n, VisitorParameterInfo argu) {
+        for (SignatureScanner.ClassType type : signatures.getClassTypes(n)) {
+            if (ST.lookupClass(type.getNameId()) != null) continue;
+            this.detectedSemanticError = true;
+            this.errorLine = type.getBeginLine();
+            if (argu.isMain()){
+                this.errorMsg = SemanticErrors.nonExistantType(type.getDeclaration(), type.getName(), type.getBeginLine());
+            } else if (argu.getScope() == VisitorParameterInfo.Scope.CLASS){
+                this.errorMsg = SemanticErrors.nonExistantType(argu.getName(), type.getDeclaration(), type.getName(), type.getBeginLine());
+            } else{
+                this.errorMsg = SemanticErrors.nonExistantType(argu.getSupername(), argu.getName(), type.getDeclaration(), type.getName(), type.getBeginLine());
+            }
+            return;
+        }
+    }
+
+    /** Checks a list of statements and the statements in them (in the same order as visiting them would), from a
+     *  stack instead of recursively: If, While and Block statements only check their own part and leave the
+     *  statements in them to this */
+    private void checkStatements(NodeListOptional statements, VisitorParameterInfo argu) {
+        int bottom = pendingStatements.size();
+        for (int i = statements.size() - 1 ; i >= 0 ; i--) pendingStatements.add(statements.elementAt(i));
+        while (pendingStatements.size() > bottom && !detectedSemanticError) {
+            Node statement = ((Statement) pendingStatements.remove(pendingStatements.size() - 1)).f0.choice;
+            statement.accept(this, argu);
+            if (statement instanceof Block) {
+                NodeListOptional inner = ((Block) statement).f1;
+                for (int i = inner.size() - 1 ; i >= 0 ; i--) pendingStatements.add(inner.elementAt(i));
+            } else if (statement instanceof IfStatement) {
+                pendingStatements.add(((IfStatement) statement).f6);
+                pendingStatements.add(((IfStatement) statement).f4);
+            } else if (statement instanceof WhileStatement) {
+                pendingStatements.add(((WhileStatement) statement).f4);
+            }
+        }
+        while (pendingStatements.size() > bottom) pendingStatements.remove(pendingStatements.size() - 1);
+    }
+
     /**
      * f0 -> Block()
      *       | AssignmentStatement()
@@ -270,6 +385,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(Statement n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return n.f0.accept(this, argu);
     }
 
@@ -279,9 +395,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      * f2 -> "}"
      */
     public VisitorReturnInfo visit(Block n, VisitorParameterInfo argu) {
-        if (detectedSemanticError) return null;
-        n.f1.accept(this, argu);
-        return null;
+        visits++;
+        return null;    // (its statements are checked by checkStatements())
     }
 
     /**
@@ -292,6 +407,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(AssignmentStatement n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r0 = n.f0.accept(this, argu);
         if (r0 == null) return null;
 
@@ -300,26 +416,30 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
         if (argu == null) {
             System.err.println("Missing parameter for assignment");
             return null;
-        } else if ( argu.getType().equals("main") ){
-            if (r0.getName().equals(ST.getMainClassArg())){
+        } else if ( argu.isMain() ){
+            if (r0.getNameId() == ST.getMainClassArgId()){
                 this.detectedSemanticError = true;
+                this.errorLine = r0.getBeginLine();
                 this.errorMsg = SemanticErrors.cannotUseMainClassArg(r0.getName(), r0.getBeginLine());
                 return null;
             }
-            varInfo = ST.lookupMainVariable(r0.getName());
+            varInfo = ST.lookupMainVariable(r0.getNameId());
             if (varInfo == null) {
                 this.detectedSemanticError = true;
+                this.errorLine = r0.getBeginLine();
                 this.errorMsg = SemanticErrors.useOfUndeclaredVariable(r0.getName(), r0.getBeginLine());
                 return null;
             }
         } else {
-            varInfo = SemanticChecks.checkVariableOrFieldExists(ST,  argu.getSupername(), argu.getName(), r0.getName());
+            varInfo = SemanticChecks.checkVariableOrFieldExists(argu.getClassInfo(), argu.getMethodInfo(), r0.getNameId());
             if (varInfo == null) {
                 this.detectedSemanticError = true;
+                this.errorLine = r0.getBeginLine();
                 this.errorMsg = SemanticErrors.useOfUndeclaredVariable(argu.getSupername(), argu.getName(), r0.getName(), r0.getBeginLine());
                 return null;
             }
         }
+        resolveVariable(n.f0, varInfo, argu);
 
         VisitorReturnInfo r2 = n.f2.accept(this, argu);
         if (r2 == null) return null;
@@ -327,7 +447,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
         // check if expression is of the correct type
         if ( !SemanticChecks.checkType(ST, r2.getType(), varInfo.getType()) ){
             this.detectedSemanticError = true;
-            if ( argu.getType().equals("main") ){
+            this.errorLine = r2.getBeginLine();
+            if ( argu.isMain() ){
                 this.errorMsg = SemanticErrors.expectedCertainType("assignment to the variable \"" + r0.getName() +"\"", varInfo.getType(), r2.getType(), r2.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedCertainType(argu.getSupername(), argu.getName(), "assignment to the variable \"" + r0.getName() +"\"", varInfo.getType(), r2.getType(), r2.getBeginLine());
@@ -349,6 +470,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(ArrayAssignmentStatement n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r0 = n.f0.accept(this, argu);
         if (r0 == null) return null;
 
@@ -357,31 +479,36 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
         if (argu == null) {
             System.err.println("Missing parameter for assignment");
             return null;
-        } else if ( argu.getType().equals("main") ){
-            if (r0.getName().equals(ST.getMainClassArg())){
+        } else if ( argu.isMain() ){
+            if (r0.getNameId() == ST.getMainClassArgId()){
                 this.detectedSemanticError = true;
+                this.errorLine = r0.getBeginLine();
                 this.errorMsg = SemanticErrors.cannotUseMainClassArg(r0.getName(), r0.getBeginLine());
                 return null;
             }
-            varInfo = ST.lookupMainVariable(r0.getName());
+            varInfo = ST.lookupMainVariable(r0.getNameId());
             if (varInfo == null) {
                 this.detectedSemanticError = true;
+                this.errorLine = r0.getBeginLine();
                 this.errorMsg = SemanticErrors.useOfUndeclaredVariable(r0.getName(), r0.getBeginLine());
                 return null;
             }
         } else {
-            varInfo = SemanticChecks.checkVariableOrFieldExists(ST, argu.getSupername(), argu.getName(), r0.getName());
+            varInfo = SemanticChecks.checkVariableOrFieldExists(argu.getClassInfo(), argu.getMethodInfo(), r0.getNameId());
             if (varInfo == null) {
                 this.detectedSemanticError = true;
+                this.errorLine = r0.getBeginLine();
                 this.errorMsg = SemanticErrors.useOfUndeclaredVariable(argu.getSupername(), argu.getName(), r0.getName(), r0.getBeginLine());
                 return null;
             }
         }
+        resolveVariable(n.f0, varInfo, argu);
 
         // check if variable is an array-variable
         if (varInfo.getType().getTypeEnum() != TypeEnum.INTARRAY){
             this.detectedSemanticError = true;
-            if ( argu.getType().equals("main") ) {
+            this.errorLine = r0.getBeginLine();
+            if ( argu.isMain() ) {
                 this.errorMsg = SemanticErrors.useAsAnArrayOfNotArray(r0.getName(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.useAsAnArrayOfNotArray(argu.getSupername(), argu.getName(), r0.getName(), r0.getBeginLine());
@@ -396,7 +523,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
         // check if index type and value type are integers
         if ( !SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.INTEGER) ) {
             this.detectedSemanticError = true;
-            if ( argu.getType().equals("main") ) {
+            this.errorLine = r2.getBeginLine();
+            if ( argu.isMain() ) {
                 this.errorMsg = SemanticErrors.expectedInteger("array index", r2.getType(), r2.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedInteger(argu.getSupername(), argu.getName(), "array index", r2.getType(), r2.getBeginLine());
@@ -404,7 +532,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
             return null;
         } else if ( !SemanticChecks.checkType(ST, r5.getType(), MiniJavaType.INTEGER) ) {
             this.detectedSemanticError = true;
-            if ( argu.getType().equals("main") ) {
+            this.errorLine = r5.getBeginLine();
+            if ( argu.isMain() ) {
                 this.errorMsg = SemanticErrors.expectedInteger("array assignment value", r5.getType(), r5.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedInteger(argu.getSupername(), argu.getName(), "array assignment value", r5.getType(), r5.getBeginLine());
@@ -426,13 +555,15 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(IfStatement n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r2 = n.f2.accept(this, argu);
         if (r2 == null) return null;
 
         // check condition is BOOLEAN
         if (!SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.BOOLEAN)){
             this.detectedSemanticError = true;
-            if ( argu.getType().equals("main") ) {
+            this.errorLine = r2.getBeginLine();
+            if ( argu.isMain() ) {
                 this.errorMsg = SemanticErrors.expectedBoolean("if-condition", r2.getType(), r2.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedBoolean(argu.getSupername(), argu.getName(), "if-condition", r2.getType(), r2.getBeginLine());
@@ -440,10 +571,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
             return null;
         }
 
-        VisitorReturnInfo r4 = n.f4.accept(this, argu);
-        if (r4 == null) return null;
-        n.f6.accept(this, argu);
-        return null;
+        return null;    // (its statements are checked by checkStatements())
     }
 
     /**
@@ -455,13 +583,15 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(WhileStatement n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r2 = n.f2.accept(this, argu);
         if (r2 == null) return null;
 
         // check condition is BOOLEAN
         if (!SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.BOOLEAN)){
             this.detectedSemanticError = true;
-            if ( argu.getType().equals("main") ) {
+            this.errorLine = r2.getBeginLine();
+            if ( argu.isMain() ) {
                 this.errorMsg = SemanticErrors.expectedBoolean("while-condition", r2.getType(), r2.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedBoolean(argu.getSupername(), argu.getName(), "while-condition", r2.getType(), r2.getBeginLine());
@@ -469,8 +599,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
             return null;
         }
 
-        n.f4.accept(this, argu);
-        return null;
+        return null;    // (its statement is checked by checkStatements())
     }
 
     /**
@@ -482,13 +611,15 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(PrintStatement n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         VisitorReturnInfo r2 = n.f2.accept(this, argu);
         if (r2 == null) return null;
 
         // r2 must be primitive (int or boolean - no arrays as they are references)!
         if (r2.getType().getTypeEnum() != TypeEnum.INTEGER && r2.getType().getTypeEnum() != TypeEnum.BOOLEAN ){
             this.detectedSemanticError = true;
-            if ( argu.getType().equals("main") ) {
+            this.errorLine = r2.getBeginLine();
+            if ( argu.isMain() ) {
                 this.errorMsg = SemanticErrors.printStatementOnNonPrimitive(r2.getType(), r2.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.printStatementOnNonPrimitive(argu.getSupername(), argu.getName(), r2.getType(), r2.getBeginLine());
@@ -512,7 +643,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(Expression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        return n.f0.accept(this, new VisitorParameterInfo(argu.getName(), argu.getSupername(), argu.getType(), "getVariableType"));  // if it comes to "<identifier>" consider it a variable
+        visits++;
+        return expressions.walk(n, argu.withPurpose(VisitorParameterInfo.Purpose.VARIABLE));  // if it comes to "<identifier>" consider it a variable
     }
 
     /**
@@ -522,13 +654,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(AndExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
-        VisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r0 == null || r2 == null) return null;
+        visits++;
+        VisitorReturnInfo r0 = expressions.value(0);     // (the operands were visited by the ExpressionWalker)
+        VisitorReturnInfo r2 = expressions.value(1);
         if ( !SemanticChecks.checkType(ST, r0.getType(), MiniJavaType.BOOLEAN) ||
              !SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.BOOLEAN) ){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.badOperands("&&", MiniJavaType.BOOLEAN, r0.getType(), r2.getType(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.badOperands(argu.getSupername(), argu.getName(), "&&", MiniJavaType.BOOLEAN, r0.getType(), r2.getType(), r0.getBeginLine());
@@ -545,13 +678,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(CompareExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
-        VisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r0 == null || r2 == null) return null;
+        visits++;
+        VisitorReturnInfo r0 = expressions.value(0);
+        VisitorReturnInfo r2 = expressions.value(1);
         if ( !SemanticChecks.checkType(ST, r0.getType(), MiniJavaType.INTEGER) ||
              !SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.INTEGER) ){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.badOperands("<", MiniJavaType.INTEGER, r0.getType(), r2.getType(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.badOperands(argu.getSupername(), argu.getName(), "<", MiniJavaType.INTEGER, r0.getType(), r2.getType(), r0.getBeginLine());
@@ -568,14 +702,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(PlusExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
-        n.f1.accept(this, argu);
-        VisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r0 == null || r2 == null) return null;
+        visits++;
+        VisitorReturnInfo r0 = expressions.value(0);
+        VisitorReturnInfo r2 = expressions.value(1);
         if ( !SemanticChecks.checkType(ST, r0.getType(), MiniJavaType.INTEGER) ||
              !SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.INTEGER) ){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.badOperands("+", MiniJavaType.INTEGER, r0.getType(), r2.getType(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.badOperands(argu.getSupername(), argu.getName(), "+", MiniJavaType.INTEGER, r0.getType(), r2.getType(), r0.getBeginLine());
@@ -592,13 +726,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(MinusExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
-        VisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r0 == null || r2 == null) return null;
+        visits++;
+        VisitorReturnInfo r0 = expressions.value(0);
+        VisitorReturnInfo r2 = expressions.value(1);
         if ( !SemanticChecks.checkType(ST, r0.getType(), MiniJavaType.INTEGER) ||
             ! SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.INTEGER) ){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.badOperands("-", MiniJavaType.INTEGER, r0.getType(), r2.getType(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.badOperands(argu.getSupername(), argu.getName(), "-", MiniJavaType.INTEGER, r0.getType(), r2.getType(), r0.getBeginLine());
@@ -615,13 +750,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(TimesExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
-        VisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r0 == null || r2 == null) return null;
+        visits++;
+        VisitorReturnInfo r0 = expressions.value(0);
+        VisitorReturnInfo r2 = expressions.value(1);
         if ( !SemanticChecks.checkType(ST, r0.getType(), MiniJavaType.INTEGER) ||
              !SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.INTEGER) ){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.badOperands("*", MiniJavaType.INTEGER, r0.getType(), r2.getType(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.badOperands(argu.getSupername(), argu.getName(), "*", MiniJavaType.INTEGER, r0.getType(), r2.getType(), r0.getBeginLine());
@@ -639,14 +775,15 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(ArrayLookup n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
-        VisitorReturnInfo r2 = n.f2.accept(this, argu);
-        if (r0 == null || r2 == null) return null;
+        visits++;
+        VisitorReturnInfo r0 = expressions.value(0);
+        VisitorReturnInfo r2 = expressions.value(1);
 
         // check that r0 is of type INTARRAY and that r2 is of type INTEGER
         if (!SemanticChecks.checkType(ST, r0.getType(), MiniJavaType.INTARRAY)){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.expectedCertainType("array lookup", MiniJavaType.INTARRAY, r0.getType(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedCertainType(argu.getSupername(), argu.getName(),"array lookup", MiniJavaType.INTARRAY, r0.getType(), r0.getBeginLine());
@@ -654,10 +791,12 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
             return null;
         } else if (!SemanticChecks.checkType(ST, r2.getType(), MiniJavaType.INTEGER)){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.expectedInteger("array lookup index", r2.getType(), r2.getBeginLine());
+                this.errorLine = r2.getBeginLine();
             } else {
                 this.errorMsg = SemanticErrors.expectedInteger(argu.getSupername(), argu.getName(),"array lookup index", r0.getType(), r0.getBeginLine());
+                this.errorLine = r0.getBeginLine();
             }
             return null;
         }
@@ -672,13 +811,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(ArrayLength n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
-        if (r0 == null) return null;
+        visits++;
+        VisitorReturnInfo r0 = expressions.value(0);
 
         // check that r0 is of type INTARRAY
         if (!SemanticChecks.checkType(ST, r0.getType(), MiniJavaType.INTARRAY)){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.expectedCertainType("array length query", MiniJavaType.INTARRAY, r0.getType(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedCertainType(argu.getSupername(), argu.getName(),"array length query", MiniJavaType.INTARRAY, r0.getType(), r0.getBeginLine());
@@ -700,38 +840,69 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(MessageSend n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
+        visits++;
+        // (the receiver and the arguments have been checked by checkCallee() and checkArgument() already)
+        MethodInfo methodInfo = resolved.getMethod(n);
+
+        // check that all arguments have been covered
+        int temp;
+        int argNum = expressions.values(1).size();
+        if (argNum > 0 && argNum < (temp = methodInfo.getNumberOfArguments())){
+            String classNameToCall = resolved.getReceiverClass(n).getName();
+            String methodNameToCall = n.f2.f0.toString();
+            VisitorReturnInfo r0 = expressions.value(1);
+            this.detectedSemanticError = true;
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
+                this.errorMsg = SemanticErrors.lessParametersThanExpected(classNameToCall, methodNameToCall, temp, argNum, r0.getBeginLine());
+            } else {
+                this.errorMsg = SemanticErrors.lessParametersThanExpected(argu.getSupername(), argu.getName(), classNameToCall, methodNameToCall, temp, argNum, r0.getBeginLine());
+            }
+            return null;
+        }
+
+        return new VisitorReturnInfo("methodCall", methodInfo.getReturnType(), n.f1.beginLine);
+    }
+
+    /** Checks the method called by n on its receiver (of value r0), before its arguments are visited */
+    private boolean checkCallee(MessageSend n, VisitorReturnInfo r0, VisitorParameterInfo argu) {
+        if (detectedSemanticError) return false;
         VisitorReturnInfo r2 = n.f2.accept(this, null);
-        if (r0 == null || r2 == null) return null;
+        if (r2 == null) return false;
 
         String classNameToCall;
+        ClassInfo classToCall;
         String methodNameToCall;
         MethodInfo methodInfo;
         if (r0.getType() != null && (r0.getType().getTypeEnum() != TypeEnum.CUSTOM)) {
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r0.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.callingMethodOnNonObject(r0.getName(), r0.getType(), r0.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.callingMethodOnNonObject(argu.getSupername(), argu.getName(), r0.getName(), r0.getType(), r0.getBeginLine());
             }
-            return null;
+            return false;
         }
         else if (r0.getName() != null && r0.getName().equals("this")) {
             // check that method exists for "this"
-            if (argu.getType().equals("main") ) {
+            if (argu.isMain() ) {
                 // main class cannot have any methods and she cannot call main as it can pass a String parameter
                 // (it is actually a parsing error to call "main()")
                 this.detectedSemanticError = true;
+                this.errorLine = r2.getBeginLine();
                 this.errorMsg = SemanticErrors.methodDoesNotExist(ST.getMainClassName(), r2.getName(), r2.getBeginLine());
-                return null;
+                return false;
             } else {
-                methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, argu.getSupername(), r2.getName());
+                methodInfo = argu.getClassInfo().getLayout().getMethod(r2.getNameId());
                 if (methodInfo == null) {
                     this.detectedSemanticError = true;
+                    this.errorLine = r2.getBeginLine();
                     this.errorMsg = SemanticErrors.methodDoesNotExist(argu.getSupername(), argu.getName(), argu.getSupername(), r2.getName(), r2.getBeginLine());
-                    return null;
+                    return false;
                 }
                 classNameToCall = argu.getSupername();
+                classToCall = argu.getClassInfo();
                 methodNameToCall = r2.getName();
             }
         }
@@ -739,24 +910,27 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
             // check that methodCall type has that method
             if (r0.getType().getTypeEnum() != TypeEnum.CUSTOM){
                 this.detectedSemanticError = true;
-                if (argu.getType().equals("main")){
+                this.errorLine = r2.getBeginLine();
+                if (argu.isMain()){
                     this.errorMsg = SemanticErrors.methodCalledOnNonObject(r2.getName(), r0.getType(), r2.getBeginLine());
                 } else {
                     this.errorMsg = SemanticErrors.methodCalledOnNonObject(argu.getSupername(), argu.getName(), r2.getName(), r0.getType(), r2.getBeginLine());
                 }
-                return null;
+                return false;
             } else {
-                methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, r0.getType().getCustomTypeName(), r2.getName());
+                methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, r0.getType(), r2.getNameId());
                 if (methodInfo == null){
                     this.detectedSemanticError = true;
-                    if (argu.getType().equals("main")){
+                    this.errorLine = r2.getBeginLine();
+                    if (argu.isMain()){
                         this.errorMsg = SemanticErrors.methodDoesNotExist(r0.getType().getDebugInfo(), r2.getName(), r2.getBeginLine());
                     } else {
                         this.errorMsg = SemanticErrors.methodDoesNotExist(argu.getSupername(), argu.getName(), r0.getType().getDebugInfo(), r2.getName(), r2.getBeginLine());
                     }
-                    return null;
+                    return false;
                 }
                 classNameToCall = r0.getType().getCustomTypeName();
+                classToCall = ST.lookupClass(r0.getType());
                 methodNameToCall = r2.getName();
             }
         }
@@ -764,183 +938,137 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
             // check if allocation type has that method
             if (r0.getType().getTypeEnum() != TypeEnum.CUSTOM){   // only possible for INTARRAY type
                 this.detectedSemanticError = true;
-                if (argu.getType().equals("main")){
+                this.errorLine = r2.getBeginLine();
+                if (argu.isMain()){
                     this.errorMsg = SemanticErrors.methodCalledOnNonObject(r2.getName(), r0.getType(), r2.getBeginLine());
                 } else {
                     this.errorMsg = SemanticErrors.methodCalledOnNonObject(argu.getSupername(), argu.getName(), r2.getName(), r0.getType(), r2.getBeginLine());
                 }
-                return null;
+                return false;
             } else {
-                methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, r0.getType().getCustomTypeName(), r2.getName());
+                methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, r0.getType(), r2.getNameId());
                 if (methodInfo == null){
                     this.detectedSemanticError = true;
-                    if (argu.getType().equals("main")){
+                    this.errorLine = r2.getBeginLine();
+                    if (argu.isMain()){
                         this.errorMsg = SemanticErrors.methodDoesNotExist(r0.getType().getDebugInfo(), r2.getName(), r2.getBeginLine());
                     } else {
                         this.errorMsg = SemanticErrors.methodDoesNotExist(argu.getSupername(), argu.getName(), r0.getType().getDebugInfo(), r2.getName(), r2.getBeginLine());
                     }
-                    return null;
+                    return false;
                 }
                 classNameToCall = r0.getType().getCustomTypeName();
+                classToCall = ST.lookupClass(r0.getType());
                 methodNameToCall = r2.getName();
             }
         }
         else if (r0.getName() != null){
             // check that variable exists in context
             VariableInfo varInfo;
-            if (argu.getType().equals("main")){
-                if (r0.getName().equals(ST.getMainClassArg())){
+            if (argu.isMain()){
+                if (r0.getNameId() == ST.getMainClassArgId()){
                     this.detectedSemanticError = true;
+                    this.errorLine = r0.getBeginLine();
                     this.errorMsg = SemanticErrors.cannotUseMainClassArg(r0.getName(), r0.getBeginLine());
-                    return null;
+                    return false;
                 }
-                varInfo = ST.lookupMainVariable(r0.getName());
+                varInfo = ST.lookupMainVariable(r0.getNameId());
                 if (varInfo == null) {
                     this.detectedSemanticError = true;
+                    this.errorLine = r2.getBeginLine();
                     this.errorMsg = SemanticErrors.useOfUndeclaredVariable(r0.getName(), r2.getBeginLine());
-                    return null;
+                    return false;
                 }
             } else {
-                varInfo = SemanticChecks.checkVariableOrFieldExists(ST, argu.getSupername(), argu.getName(), r0.getName());
+                varInfo = SemanticChecks.checkVariableOrFieldExists(argu.getClassInfo(), argu.getMethodInfo(), r0.getNameId());
                 if (varInfo == null) {
                     this.detectedSemanticError = true;
+                    this.errorLine = r2.getBeginLine();
                     this.errorMsg = SemanticErrors.useOfUndeclaredVariable(argu.getSupername(), argu.getName(), r0.getName(), r2.getBeginLine());
-                    return null;
+                    return false;
                 }
             }
 
             // and that its class has that method
             if (varInfo.getType().getTypeEnum() != TypeEnum.CUSTOM){
                 this.detectedSemanticError = true;
-                if (argu.getType().equals("main")){
+                this.errorLine = r2.getBeginLine();
+                if (argu.isMain()){
                     this.errorMsg = SemanticErrors.callingMethodOnNonObject(r0.getName(), r0.getType(), r2.getBeginLine());
                 } else {
                     this.errorMsg = SemanticErrors.callingMethodOnNonObject(argu.getSupername(), argu.getName(), r0.getName(), r0.getType(), r2.getBeginLine());
                 }
-                return null;
+                return false;
             }
-            methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, varInfo.getType().getCustomTypeName(), r2.getName());
+            methodInfo = SemanticChecks.checkMethodExistsForCustomType(ST, varInfo.getType(), r2.getNameId());
             if (methodInfo == null){
                 this.detectedSemanticError = true;
-                if (argu.getType().equals("main")) {
+                this.errorLine = r2.getBeginLine();
+                if (argu.isMain()) {
                     this.errorMsg = SemanticErrors.methodDoesNotExist(varInfo.getType().getDebugInfo(), r2.getName(), r2.getBeginLine());
                 } else {
                     this.errorMsg = SemanticErrors.methodDoesNotExist(argu.getSupername(), argu.getName(), varInfo.getType().getDebugInfo(), r2.getName(), r2.getBeginLine());
                 }
-                return null;
+                return false;
             }
             classNameToCall = varInfo.getType().getCustomTypeName();
+            classToCall = ST.lookupClass(varInfo.getType());
             methodNameToCall = r2.getName();
         }
         else {
             System.err.println("Warning: Unexpected behaviour of method call");
-            return null;
+            return false;
         }
 
         // if no arguments are given the check that the method does indeed need no arguments
         int temp;
-        if (!n.f4.present() && (temp = ST.getNumberOfArguments(classNameToCall, methodNameToCall)) > 0){
+        if (!n.f4.present() && (temp = methodInfo.getNumberOfArguments()) > 0){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r2.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.lessParametersThanExpected(classNameToCall, methodNameToCall, temp, 0, r2.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.lessParametersThanExpected(argu.getSupername(), argu.getName(), classNameToCall, methodNameToCall, temp, 0, r2.getBeginLine());
             }
-            return null;
+            return false;
         }
 
-        n.f4.accept(this, new ExtendedVisitorParameterInfo(argu.getSupername(), argu.getName(), classNameToCall, methodNameToCall, argu.getType()));
-
-        return new VisitorReturnInfo("methodCall", methodInfo.getReturnType(), n.f1.beginLine);
+        resolved.putCall(n, methodInfo, classToCall);
+        return true;
     }
 
+    /** Checks the argument at position argNum (of value r1) of the call n */
+    private boolean checkArgument(MessageSend n, int argNum, VisitorReturnInfo r1, VisitorParameterInfo argu) {
+        if (detectedSemanticError) return false;
+        MethodInfo methodInfo = resolved.getMethod(n);
+        String classNameToCall = resolved.getReceiverClass(n).getName();
+        String methodNameToCall = n.f2.f0.toString();
 
-    /**
-     * f0 -> Expression()
-     * f1 -> ExpressionTail()
-     */
-    public VisitorReturnInfo visit(ExpressionList n, VisitorParameterInfo argu) {
-        if (detectedSemanticError) return null;
-
-        VisitorReturnInfo r0 = n.f0.accept(this, argu);
-        if (r0 == null) return null;
-
-        // check that expression is of the correct type
-        if (ST.getNumberOfArguments(argu.getClassNameToCall(), argu.getMethodNameToCall()) > 0) {
-            VariableInfo argInfo = ST.lookupArgumentAtPos(argu.getClassNameToCall(), argu.getMethodNameToCall(), 0);
-            if (argInfo == null){
-                System.err.println("Warning: could not find argInfo even though we should be able to!");
-            } else if (!SemanticChecks.checkType(ST, r0.getType(), argInfo.getType())) {
-                this.detectedSemanticError = true;
-                String situation = "parameter type in call for method \"" + argu.getMethodNameToCall() + "\" of the class \"" + argu.getClassNameToCall() + "\" at pos " + argu.getArgNum();
-                if (argu.getType().equals("main")){
-                    this.errorMsg = SemanticErrors.expectedCertainType(situation, argInfo.getType(), r0.getType(), r0.getBeginLine());
-                } else {
-                    this.errorMsg = SemanticErrors.expectedCertainType(argu.getSupername(), argu.getName(), situation, argInfo.getType(), r0.getType(), r0.getBeginLine());
-                }
-                return null;
-            }
-        }
-
-        VisitorParameterInfo param = new ExtendedVisitorParameterInfo(argu, 1, argu.getClassNameToCall(), argu.getMethodNameToCall());
-        n.f1.accept(this, param);
-        if (this.detectedSemanticError) return null;
-
-        // check that all arguments have been covered
-        int temp;
-        if (param.getArgNum() < (temp = ST.getNumberOfArguments(argu.getClassNameToCall(), argu.getMethodNameToCall()))){
-            this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
-                this.errorMsg = SemanticErrors.lessParametersThanExpected(argu.getClassNameToCall(), argu.getMethodNameToCall(), temp, param.getArgNum(), r0.getBeginLine());
-            } else {
-                this.errorMsg = SemanticErrors.lessParametersThanExpected(argu.getSupername(), argu.getName(), argu.getClassNameToCall(), argu.getMethodNameToCall(), temp, param.getArgNum(), r0.getBeginLine());
-            }
-            return null;
-        }
-
-        return null;
-    }
-
-    /**
-     * f0 -> ( ExpressionTerm() )*
-     */
-    public VisitorReturnInfo visit(ExpressionTail n, VisitorParameterInfo argu) {
-        if (detectedSemanticError) return null;
-        return n.f0.accept(this, argu);
-    }
-
-    /**
-     * f0 -> ","
-     * f1 -> Expression()
-     */
-    public VisitorReturnInfo visit(ExpressionTerm n, VisitorParameterInfo argu) {
-        if (detectedSemanticError) return null;
-        VisitorReturnInfo r1 = n.f1.accept(this, argu);
-        if (r1 == null) return null;
-
-        // check that expression is of the correct type
-        VariableInfo argInfo = ST.lookupArgumentAtPos(argu.getClassNameToCall(), argu.getMethodNameToCall(), argu.getArgNum());
+        // check that expression is of the correct type (the first one only if the method has arguments)
+        if (argNum == 0 && methodInfo.getNumberOfArguments() == 0) return true;
+        VariableInfo argInfo = methodInfo.getArgumentInfoAtPos(argNum);
         if (argInfo == null) {
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
-                this.errorMsg = SemanticErrors.moreParametersThanExpected(argu.getClassNameToCall(), argu.getMethodNameToCall(), ST.getNumberOfArguments(argu.getClassNameToCall(), argu.getMethodNameToCall()), r1.getBeginLine());
+            this.errorLine = r1.getBeginLine();
+            if (argu.isMain()){
+                this.errorMsg = SemanticErrors.moreParametersThanExpected(classNameToCall, methodNameToCall, methodInfo.getNumberOfArguments(), r1.getBeginLine());
             } else {
-                this.errorMsg = SemanticErrors.moreParametersThanExpected(argu.getSupername(), argu.getName(), argu.getClassNameToCall(), argu.getMethodNameToCall(), ST.getNumberOfArguments(argu.getClassNameToCall(), argu.getMethodNameToCall()), r1.getBeginLine());
+                this.errorMsg = SemanticErrors.moreParametersThanExpected(argu.getSupername(), argu.getName(), classNameToCall, methodNameToCall, methodInfo.getNumberOfArguments(), r1.getBeginLine());
             }
-            return null;
+            return false;
         } else if (!SemanticChecks.checkType(ST, r1.getType(), argInfo.getType())){
             this.detectedSemanticError = true;
-            String situation = "parameter type in call for method \"" + argu.getMethodNameToCall() + "\" of the class \"" + argu.getClassNameToCall() + "\" at pos " + argu.getArgNum();
-            if (argu.getType().equals("main")){
+            this.errorLine = r1.getBeginLine();
+            String situation = "parameter type in call for method \"" + methodNameToCall + "\" of the class \"" + classNameToCall + "\" at pos " + argNum;
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.expectedCertainType(situation, argInfo.getType(), r1.getType(), r1.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedCertainType(argu.getSupername(), argu.getName(), situation, argInfo.getType(), r1.getType(), r1.getBeginLine());
             }
-            return null;
+            return false;
         }
-        argu.nextArg();    // augment argNum for next check
 
-        return null;
+        return true;
     }
 
 
@@ -950,7 +1078,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(Clause n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        return n.f0.accept(this, argu);
+        visits++;
+        return expressions.walk(n, argu);
     }
 
     /**
@@ -965,7 +1094,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(PrimaryExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        return n.f0.accept(this, argu);
+        visits++;
+        return expressions.walk(n, argu);
     }
 
     /**
@@ -973,6 +1103,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(IntegerLiteral n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         //n.f0.accept(this, null);
         return new VisitorReturnInfo(n.f0.toString(), MiniJavaType.INTEGER, n.f0.beginLine);
     }
@@ -982,6 +1113,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(TrueLiteral n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return new VisitorReturnInfo("true", MiniJavaType.BOOLEAN, n.f0.beginLine);
     }
 
@@ -990,6 +1122,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(FalseLiteral n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         return new VisitorReturnInfo("false", MiniJavaType.BOOLEAN, n.f0.beginLine);
     }
 
@@ -998,35 +1131,42 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(Identifier n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        if (argu != null && argu.getPurpose() != null && argu.getPurpose().equals("getType")) {
-            return new VisitorReturnInfo(n.f0.toString(), new MiniJavaType(TypeEnum.CUSTOM, n.f0.toString()), n.f0.beginLine);
+        visits++;
+        int nameId = NameToken.of(n);
+        if (argu != null && argu.getPurpose() == VisitorParameterInfo.Purpose.TYPE) {
+            return new VisitorReturnInfo(n.f0.toString(), nameId, ST.getCustomType(nameId), n.f0.beginLine);
         }
-        else if (argu != null && argu.getPurpose() != null && argu.getPurpose().equals("getVariableType") && argu.getName() != null && argu.getSupername() != null){
-            VariableInfo varInfo = SemanticChecks.checkVariableOrFieldExists(ST, argu.getSupername(), argu.getName(), n.f0.toString());
+        else if (argu != null && argu.getPurpose() == VisitorParameterInfo.Purpose.VARIABLE && argu.getName() != null && argu.getSupername() != null){
+            VariableInfo varInfo = SemanticChecks.checkVariableOrFieldExists(argu.getClassInfo(), argu.getMethodInfo(), nameId);
             if (varInfo != null){
-                return new VisitorReturnInfo(n.f0.toString(), varInfo.getType(), n.f0.beginLine);
+                resolveVariable(n, varInfo, argu);
+                return new VisitorReturnInfo(n.f0.toString(), nameId, varInfo.getType(), n.f0.beginLine);
             } else {
                 this.detectedSemanticError = true;
+                this.errorLine = n.f0.beginLine;
                 this.errorMsg = SemanticErrors.useOfUndeclaredVariable(argu.getSupername(), argu.getName(), n.f0.toString(), n.f0.beginLine);
                 return null;
             }
         }
-        else if (argu != null && argu.getPurpose() != null && argu.getPurpose().equals("getVariableType")){
-            if (n.f0.toString().equals(ST.getMainClassArg())){
+        else if (argu != null && argu.getPurpose() == VisitorParameterInfo.Purpose.VARIABLE){
+            if (nameId == ST.getMainClassArgId()){
                 this.detectedSemanticError = true;
+                this.errorLine = n.f0.beginLine;
                 this.errorMsg = SemanticErrors.cannotUseMainClassArg(n.f0.toString(), n.f0.beginLine);
                 return null;
             }
-            VariableInfo varInfo = ST.lookupMainVariable(n.f0.toString());
+            VariableInfo varInfo = ST.lookupMainVariable(nameId);
             if (varInfo != null){
-                return new VisitorReturnInfo(n.f0.toString(), varInfo.getType(), n.f0.beginLine);
+                resolveVariable(n, varInfo, argu);
+                return new VisitorReturnInfo(n.f0.toString(), nameId, varInfo.getType(), n.f0.beginLine);
             } else {
                 this.detectedSemanticError = true;
+                this.errorLine = n.f0.beginLine;
                 this.errorMsg = SemanticErrors.useOfUndeclaredVariable(n.f0.toString(), n.f0.beginLine);
                 return null;
             }
         }
-        else return new VisitorReturnInfo(n.f0.toString(), null, n.f0.beginLine);
+        else return new VisitorReturnInfo(n.f0.toString(), nameId, null, n.f0.beginLine);
     }
 
     /**
@@ -1034,17 +1174,19 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(ThisExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
+        visits++;
         n.f0.accept(this, null);
         // "this" is an object of the current class
 
         // this cannot be used in main
-        if (ST.getMainClassName().equals(argu.getSupername()) && argu.getType().equals("main")){
+        if (ST.getMainClassName().equals(argu.getSupername()) && argu.isMain()){
             this.detectedSemanticError = true;
+            this.errorLine = n.f0.beginLine;
             this.errorMsg = SemanticErrors.thisExprInStaticMain(n.f0.beginLine);
             return null;
         }
 
-        return new VisitorReturnInfo("this", new MiniJavaType(TypeEnum.CUSTOM, argu.getSupername()), n.f0.beginLine);
+        return new VisitorReturnInfo("this", argu.getClassInfo().getType(), n.f0.beginLine);
     }
 
     /**
@@ -1056,13 +1198,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(ArrayAllocationExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r3 = n.f3.accept(this, argu);
-        if (r3 == null) return null;
+        visits++;
+        VisitorReturnInfo r3 = expressions.value(0);
 
         // check that r3 is of type INTEGER
         if ( !SemanticChecks.checkType(ST, r3.getType(), MiniJavaType.INTEGER) ) {
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r3.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.expectedInteger("array size", r3.getType(), r3.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.expectedInteger(argu.getSupername(), argu.getName(), "array size", r3.getType(), r3.getBeginLine());
@@ -1083,13 +1226,15 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(AllocationExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r1 = n.f1.accept(this, new VisitorParameterInfo(null, null, null, "getType"));
+        visits++;
+        VisitorReturnInfo r1 = n.f1.accept(this, VisitorParameterInfo.TYPES);
         if (r1 == null) return null;
 
         // check if it is a custom type and that it exists
-        if ( r1.getType().getTypeEnum() == TypeEnum.CUSTOM && ST.lookupClass(r1.getType().getCustomTypeName()) == null ){
+        if ( r1.getType().getTypeEnum() == TypeEnum.CUSTOM && ST.lookupClass(r1.getType()) == null ){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r1.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.nonExistantType("allocating a new object", r1.getType().getDebugInfo(), r1.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.nonExistantType(argu.getSupername(), argu.getName(), "allocating a new object", r1.getType().getDebugInfo(), r1.getBeginLine());
@@ -1098,7 +1243,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
         } else if (r1.getType().getTypeEnum() != TypeEnum.CUSTOM ){
             // Note: This is probably never going to happen due to the parser not allowing "int" or "boolean" on type allocations
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r1.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.illegalAllocType(r1.getType(), r1.getBeginLine());
             } else {
                 this.errorMsg = SemanticErrors.illegalAllocType(argu.getSupername(), argu.getName(), r1.getType(), r1.getBeginLine());
@@ -1106,6 +1252,7 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
             return null;
         }
 
+        resolved.putAllocation(n, ST.lookupClass(r1.getType()));
         r1.setAlloced(true);
         return r1;
     }
@@ -1116,13 +1263,14 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(NotExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        VisitorReturnInfo r1 = n.f1.accept(this, argu);
-        if (r1 == null) return null;
+        visits++;
+        VisitorReturnInfo r1 = expressions.value(0);
 
         // check that clause is boolean so that "not" can work
         if (r1.getType().getTypeEnum() != TypeEnum.BOOLEAN ){
             this.detectedSemanticError = true;
-            if (argu.getType().equals("main")){
+            this.errorLine = r1.getBeginLine();
+            if (argu.isMain()){
                 this.errorMsg = SemanticErrors.badOperandForNot(r1.getType(), r1.getBeginLine()) ;
             } else {
                 this.errorMsg = SemanticErrors.badOperandForNot(argu.getSupername(), argu.getName(), r1.getType(), r1.getBeginLine()) ;
@@ -1140,7 +1288,8 @@ public class SemanticCheckingVisitor extends GJDepthFirst<VisitorReturnInfo, Vis
      */
     public VisitorReturnInfo visit(BracketExpression n, VisitorParameterInfo argu) {
         if (detectedSemanticError) return null;
-        return n.f1.accept(this, argu);
+        visits++;
+        return expressions.walk(n, argu);
     }
 
 
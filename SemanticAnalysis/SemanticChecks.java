@@ -13,114 +13,96 @@ public class SemanticChecks {
             return false;
         }
 
-        // check if types match
-        if (givenType.equals(targetType)) return true;
+        // check if types match (there is only one MiniJavaType instance per type)
+        if (givenType == targetType) return true;
 
-        // if not, check for subtyping
+        // if not, check for subtyping (in constant time thanks to the numbering of the class hierarchy)
         if (givenType.getTypeEnum() == TypeEnum.CUSTOM && targetType.getTypeEnum() == TypeEnum.CUSTOM){
-            String className = givenType.getCustomTypeName();
-            ClassInfo classInfo = ST.lookupClass(className);
-            while (classInfo != null && !className.equals(targetType.getCustomTypeName())){
-                className = classInfo.getMotherClassName();
-                classInfo = classInfo.getMotherClass();
-            }
-            if (classInfo != null) return true;
+            ClassInfo givenClass = ST.lookupClass(givenType);
+            ClassInfo targetClass = ST.lookupClass(targetType);
+            if (givenClass != null && targetClass != null && givenClass.isSubclassOf(targetClass)) return true;
         }
 
         // else
         return false;
     }
 
-    public static MethodInfo checkMethodExistsForCustomType(SymbolTable ST, String customTypeName, String methodName){
-        if (ST == null || customTypeName == null || methodName == null){
+    // (names are given by their ids, see Util.Names, and -1 is no name)
+
+    public static MethodInfo checkMethodExistsForCustomType(SymbolTable ST, int customTypeNameId, int methodId){
+        if (ST == null || customTypeNameId < 0 || methodId < 0){
             System.err.println("Null parameters to checkMethodExistsForCustomType()");
             return null;
         }
 
-        // First check if it is a method of customTypeName
-        MethodInfo methodInfo = ST.lookupMethod(customTypeName, methodName);
-
-        // if that fails check if it is an inherited method of a superclass (local methods override superclass methods)
-        if (methodInfo == null){
-            ClassInfo classInfo = ST.lookupClass(customTypeName);
-            if (classInfo != null) {
-                classInfo = classInfo.getMotherClass();
-                while (classInfo != null && methodInfo == null) {
-                    methodInfo = classInfo.getMethodInfo(methodName);
-                    classInfo = classInfo.getMotherClass();
-                }
-            }
+        // Check if it is a method of customTypeName or an inherited method of a superclass (local methods override superclass methods)
+        ClassInfo classInfo = ST.lookupClass(customTypeNameId);
+        return (classInfo != null) ? classInfo.getLayout().getMethod(methodId) : null;
+    }
+
+    public static MethodInfo checkMethodExistsForCustomType(SymbolTable ST, MiniJavaType customType, int methodId){
+        if (ST == null || customType == null || methodId < 0){
+            System.err.println("Null parameters to checkMethodExistsForCustomType()");
+            return null;
         }
 
-        return methodInfo;
+        // Same as above but the class is found through the type's class id
+        ClassInfo classInfo = ST.lookupClass(customType);
+        return (classInfo != null) ? classInfo.getLayout().getMethod(methodId) : null;
     }
 
-    public static VariableInfo checkVariableOrFieldExists(SymbolTable ST, String customTypeName, String methodName, String varName){
-        if (ST == null || customTypeName == null || varName == null){
+    public static VariableInfo checkVariableOrFieldExists(SymbolTable ST, int customTypeNameId, int methodId, int varId){
+        if (ST == null || customTypeNameId < 0 || varId < 0){
             System.err.println("Null parameters to checkMethodExistsForCustomType()");
             return null;
         }
         VariableInfo varInfo = null;
 
         // First check if it is a local variable of the method (if method is given)
-        if (methodName != null){
-            varInfo = ST.lookupVariable(customTypeName, methodName, varName);
+        if (methodId >= 0){
+            varInfo = ST.lookupVariable(customTypeNameId, methodId, varId);
         }
 
         // If that fails then check if it is a field of customTypeName (local variables shadow fields)
+        // or an inherited field of a superclass (local fields shadow superclass fields)
         if (varInfo == null){
-            varInfo = ST.lookupField(customTypeName, varName);
+            ClassInfo classInfo = ST.lookupClass(customTypeNameId);
+            if (classInfo != null) varInfo = classInfo.getLayout().getField(varId);
         }
+        return varInfo;
+    }
 
-        // if that fails then check if it is an inherited field of a superclass (local fields shadow superclass fields)
-        if (varInfo == null){
-            ClassInfo classInfo = ST.lookupClass(customTypeName);
-            if (classInfo != null) {
-                String motherClassName = classInfo.getMotherClassName();
-                classInfo = classInfo.getMotherClass();
-                while (classInfo != null && varInfo == null) {
-                    varInfo = ST.lookupField(motherClassName, varName);
-                    motherClassName = classInfo.getMotherClassName();
-                    classInfo = classInfo.getMotherClass();
-                }
-            }
+    public static VariableInfo checkVariableOrFieldExists(ClassInfo classInfo, MethodInfo methodInfo, int varId){
+        if (classInfo == null || varId < 0){
+            System.err.println("Null parameters to checkVariableOrFieldExists()");
+            return null;
         }
-        return varInfo;
+
+        // Same as above for a class and method that have already been resolved: only varId is looked up
+        VariableInfo varInfo = (methodInfo != null) ? methodInfo.getVariableInfo(varId) : null;
+        return (varInfo != null) ? varInfo : classInfo.getLayout().getField(varId);
     }
 
-    public static VariableInfo checkFieldExists(SymbolTable ST, String customTypeName, String methodName, String varName){
-        if (ST == null || customTypeName == null || varName == null){
+    public static VariableInfo checkFieldExists(SymbolTable ST, int customTypeNameId, int methodId, int varId){
+        if (ST == null || customTypeNameId < 0 || varId < 0){
             System.err.println("Null parameters to checkMethodExistsForCustomType()");
             return null;
         }
         VariableInfo varInfo = null;
 
         // If that fails then check if it is a field of customTypeName (local variables shadow fields)
+        // or an inherited field of a superclass (local fields shadow superclass fields)
         if (varInfo == null){
-            varInfo = ST.lookupField(customTypeName, varName);
-        }
-
-        // if that fails then check if it is an inherited field of a superclass (local fields shadow superclass fields)
-        if (varInfo == null){
-            ClassInfo classInfo = ST.lookupClass(customTypeName);
-            if (classInfo != null) {
-                String motherClassName = classInfo.getMotherClassName();
-                classInfo = classInfo.getMotherClass();
-                while (classInfo != null && varInfo == null) {
-                    varInfo = ST.lookupField(motherClassName, varName);
-                    motherClassName = classInfo.getMotherClassName();
-                    classInfo = classInfo.getMotherClass();
-                }
-            }
+            ClassInfo classInfo = ST.lookupClass(customTypeNameId);
+            if (classInfo != null) varInfo = classInfo.getLayout().getField(varId);
         }
         return varInfo;
     }
 
-    public static boolean checkThatIfOverrideThenCorrect(SymbolTable ST, String customTypeName, String methodName){
-        ClassInfo classInfo = ST.lookupClass(customTypeName);
+    public static boolean checkThatIfOverrideThenCorrect(ClassInfo classInfo, int methodId){
         if (classInfo == null) { System.err.println("Warning: wrong parameters to semantic check for override"); return true; }
 
-        MethodInfo thisMethodInfo = classInfo.getMethodInfo(methodName);
+        MethodInfo thisMethodInfo = classInfo.getMethodInfo(methodId);
         if (thisMethodInfo == null) { System.err.println("Warning: wrong parameters to semantic check for override"); return true; }
 
         // Note: could store a reference to methodInfo of overriding method to not search like below twice
@@ -128,7 +110,7 @@ public class SemanticChecks {
         classInfo = classInfo.getMotherClass();
         MethodInfo otherMethodInfo = null;
         while (classInfo != null && otherMethodInfo == null) {
-            otherMethodInfo = classInfo.getMethodInfo(methodName);
+            otherMethodInfo = classInfo.getMethodInfo(methodId);
             classInfo = classInfo.getMotherClass();
         }
 
@@ -0,0 +1,235 @@
+package SemanticAnalysis;
+
+import MiniJavaType.*;
+import SymbolTable.*;
+import Util.NameToken;
+import syntaxtree.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/** Fills the Symbol Table as CreateSymbolTableVisitor does, reading the declarations straight from the syntax tree
+ *  instead of visiting it: the main class, class headers, fields, method signatures and local variables, never a
+ *  statement or expression. It makes the same checks (duplicates, classes extending classes not declared before them,
+ *  so there can be no cycles, invalid overrides) and reports the same error.
+ *  Whether the classes named as types of declarations exist can only be known once all classes have been declared:
+ *  these declarations are kept (see getClassTypes()) so that SemanticCheckingVisitor checks them together with the
+ *  bodies, without visiting the declarations again.
+ */
+public class SignatureScanner {
+
+    /** A declaration whose type is a class: the identifier naming the class and what was declared (as in errors) */
+    static class ClassType {
+        private final Identifier type;
+        private final String declaration;
+
+        ClassType(Identifier _type, String _declaration){
+            type = _type;
+            declaration = _declaration;
+        }
+
+        String getName() { return type.f0.toString(); }
+
+        int getNameId() { return NameToken.of(type); }
+
+        int getBeginLine() { return type.f0.beginLine; }
+
+        String getDeclaration() { return declaration; }
+    }
+
+    // Fields used to detect error and stop the scan (as in CreateSymbolTableVisitor)
+    public boolean detectedSemanticError = false;
+    public String errorMsg = "";
+    public int errorLine = -1;      // (the line errorMsg is about, -1 if not known)
+    public SymbolTable ST;
+
+    private final Map<Node, List<ClassType>> classTypes = new IdentityHashMap<>();    // MainClass, class or MethodDeclaration -> its declarations of class types, in order
+    private long visits = 0;
+
+
+    public SignatureScanner(SymbolTable _ST){
+        this.ST = _ST;
+        if (_ST == null) {
+            this.detectedSemanticError = true;
+            this.errorMsg = "Null Symbol Table parameter given";
+        }
+    }
+
+    /** Number of nodes read so far */
+    public long getNumberOfVisits() { return visits; }
+
+    /** The declarations of class types directly in a MainClass, class or MethodDeclaration (for a method: its return
+     *  type, then its parameters and local variables), in the order they are in the program */
+    List<ClassType> getClassTypes(Node n) {
+        return classTypes.getOrDefault(n, Collections.emptyList());
+    }
+
+    /**
+     * f0 -> MainClass()
+     * f1 -> ( TypeDeclaration() )*
+     * f2 -> <EOF>
+     */
+    public void scan(Goal n) {
+        if (detectedSemanticError) return;
+        visits++;
+        scanMainClass(n.f0);
+        for (int i = 0 ; i < n.f1.size() && !detectedSemanticError ; i++) {
+            visits++;
+            Node declaration = ((TypeDeclaration) n.f1.elementAt(i)).f0.choice;
+            if (declaration instanceof ClassDeclaration) scanClass((ClassDeclaration) declaration);
+            else scanClass((ClassExtendsDeclaration) declaration);
+        }
+        // Symbol Table is complete: flatten every class's inherited fields and methods, number the class hierarchy and find overridden methods once
+        if (!detectedSemanticError) {
+            ST.buildClassLayouts();
+            ST.numberClassHierarchy();
+            ST.analyzeClassHierarchy();
+        }
+    }
+
+    private void scanMainClass(MainClass n) {
+        visits++;
+        ST.setMainClassNameAndArg(id(n.f1), id(n.f11));
+        for (int i = 0 ; i < n.f14.size() && !detectedSemanticError ; i++) {
+            VarDeclaration var = (VarDeclaration) n.f14.elementAt(i);
+            visits++;
+            MiniJavaType type = type(n, var.f0, "variable declaration");
+            if (!ST.putMainVariable(id(var.f1), new VariableInfo(type))){
+                this.detectedSemanticError = true;
+                this.errorLine = var.f1.f0.beginLine;
+                this.errorMsg = SemanticErrors.duplicateVarDeclaration(name(var.f1), var.f1.f0.beginLine);
+            }
+        }
+    }
+
+    private void scanClass(ClassDeclaration n) {
+        visits++;
+        String className = name(n.f1);
+        ClassInfo classInfo = new ClassInfo();
+        if (!ST.putClass(NameToken.of(n.f1), classInfo)){
+            this.detectedSemanticError = true;
+            this.errorLine = n.f1.f0.beginLine;
+            this.errorMsg = SemanticErrors.duplicateClass(className, n.f1.f0.beginLine);
+            return;
+        }
+        scanMembers(n, classInfo, n.f3, n.f4);
+    }
+
+    private void scanClass(ClassExtendsDeclaration n) {
+        visits++;
+        String className = name(n.f1);
+        String motherName = name(n.f3);
+        ClassInfo motherClass = ST.lookupClass(NameToken.of(n.f3));
+        if (motherClass == null){  // in "class B extends A", if A is not defined previously then error
+            this.detectedSemanticError = true;
+            this.errorLine = n.f3.f0.beginLine;
+            this.errorMsg = SemanticErrors.extendingNonDefinedYet(className, motherName, n.f3.f0.beginLine);
+            return;
+        }
+        ClassInfo classInfo = new ClassInfo(motherName, motherClass);
+        if (!ST.putClass(NameToken.of(n.f1), classInfo)){
+            this.detectedSemanticError = true;
+            this.errorLine = n.f1.f0.beginLine;
+            this.errorMsg = SemanticErrors.duplicateClass(className, n.f1.f0.beginLine);
+            return;
+        }
+        scanMembers(n, classInfo, n.f5, n.f6);
+    }
+
+    /** The fields and methods of class n */
+    private void scanMembers(Node n, ClassInfo classInfo, NodeListOptional fields, NodeListOptional methods) {
+        for (int i = 0 ; i < fields.size() && !detectedSemanticError ; i++) {
+            VarDeclaration field = (VarDeclaration) fields.elementAt(i);
+            visits++;
+            MiniJavaType type = type(n, field.f0, "field declaration");
+            if (!ST.putField(classInfo, id(field.f1), new VariableInfo(type))){
+                this.detectedSemanticError = true;
+                this.errorLine = field.f1.f0.beginLine;
+                this.errorMsg = SemanticErrors.duplicateFieldDeclaration(classInfo.getName(), name(field.f1), field.f1.f0.beginLine);
+            }
+        }
+        for (int i = 0 ; i < methods.size() && !detectedSemanticError ; i++) {
+            scanMethod((MethodDeclaration) methods.elementAt(i), classInfo);
+        }
+    }
+
+    private void scanMethod(MethodDeclaration n, ClassInfo classInfo) {
+        visits++;
+        MiniJavaType returnType = type(n, n.f1, "return type");
+        String className = classInfo.getName();
+        String methodName = name(n.f2);
+        MethodInfo methodInfo = new MethodInfo(returnType);
+        if (!ST.putMethod(classInfo, NameToken.of(n.f2), methodInfo)){
+            this.detectedSemanticError = true;
+            this.errorLine = n.f2.f0.beginLine;
+            this.errorMsg = SemanticErrors.duplicateMethodDeclaration(className, methodName, n.f2.f0.beginLine);
+            return;
+        }
+
+        if (n.f4.present()) {
+            FormalParameterList parameters = (FormalParameterList) n.f4.node;
+            visits++;
+            scanParameter(n, methodInfo, className, methodName, parameters.f0);
+            for (int i = 0 ; i < parameters.f1.f0.size() && !detectedSemanticError ; i++) {
+                visits++;
+                scanParameter(n, methodInfo, className, methodName, ((FormalParameterTerm) parameters.f1.f0.elementAt(i)).f1);
+            }
+        }
+        for (int i = 0 ; i < n.f7.size() && !detectedSemanticError ; i++) {
+            VarDeclaration var = (VarDeclaration) n.f7.elementAt(i);
+            visits++;
+            MiniJavaType type = type(n, var.f0, "variable declaration");
+            if (!ST.putVariable(methodInfo, id(var.f1), new VariableInfo(type))){
+                this.detectedSemanticError = true;
+                this.errorLine = var.f1.f0.beginLine;
+                this.errorMsg = SemanticErrors.duplicateVarDeclaration(className, methodName, name(var.f1), var.f1.f0.beginLine);
+            }
+        }
+
+        // (!) Have to check after method declaration is added to SymbolTable so that it has all the arguments, etc
+        // (even after a duplicate parameter or variable, as CreateSymbolTableVisitor does: its error is then the one reported)
+        if (!SemanticChecks.checkThatIfOverrideThenCorrect(classInfo, methodInfo.getNameId())){
+            this.detectedSemanticError = true;
+            this.errorLine = n.f2.f0.beginLine;
+            this.errorMsg = SemanticErrors.invalidOverride(className, methodName, n.f2.f0.beginLine);
+        }
+    }
+
+    private void scanParameter(MethodDeclaration method, MethodInfo methodInfo, String className, String methodName, FormalParameter n) {
+        if (detectedSemanticError) return;
+        visits++;
+        MiniJavaType type = type(method, n.f0, "method parameter");
+        if (!ST.putArgument(methodInfo, id(n.f1), new VariableInfo(type))){
+            this.detectedSemanticError = true;
+            this.errorLine = n.f1.f0.beginLine;
+            this.errorMsg = SemanticErrors.duplicateFormalParameter(className, methodName, name(n.f1), n.f1.f0.beginLine);
+        }
+    }
+
+    /** The type a Type node names, keeping it with the declarations of declarationScope if it is a class */
+    private MiniJavaType type(Node declarationScope, Type n, String declaration) {
+        visits += 2;
+        Node type = n.f0.choice;
+        if (type instanceof ArrayType) return MiniJavaType.INTARRAY;
+        if (type instanceof BooleanType) return MiniJavaType.BOOLEAN;
+        if (type instanceof IntegerType) return MiniJavaType.INTEGER;
+        classTypes.computeIfAbsent(declarationScope, k -> new ArrayList<>()).add(new ClassType((Identifier) type, declaration));
+        return ST.getCustomType(NameToken.of((Identifier) type));
+    }
+
+    private String name(Identifier n) {
+        visits++;
+        return n.f0.toString();
+    }
+
+    /** The id of the name of n, read instead of the name (see Util.Names) */
+    private int id(Identifier n) {
+        visits++;
+        return NameToken.of(n);
+    }
+
+}
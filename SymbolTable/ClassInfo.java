@@ -1,24 +1,34 @@
 package SymbolTable;
 
+import MiniJavaType.MiniJavaType;
 import Util.MyPair;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 
 public class ClassInfo {
+    private int id = -1;                      // dense id given by the SymbolTable (main class is 0)
+    private String name = null;
+    private MiniJavaType type = null;         // (the one of the SymbolTable)
     private List<MyPair<String, VariableInfo>> orderedFields = new ArrayList<>();   // used for printing their offsets in order
     private List<MyPair<String, MethodInfo>> orderedMethods = new ArrayList<>();    // ^^
-    private Map<String, VariableInfo> fields = new HashMap<>();     // field name  -> SymbolTable.VariableInfo
-    private Map<String, MethodInfo> methods = new HashMap<>();      // method name -> SymbolTable.MethodInfo
+    private List<MyPair<String, VariableInfo>> layoutFields = null;                // the fields in the order of their offsets (see getFieldsInLayoutOrder())
+    private IdMap<VariableInfo> fields = new IdMap<>();     // field name id  -> SymbolTable.VariableInfo
+    private IdMap<MethodInfo> methods = new IdMap<>();      // method name id -> SymbolTable.MethodInfo
     private String motherClassName = null;    // name of the class this class extends (if it extends one)
     private ClassInfo motherClass = null;     // reference to that class in the symbol table
+    private ClassLayout layout = null;        // all visible fields and methods (set once the symbol table is complete)
+
+    // Position in a preorder numbering of the class hierarchy: this class's subclasses (direct or not)
+    // are exactly the classes numbered in [preorder, lastSubclassPreorder]
+    private int preorder = -1;
+    private int lastSubclassPreorder = -1;
 
     // Offsets (so that they are only calculated once):
     private int fieldOffset = -1;
     private int methodOffset = -1;
+    private int numberOfFields = -1;
 
     public ClassInfo() { }
 
@@ -27,25 +37,57 @@ public class ClassInfo {
         motherClass = _motherClass;
     }
 
-    public VariableInfo getFieldInfo(String fieldName) { return fields.get(fieldName);}
+    public int getId() { return id; }
+
+    public String getName() { return name; }
+
+    public MiniJavaType getType() { return type; }
+
+    void setIdNameAndType(int _id, String _name, MiniJavaType _type) {
+        id = _id;
+        name = _name;
+        type = _type;
+    }
+
+    public VariableInfo getFieldInfo(int fieldId) { return fields.get(fieldId);}
+
+    public MethodInfo getMethodInfo(int methodId) { return methods.get(methodId); }
+
+    IdMap<VariableInfo> getFields() { return fields; }
 
-    public MethodInfo getMethodInfo(String methodName) { return methods.get(methodName); }
+    IdMap<MethodInfo> getMethods() { return methods; }
 
     public String getMotherClassName() { return motherClassName; }
 
     public ClassInfo getMotherClass() { return motherClass; }
 
-    public boolean putFieldInfo(String fieldName, VariableInfo fieldInfo) {
-        if (fields.containsKey(fieldName)) {
+    public ClassLayout getLayout() { return layout; }
+
+    void setLayout(ClassLayout _layout) { layout = _layout; }
+
+    int getPreorder() { return preorder; }
+
+    void setHierarchyInterval(int _preorder, int _lastSubclassPreorder) {
+        preorder = _preorder;
+        lastSubclassPreorder = _lastSubclassPreorder;
+    }
+
+    /** true if this class is other or extends it (directly or not); needs SymbolTable.numberClassHierarchy() first */
+    public boolean isSubclassOf(ClassInfo other) {
+        return other.preorder <= preorder && preorder <= other.lastSubclassPreorder;
+    }
+
+    boolean putFieldInfo(int fieldId, String fieldName, VariableInfo fieldInfo) {
+        if (fields.containsKey(fieldId)) {
             return false;
         }
-        fields.put(fieldName, fieldInfo);
+        fields.put(fieldId, fieldInfo);
         orderedFields.add(new MyPair<>(fieldName, fieldInfo));
         return true;
     }
 
-    public boolean putMethodInfo(String methodName, MethodInfo methodInfo) {
-        if (methods.containsKey(methodName)) {
+    boolean putMethodInfo(int methodId, String methodName, MethodInfo methodInfo) {
+        if (methods.containsKey(methodId)) {
             return false;
         }
 
@@ -53,7 +95,7 @@ public class ClassInfo {
         ClassInfo classInfo = this.getMotherClass();
         MethodInfo otherMethodInfo = null;
         while (classInfo != null && otherMethodInfo == null) {
-            otherMethodInfo = classInfo.getMethodInfo(methodName);
+            otherMethodInfo = classInfo.getMethodInfo(methodId);
             classInfo = classInfo.getMotherClass();
         }
         // and if it is then set methodInfo's override field to that method before inserting it to this ClassInfo
@@ -61,7 +103,8 @@ public class ClassInfo {
             methodInfo.setOverride(otherMethodInfo);
         }
 
-        methods.put(methodName, methodInfo);
+        methodInfo.setNameId(methodId);
+        methods.put(methodId, methodInfo);
         orderedMethods.add(new MyPair<>(methodName, methodInfo));
         return true;
     }
@@ -85,13 +128,78 @@ public class ClassInfo {
         if (fieldOffset > -1) return fieldOffset;  // if already calculated then do not repeat
         int sum = 0;
         if (motherClass != null) sum = motherClass.getNextFieldOffset();
-        for (MyPair<String, VariableInfo> f : orderedFields){
-            sum += f.getSecond().getType().getOffsetOfType();
+        for (MyPair<String, VariableInfo> f : getFieldsInLayoutOrder()){
+            sum = alignFieldOffset(sum, f.getSecond().getType()) + f.getSecond().getType().getOffsetOfType();
         }
         fieldOffset = sum;
         return fieldOffset;
     }
 
+    /** The fields of this class (not the inherited ones) in the order they are placed after the fields of the mother
+     *  class, whose layout is kept so that an object of this class starts like one of its mother class. The padding left
+     *  after the mother's fields (up to the next multiple of 8) is filled first, with an int at its end if there is room
+     *  and booleans before it, and then the rest go from the largest to the smallest, so that every field is naturally
+     *  aligned without padding between them. */
+    public List<MyPair<String, VariableInfo>> getFieldsInLayoutOrder(){
+        if (layoutFields != null) return layoutFields;
+        List<MyPair<String, VariableInfo>> bySize = new ArrayList<>(orderedFields);
+        bySize.sort((a, b) -> b.getSecond().getType().getOffsetOfType() - a.getSecond().getType().getOffsetOfType());   // (stable)
+
+        int start = (motherClass != null) ? motherClass.getNextFieldOffset() : 0;
+        int room = (start + 7) / 8 * 8 - start;
+        List<MyPair<String, VariableInfo>> padding = new ArrayList<>();
+        MyPair<String, VariableInfo> last = null;
+        if (room >= 4) {
+            for (MyPair<String, VariableInfo> f : bySize){
+                if (f.getSecond().getType().getOffsetOfType() == 4) { last = f; break; }
+            }
+            if (last != null) {
+                bySize.remove(last);
+                room -= 4;
+            }
+        }
+        for (MyPair<String, VariableInfo> f : bySize){
+            if (padding.size() == room) break;
+            if (f.getSecond().getType().getOffsetOfType() == 1) padding.add(f);
+        }
+        bySize.removeAll(padding);
+        if (last != null) padding.add(last);
+        padding.addAll(bySize);
+        layoutFields = padding;
+        return layoutFields;
+    }
+
+    /** Size in bytes of an object of this class: the vtable pointer and the fields, rounded up to a multiple of 8 */
+    public int getObjectSize(){
+        return (8 + getNextFieldOffset() + 7) & ~7;
+    }
+
+    /** What getObjectSize() would be if the fields were laid out in the order they are declared (each one still aligned) */
+    public int getObjectSizeInDeclarationOrder(){
+        List<ClassInfo> chain = new ArrayList<>();
+        for (ClassInfo c = this ; c != null ; c = c.getMotherClass()) chain.add(0, c);
+        int sum = 0;
+        for (ClassInfo c : chain){
+            for (MyPair<String, VariableInfo> f : c.getOrderedFields()){
+                sum = alignFieldOffset(sum, f.getSecond().getType()) + f.getSecond().getType().getOffsetOfType();
+            }
+        }
+        return (8 + sum + 7) & ~7;
+    }
+
+    /** The offset of a field of the given type placed at offset or after it: fields are naturally aligned (to their size) */
+    public static int alignFieldOffset(int offset, MiniJavaType type){
+        int size = type.getOffsetOfType();
+        return (offset + size - 1) / size * size;
+    }
+
+    /** Fields of the objects of this class, inherited ones included */
+    public int getTotalNumberOfFields(){
+        if (numberOfFields > -1) return numberOfFields;
+        numberOfFields = ((motherClass != null) ? motherClass.getTotalNumberOfFields() : 0) + orderedFields.size();
+        return numberOfFields;
+    }
+
     public int getNextMethodOffset(){
         if (methodOffset > -1) return methodOffset;  // if already calculated then do not repeat
         int sum = 0;
@@ -115,14 +223,14 @@ public class ClassInfo {
         if (getMotherClassName() != null) {
             System.out.println("  mother_class = " + getMotherClassName());
         }
-        for (Map.Entry<String, VariableInfo> entry : fields.entrySet()) {
-            System.out.println("   > field_name = " + entry.getKey());
-            VariableInfo fieldInfo = entry.getValue();
+        for (MyPair<String, VariableInfo> field : orderedFields) {
+            System.out.println("   > field_name = " + field.getFirst());
+            VariableInfo fieldInfo = field.getSecond();
             fieldInfo.printDebugInfo(false);
         }
-        for (Map.Entry<String, MethodInfo> entry : methods.entrySet()) {
-            System.out.println("   > method_name = " + entry.getKey());
-            MethodInfo methodInfo = entry.getValue();
+        for (MyPair<String, MethodInfo> method : orderedMethods) {
+            System.out.println("   > method_name = " + method.getFirst());
+            MethodInfo methodInfo = method.getSecond();
             methodInfo.printDebugInfo();
         }
     }
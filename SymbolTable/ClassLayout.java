@@ -0,0 +1,110 @@
+package SymbolTable;
+
+import MiniJavaType.MiniJavaType;
+import Util.MyPair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+
+/** Flattened view of a class: every field visible in it (its own fields shadow inherited ones) and every
+ *  method that can be called on it (its own methods override inherited ones), so that looking them up is
+ *  a single lookup by name id instead of a walk up the chain of mother classes.
+ *  Built once the Symbol Table is complete (see SymbolTable.buildClassLayouts()). The vtable is filled in
+ *  by SymbolTable.calculateOffsets() since it needs the methods' offsets.
+ */
+public class ClassLayout {
+    private final IdMap<VariableInfo> fields;              // field name id  -> SymbolTable.VariableInfo (also inherited ones)
+    private final IdMap<MethodInfo> methods;               // method name id -> SymbolTable.MethodInfo (also inherited ones)
+    private final IdMap<ClassInfo> methodClasses;          // method name id -> the class that defines the visible version of it
+    private final String className;
+    private final ClassInfo classInfo;
+    private final ClassLayout motherLayout;
+    private MethodInfo[] vtable = null;                     // vtable slot -> method
+    private String[] vtableMethodNames = null;              // vtable slot -> method name
+    private String[] vtableClassNames = null;               // vtable slot -> name of the class that defines that method
+    private final BitSet overriddenMethods = new BitSet();  // name ids of the methods overridden by some subclass (direct or not)
+    private List<MiniJavaType> fieldTypes = null;           // type of every field (also inherited and shadowed ones) in the order of their offsets
+
+    ClassLayout(String _className, ClassInfo _classInfo, ClassLayout _motherLayout) {
+        className = _className;
+        classInfo = _classInfo;
+        motherLayout = _motherLayout;
+        if (motherLayout != null) {
+            fields = new IdMap<>(motherLayout.fields);
+            methods = new IdMap<>(motherLayout.methods);
+            methodClasses = new IdMap<>(motherLayout.methodClasses);
+        } else {
+            fields = new IdMap<>();
+            methods = new IdMap<>();
+            methodClasses = new IdMap<>();
+        }
+        fields.putAll(classInfo.getFields());
+        methods.putAll(classInfo.getMethods());
+        for (MyPair<String, MethodInfo> m : classInfo.getOrderedMethods()) {
+            methodClasses.put(m.getSecond().getNameId(), classInfo);
+        }
+    }
+
+    /** The mother class's vtable (built first if needed) with the slots of the methods this class defines overwritten */
+    void buildVTable(int numberOfMethods) {
+        if (vtable != null) return;
+        if (motherLayout != null) {
+            motherLayout.buildVTable(motherLayout.classInfo.getTotalNumberOfMethods());
+            vtable = Arrays.copyOf(motherLayout.vtable, numberOfMethods);
+            vtableMethodNames = Arrays.copyOf(motherLayout.vtableMethodNames, numberOfMethods);
+            vtableClassNames = Arrays.copyOf(motherLayout.vtableClassNames, numberOfMethods);
+        } else {
+            vtable = new MethodInfo[numberOfMethods];
+            vtableMethodNames = new String[numberOfMethods];
+            vtableClassNames = new String[numberOfMethods];
+        }
+        for (MyPair<String, MethodInfo> m : classInfo.getOrderedMethods()) {
+            if (m.getFirst().equals("main")) continue;     // (main is never inherited)
+            int slot = m.getSecond().getOffset() / 8;
+            vtable[slot] = m.getSecond();
+            vtableMethodNames[slot] = m.getFirst();
+            vtableClassNames[slot] = className;
+        }
+    }
+
+    /** The types of the mother class's fields (found first if needed) followed by the ones of this class's own fields,
+     *  in the order of their offsets (see ClassInfo.getFieldsInLayoutOrder()) */
+    public List<MiniJavaType> getFieldTypesInLayoutOrder() {
+        if (fieldTypes != null) return fieldTypes;
+        fieldTypes = (motherLayout != null) ? new ArrayList<>(motherLayout.getFieldTypesInLayoutOrder()) : new ArrayList<>();
+        for (MyPair<String, VariableInfo> f : classInfo.getFieldsInLayoutOrder()) {
+            fieldTypes.add(f.getSecond().getType());
+        }
+        return fieldTypes;
+    }
+
+    /** false if the method was already known to be overridden */
+    boolean addOverriddenMethod(int methodId) {
+        if (overriddenMethods.get(methodId)) return false;
+        overriddenMethods.set(methodId);
+        return true;
+    }
+
+    public VariableInfo getField(int fieldId) { return fields.get(fieldId); }
+
+    public MethodInfo getMethod(int methodId) { return methods.get(methodId); }
+
+    /** The class that defines the version of the method called on this class */
+    public ClassInfo getMethodClass(int methodId) { return methodClasses.get(methodId); }
+
+    /** true if calling the method on an object of this static type always runs getMethod(methodId), i.e. no subclass
+     *  overrides it (the whole program is known); needs SymbolTable.analyzeClassHierarchy() first */
+    public boolean hasSingleImplementation(int methodId) { return !overriddenMethods.get(methodId); }
+
+    public int getVTableSize() { return (vtable != null) ? vtable.length : 0; }
+
+    public MethodInfo getVTableMethod(int slot) { return vtable[slot]; }
+
+    public String getVTableMethodName(int slot) { return vtableMethodNames[slot]; }
+
+    public String getVTableMethodClassName(int slot) { return vtableClassNames[slot]; }
+
+}
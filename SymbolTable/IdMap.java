@@ -0,0 +1,84 @@
+package SymbolTable;
+
+import java.util.Arrays;
+
+
+/** Map from name ids (see Util.Names) to V, used instead of a HashMap with String keys: open addressing with linear
+ *  probing on an array of int keys, so that a lookup neither hashes a String nor boxes the key. Ids are dense, so an
+ *  id is its own hash. Nothing is ever removed.
+ */
+class IdMap<V> {
+
+    private static final int FREE = -1;     // (ids are never negative)
+
+    private int[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    IdMap() {
+        keys = new int[8];
+        Arrays.fill(keys, FREE);
+        values = new Object[8];
+    }
+
+    /** A copy of other (to be changed independently) */
+    IdMap(IdMap<V> other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int id) {
+        return (id < 0) ? null : (V) values[slot(id)];
+    }
+
+    boolean containsKey(int id) {
+        return id >= 0 && keys[slot(id)] == id;
+    }
+
+    /** Maps id to value, replacing what it was mapped to */
+    void put(int id, V value) {
+        if (2 * (size + 1) > keys.length) grow();
+        int slot = slot(id);
+        if (keys[slot] == FREE) {
+            keys[slot] = id;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /** Puts every mapping of other into this map (replacing the ones of the same ids) */
+    @SuppressWarnings("unchecked")
+    void putAll(IdMap<? extends V> other) {
+        for (int i = 0 ; i < other.keys.length ; i++) {
+            if (other.keys[i] != FREE) put(other.keys[i], (V) other.values[i]);
+        }
+    }
+
+    int size() { return size; }
+
+    /** Where id is, or the free slot where it would be put */
+    private int slot(int id) {
+        int mask = keys.length - 1;
+        int slot = id & mask;
+        while (keys[slot] != id && keys[slot] != FREE) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[2 * oldKeys.length];
+        Arrays.fill(keys, FREE);
+        values = new Object[keys.length];
+        for (int i = 0 ; i < oldKeys.length ; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+}
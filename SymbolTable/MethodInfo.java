@@ -4,24 +4,29 @@ import MiniJavaType.MiniJavaType;
 import Util.MyPair;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 
 public class MethodInfo {
     private MiniJavaType returnType;
-    private Map<String, VariableInfo> variables = new HashMap<>();               // variable name -> Variable Info
-    private List<MyPair<String, VariableInfo>> arguments = new ArrayList<>();    // ordered list of pairs (name, varInfo)
+    private int nameId = -1;            // id of its name (see Util.Names), set once it is put in its class
+    private IdMap<VariableInfo> variables = new IdMap<>();                           // variable name id -> Variable Info
+    private List<MyPair<String, VariableInfo>> orderedVariables = new ArrayList<>();   // arguments then variables, in the order they are declared
+    private List<MyPair<String, VariableInfo>> arguments = new ArrayList<>();          // ordered list of pairs (name, varInfo)
     private MethodInfo override = null;
     private int offset = -1;
+    private String llvmType = null;     // (built the first time it is needed)
 
     public MethodInfo(MiniJavaType _returnType){ returnType = _returnType; }
 
     public MiniJavaType getReturnType() { return returnType; }
 
-    public VariableInfo getVariableInfo(String variableName){
-        return variables.get(variableName);
+    public int getNameId() { return nameId; }
+
+    void setNameId(int _nameId) { nameId = _nameId; }
+
+    public VariableInfo getVariableInfo(int variableId){
+        return variables.get(variableId);
     }
 
     public void setOverride(MethodInfo _override){ override = _override; }
@@ -30,16 +35,16 @@ public class MethodInfo {
 
     public boolean isOverride(){ return override != null; }
 
-    public boolean putVariableInfo(String variableName, VariableInfo variableInfo){
-        if ( variables.containsKey(variableName) ){ return false; }
-        variables.put(variableName, variableInfo);
+    boolean putVariableInfo(int variableId, String variableName, VariableInfo variableInfo){
+        if ( variables.containsKey(variableId) ){ return false; }
+        variables.put(variableId, variableInfo);
+        orderedVariables.add(new MyPair<String, VariableInfo>(variableName, variableInfo));
         return true;
     }
 
-    public boolean putArgumentInfo(String argumentName, VariableInfo argumentInfo){
+    boolean putArgumentInfo(int argumentId, String argumentName, VariableInfo argumentInfo){
         // same as putVariableInfo but also adds it to list of (ordered) arguments
-        if ( variables.containsKey(argumentName) ){ return false; }
-        variables.put(argumentName, argumentInfo);
+        if ( !putVariableInfo(argumentId, argumentName, argumentInfo) ){ return false; }
         arguments.add(new MyPair<String, VariableInfo>(argumentName, argumentInfo));
         return true;
     }
@@ -58,13 +63,14 @@ public class MethodInfo {
         return arguments;
     }
 
-    public Map<String, VariableInfo> getVariablesMap(){
-        return variables;
+    /** Arguments and variables (name, varInfo), in the order they are declared */
+    public List<MyPair<String, VariableInfo>> getVariables(){
+        return orderedVariables;
     }
 
     public boolean hasSameSignatureWith(MethodInfo other){
         // must have same return type
-        if (!this.getReturnType().equals(other.getReturnType())) return false;
+        if (this.getReturnType() != other.getReturnType()) return false;     // (types are unique instances)
 
         // must have equal number of arguments
         int numOfArgs;
@@ -72,13 +78,24 @@ public class MethodInfo {
 
         // those arguments must have 1-1 the same type
         for (int i = 0 ; i < numOfArgs ; i++){
-            if ( ! this.getArgumentInfoAtPos(i).getType().equals( other.getArgumentInfoAtPos(i).getType() ) )
+            if ( this.getArgumentInfoAtPos(i).getType() != other.getArgumentInfoAtPos(i).getType() )
                 return false;
         }
 
         return true;
     }
 
+    /** The LLVM type of a pointer to the method, e.g. "i32 (i8*, i32, i1)*" ("this" first) */
+    public String getLLVMType() {
+        if (llvmType != null) return llvmType;
+        StringBuilder sig = new StringBuilder(returnType.getLLVMType()).append(" (i8*");
+        for (MyPair<String, VariableInfo> arg : arguments) {
+            sig.append(", ").append(arg.getSecond().getType().getLLVMType());
+        }
+        llvmType = sig.append(")*").toString();
+        return llvmType;
+    }
+
     public int getOffset() {
         return offset;
     }
@@ -98,9 +115,9 @@ public class MethodInfo {
             System.out.print(arg.getFirst() + ", ");
         }
         System.out.println("$");
-        for (Map.Entry<String, VariableInfo> entry : variables.entrySet()) {
-            System.out.println("      > variable_name = " + entry.getKey());
-            VariableInfo variableInfo = entry.getValue();
+        for (MyPair<String, VariableInfo> variable : orderedVariables) {
+            System.out.println("      > variable_name = " + variable.getFirst());
+            VariableInfo variableInfo = variable.getSecond();
             variableInfo.printDebugInfo(true);
         }
     }
@@ -1,9 +1,13 @@
 package SymbolTable;
 
 import MiniJavaType.MiniJavaType;
+import MiniJavaType.TypeRegistry;
 import Util.MyPair;
+import Util.Names;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,7 +15,8 @@ import java.util.Map;
 
 /** SymbolTable.SymbolTable -> SymbolTable.ClassInfo -> SymbolTable.MethodInfo -> SymbolTable.VariableInfo
  *                           -> SymbolTable.VariableInfo (fields)
- *  Implemented by 3 nested Maps with String keys:
+ *  Implemented by 3 nested Maps keyed by the ids of the names (see Util.Names, the parser gives every
+ *  Identifier the id of its name so that it is never looked up by its String):
  *    1. SymbolTable.SymbolTable.Map:  class_name     ->  SymbolTable.ClassInfo
  *    2. SymbolTable.ClassInfo.Map:    method_name    ->  SymbolTable.MethodInfo
  *    3. SymbolTable.MethodInfo.Map:   variable_name  ->  SymbolTable.VariableInfo
@@ -20,6 +25,10 @@ import java.util.Map;
  *
  *  The main class is a special case represented straight
  *  into the symbol table.
+ *
+ *  Every class (main class included) also gets a dense id, its position in an array, so that
+ *  custom types can refer to their class by id once resolved (see lookupClass(MiniJavaType)).
+ *  There is one MiniJavaType per class name, handed out by getCustomType().
  */
 
 
@@ -34,149 +43,162 @@ public class SymbolTable {
 	private final ClassInfo mainClassInfo;
 	private MethodInfo mainMethodInfo;
 	private String mainClassArg = null;
+	private int mainClassArgId = -1;
 
 	// Other (Custom) classes:
-	private Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();   // class name -> Class Info
+	private IdMap<ClassInfo> classes = new IdMap<>();                            // class name id -> Class Info (main class as well)
+	private List<ClassInfo> classesById = new ArrayList<>();                     // class id -> Class Info
 	private List<MyPair<String, ClassInfo>> orderedClasses = new ArrayList<>();   // used for printing their offsets in order
 
+	private final Names names;     // (the ones of the program parsed)
+	private final TypeRegistry types = new TypeRegistry();
+
 
-	public SymbolTable(){
+	public SymbolTable(Names _names){
+		names = _names;
 		mainClassInfo = new ClassInfo();
 		mainMethodInfo = new MethodInfo(MiniJavaType.VOID);
-		mainClassInfo.putMethodInfo("main", mainMethodInfo);
+		mainClassInfo.putMethodInfo(names.intern("main"), "main", mainMethodInfo);
 	}
 
+	public Names getNames() { return names; }
+
 	public String getMainClassName() { return mainClassName; }
 
 	public ClassInfo getMainClassInfo() { return mainClassInfo; }
 
+	public MethodInfo getMainMethodInfo() { return mainMethodInfo; }
+
     public String getMainClassArg() { return mainClassArg; }
 
-	public boolean setMainClassNameAndArg(String _mainClassName, String _mainClassArg) {
+	public int getMainClassArgId() { return mainClassArgId; }
+
+	public boolean setMainClassNameAndArg(int mainClassNameId, int mainClassArgId) {
 		if (mainClassName == null){
-			mainClassName = _mainClassName;
-			mainClassArg = _mainClassArg;
+			mainClassName = names.getName(mainClassNameId);
+			mainClassArg = names.getName(mainClassArgId);
+			this.mainClassArgId = mainClassArgId;
+			addClass(mainClassNameId, mainClassInfo);
 			return true;
 		} else return false;
 	}
 
-	public boolean putMainVariable(String variableName, VariableInfo variableInfo){
-	    if (variableName != null && variableName.equals(mainClassArg)) return false;   // cannot use same name as arg
-		return mainMethodInfo.putVariableInfo(variableName, variableInfo);
+	public boolean putMainVariable(int variableId, VariableInfo variableInfo){
+	    if (variableId == mainClassArgId) return false;   // cannot use same name as arg
+		return mainMethodInfo.putVariableInfo(variableId, names.getName(variableId), variableInfo);
 	}
 
-	public boolean putVariable(String className, String methodName, String variableName, VariableInfo variableInfo){
-		ClassInfo classInfo = classes.get(className);
-		if (classInfo != null){
-			MethodInfo methodInfo = classInfo.getMethodInfo(methodName);
-			if (methodInfo != null){
-				return methodInfo.putVariableInfo(variableName, variableInfo);
-			} else return false;
-		} else return false;
+	public boolean putVariable(MethodInfo methodInfo, int variableId, VariableInfo variableInfo){
+		return methodInfo.putVariableInfo(variableId, names.getName(variableId), variableInfo);
 	}
 
-	public boolean putArgument(String className, String methodName, String argumentName, VariableInfo argumentInfo){
-		ClassInfo classInfo = classes.get(className);
-		if (classInfo != null){
-			MethodInfo methodInfo = classInfo.getMethodInfo(methodName);
-			if (methodInfo != null){
-				return methodInfo.putArgumentInfo(argumentName, argumentInfo);
-			} else return false;
-		} else return false;
+	public boolean putArgument(MethodInfo methodInfo, int argumentId, VariableInfo argumentInfo){
+		return methodInfo.putArgumentInfo(argumentId, names.getName(argumentId), argumentInfo);
 	}
 
-	public boolean putMethod(String className, String methodName, MethodInfo methodInfo){
-		ClassInfo classInfo = classes.get(className);
-		if (classInfo != null){
-			return classInfo.putMethodInfo(methodName, methodInfo);
-		} else return false;
+	public boolean putMethod(ClassInfo classInfo, int methodId, MethodInfo methodInfo){
+		return classInfo.putMethodInfo(methodId, names.getName(methodId), methodInfo);
 	}
 
-	public boolean putField(String className, String fieldName, VariableInfo fieldInfo){
-		ClassInfo classInfo = classes.get(className);
-		if (classInfo != null){
-			return classInfo.putFieldInfo(fieldName, fieldInfo);
-		} else return false;
+	public boolean putField(ClassInfo classInfo, int fieldId, VariableInfo fieldInfo){
+		return classInfo.putFieldInfo(fieldId, names.getName(fieldId), fieldInfo);
 	}
 
-	public boolean putClass(String className, ClassInfo classInfo){
-		if ( classes.containsKey(className) ) return false;
-		classes.put(className, classInfo);
-		orderedClasses.add(new MyPair<String, ClassInfo>(className, classInfo));
+	public boolean putClass(int classNameId, ClassInfo classInfo){
+		if ( classes.containsKey(classNameId) ) return false;
+		addClass(classNameId, classInfo);
+		orderedClasses.add(new MyPair<String, ClassInfo>(classInfo.getName(), classInfo));
 		return true;
 	}
 
-	public VariableInfo lookupMainVariable(String variableName){
-		return mainMethodInfo.getVariableInfo(variableName);
+	private void addClass(int classNameId, ClassInfo classInfo){
+		MiniJavaType type = getCustomType(classNameId);
+		type.setClassId(classesById.size());
+		classInfo.setIdNameAndType(classesById.size(), names.getName(classNameId), type);
+		classes.put(classNameId, classInfo);
+		classesById.add(classInfo);
 	}
 
-	public VariableInfo lookupVariable(String className, String methodName, String variableName){
-		if (this.getMainClassName() != null && this.getMainClassName().equals(className)){
-			return this.lookupMainVariable(variableName);
-		} else {
-			ClassInfo classInfo = lookupClass(className);
-			if (classInfo != null) {
-				MethodInfo methodInfo = classInfo.getMethodInfo(methodName);
-				return (methodInfo != null) ? methodInfo.getVariableInfo(variableName) : null;
-			} else return null;
-		}
+	/** The (only) MiniJavaType of the class whose name has the id classNameId, even if it is not declared (yet) */
+	public MiniJavaType getCustomType(int classNameId){
+		return types.getCustomType(classNameId, names.getName(classNameId));
+	}
+
+	public TypeRegistry getTypeRegistry() { return types; }
+
+	public VariableInfo lookupMainVariable(int variableId){
+		return mainMethodInfo.getVariableInfo(variableId);
 	}
 
-	public VariableInfo lookupArgumentAtPos(String className, String methodName, int pos){
-		if (this.getMainClassName() != null && this.getMainClassName().equals(className)){
+	public VariableInfo lookupVariable(int classNameId, int methodId, int variableId){
+		ClassInfo classInfo = lookupClass(classNameId);
+		if (classInfo == mainClassInfo){
+			return this.lookupMainVariable(variableId);
+		} else if (classInfo != null) {
+			MethodInfo methodInfo = classInfo.getMethodInfo(methodId);
+			return (methodInfo != null) ? methodInfo.getVariableInfo(variableId) : null;
+		} else return null;
+	}
+
+	public VariableInfo lookupArgumentAtPos(int classNameId, int methodId, int pos){
+		ClassInfo classInfo = lookupClass(classNameId);
+		if (classInfo == mainClassInfo){
 			return null;  // main has no arguments (the one it has is not supported in MiniJava)
-		} else {
-            // (!) method might be inherited!
-            ClassInfo classInfo = lookupClass(className);
-            if (classInfo != null) {
-                MethodInfo methodInfo = classInfo.getMethodInfo(methodName);
-                classInfo = classInfo.getMotherClass();
-                while (classInfo != null && methodInfo == null) {
-					methodInfo = classInfo.getMethodInfo(methodName);
-                    classInfo = classInfo.getMotherClass();
-                }
-                return (methodInfo != null) ? methodInfo.getArgumentInfoAtPos(pos) : null;
-			} else return null;
-		}
+		} else if (classInfo != null) {
+			// (!) method might be inherited!
+			MethodInfo methodInfo = classInfo.getLayout().getMethod(methodId);
+			return (methodInfo != null) ? methodInfo.getArgumentInfoAtPos(pos) : null;
+		} else return null;
 	}
 
-	public VariableInfo lookupField(String className, String fieldName){
+	public VariableInfo lookupField(int classNameId, int fieldId){
 		// Warning: this method does not take into account inherited fields! (use one from SemanticAnalysis.SemanticChecks.java instead)
-		if (this.getMainClassName() != null && this.getMainClassName().equals(className))
-			return null;   // main class can have no fields
-		ClassInfo classInfo = lookupClass(className);
-		return (classInfo != null) ? classes.get(className).getFieldInfo(fieldName) : null;
+		ClassInfo classInfo = lookupClass(classNameId);
+		if (classInfo == mainClassInfo) return null;   // main class can have no fields
+		return (classInfo != null) ? classInfo.getFieldInfo(fieldId) : null;
 	}
 
-	public MethodInfo lookupMethod(String className, String methodName){
+	public MethodInfo lookupMethod(int classNameId, int methodId){
 		// Warning: this method does not take into account inherited methods! (use one from SemanticAnalysis.SemanticChecks.java instead)
-		if (this.getMainClassName() != null && this.getMainClassName().equals(className))
-			return ("main".equals(methodName) ?  mainMethodInfo : null);
-		ClassInfo classInfo = lookupClass(className);
-		return (classInfo != null) ? classInfo.getMethodInfo(methodName) : null;
+		ClassInfo classInfo = lookupClass(classNameId);
+		return (classInfo != null) ? classInfo.getMethodInfo(methodId) : null;
 	}
 
-	public ClassInfo lookupClass(String className){
+	public ClassInfo lookupClass(int classNameId){
 		// Note: takes into account main class as well
-		return (this.getMainClassName() != null && this.getMainClassName().equals(className)) ? mainClassInfo : classes.get(className);
+		return classes.get(classNameId);
+	}
+
+	/** Same as above for a name that is not an Identifier of the program (null if it is no name of it) */
+	public ClassInfo lookupClass(String className){
+		return classes.get(names.lookup(className));
+	}
+
+	/** Class of a custom type: looked up by name only the first time, then straight from its class id */
+	public ClassInfo lookupClass(MiniJavaType type){
+		if (type.getClassId() >= 0) return classesById.get(type.getClassId());
+		ClassInfo classInfo = lookupClass(type.getCustomTypeName());
+		if (classInfo != null) type.setClassId(classInfo.getId());
+		return classInfo;
+	}
+
+	public ClassInfo getClassById(int classId){
+		return classesById.get(classId);
+	}
+
+	public int getNumberOfClasses(){
+		return classesById.size();
 	}
 
-	public int getNumberOfArguments(String className, String methodName){
-		if (this.getMainClassName() != null && this.getMainClassName().equals(className)){
+	public int getNumberOfArguments(int classNameId, int methodId){
+		ClassInfo classInfo = lookupClass(classNameId);
+		if (classInfo == mainClassInfo){
 			return 1;  // main has one arguments (but it is not supported in MiniJava)
-		} else {
-		    // (!) method might be inherited!
-			ClassInfo classInfo = lookupClass(className);
-			if (classInfo != null) {
-				MethodInfo methodInfo = classInfo.getMethodInfo(methodName);
-                classInfo = classInfo.getMotherClass();
-                while (classInfo != null && methodInfo == null) {
-                    methodInfo = classInfo.getMethodInfo(methodName);
-                    classInfo = classInfo.getMotherClass();
-                }
-				return (methodInfo != null) ? methodInfo.getNumberOfArguments() : 0;
-			} else return 0;
-		}
+		} else if (classInfo != null) {
+			// (!) method might be inherited!
+			MethodInfo methodInfo = classInfo.getLayout().getMethod(methodId);
+			return (methodInfo != null) ? methodInfo.getNumberOfArguments() : 0;
+		} else return 0;
 	}
 
 	public List<MyPair<String, ClassInfo>> getOrderedClasses() {
@@ -201,11 +223,9 @@ public class SymbolTable {
 	}
 
 	public boolean checkForCyclicInheritance(){
-		if (checkForCircle(mainClassName, mainClassInfo)){
-			return true;
-		}
-		for (Map.Entry<String, ClassInfo> c : classes.entrySet()) {
-			if (checkForCircle(c.getKey(), c.getValue())){
+		if (checkForCircle(mainClassName, mainClassInfo)) return true;
+		for (MyPair<String, ClassInfo> c : orderedClasses) {
+			if (checkForCircle(c.getFirst(), c.getSecond())){
 				return true;
 			}
 		}
@@ -213,19 +233,84 @@ public class SymbolTable {
 	}
 
 
+	/** Must be called once the symbol table is complete (no more classes, fields or methods will be added) */
+	public void buildClassLayouts(){
+		mainClassInfo.setLayout(new ClassLayout(mainClassName, mainClassInfo, null));
+		for (MyPair<String, ClassInfo> c : this.getOrderedClasses()){
+			// (mother classes are always declared, and so put in orderedClasses, before their subclasses)
+			ClassInfo motherClass = c.getSecond().getMotherClass();
+			c.getSecond().setLayout(new ClassLayout(c.getFirst(), c.getSecond(), (motherClass != null) ? motherClass.getLayout() : null));
+		}
+	}
+
+	/** Numbers the class hierarchy (a forest since there is single inheritance) with a preorder DFS so that
+	 *  each class's subclasses get a contiguous interval of numbers and subtype tests become two comparisons
+	 *  (see ClassInfo.isSubclassOf()). Must be called once the symbol table is complete. */
+	public void numberClassHierarchy(){
+		// children lists (main class is included as well since a class may extend it)
+		Map<ClassInfo, List<ClassInfo>> subclasses = new HashMap<>();
+		List<ClassInfo> roots = new ArrayList<>();
+		roots.add(mainClassInfo);
+		for (MyPair<String, ClassInfo> c : this.getOrderedClasses()){
+			ClassInfo motherClass = c.getSecond().getMotherClass();
+			if (motherClass == null) roots.add(c.getSecond());
+			else subclasses.computeIfAbsent(motherClass, k -> new ArrayList<>()).add(c.getSecond());
+		}
+		// iterative DFS (hierarchies can be arbitrarily deep): each class is pushed twice, the 2nd time to close its interval
+		int counter = 0;
+		Deque<ClassInfo> stack = new ArrayDeque<>();
+		Deque<Boolean> closing = new ArrayDeque<>();
+		for (int i = roots.size() - 1 ; i >= 0 ; i--) { stack.push(roots.get(i)); closing.push(false); }
+		while (!stack.isEmpty()){
+			ClassInfo classInfo = stack.pop();
+			if (closing.pop()){
+				classInfo.setHierarchyInterval(classInfo.getPreorder(), counter - 1);
+				continue;
+			}
+			classInfo.setHierarchyInterval(counter++, -1);
+			stack.push(classInfo); closing.push(true);
+			List<ClassInfo> children = subclasses.get(classInfo);
+			if (children != null){
+				for (int i = children.size() - 1 ; i >= 0 ; i--) { stack.push(children.get(i)); closing.push(false); }
+			}
+		}
+	}
+
+	/** Class hierarchy analysis: marks every method that is overridden below each class, so that calls whose
+	 *  static receiver type has no overriding subclass can be made directly instead of through the vtable
+	 *  (see ClassLayout.hasSingleImplementation()). Must be called after buildClassLayouts(). */
+	public void analyzeClassHierarchy(){
+		for (MyPair<String, ClassInfo> c : this.getOrderedClasses()){
+			for (MyPair<String, MethodInfo> m : c.getSecond().getOrderedMethods()){
+				if (!m.getSecond().isOverride()) continue;
+				// every ancestor that sees some version of the method has it overridden (stop at the first one that
+				// already knew, as its own ancestors have been marked then as well)
+				ClassInfo ancestor = c.getSecond().getMotherClass();
+				int methodId = m.getSecond().getNameId();
+				while (ancestor != null && ancestor.getLayout().getMethod(methodId) != null
+						&& ancestor.getLayout().addOverriddenMethod(methodId)){
+					ancestor = ancestor.getMotherClass();
+				}
+			}
+		}
+	}
+
 	public void calculateOffsets(){
 		if (PRINT_OFFSETS) System.out.println("Fields and method offsets are:");
 		for (MyPair<String, ClassInfo> c : this.getOrderedClasses()){
-			int startingFieldOffset = 0, startingMethodOffset = 0;
+			int startingFieldOffset = 0, startingMethodOffset = 0, startingFieldIndex = 1;    // (index 0 is the vtable pointer)
 			ClassInfo motherClass = c.getSecond().getMotherClass();
 			if (motherClass != null) {
 				startingFieldOffset = motherClass.getNextFieldOffset();
 				startingMethodOffset = motherClass.getNextMethodOffset();
+				startingFieldIndex += motherClass.getTotalNumberOfFields();
 			}
-			// calculate offsets for fields
-			for (MyPair<String, VariableInfo> f : c.getSecond().getOrderedFields()){
+			// calculate offsets for fields (reordered and naturally aligned, as in the struct type of the class, see LLVMCodeGenerating)
+			for (MyPair<String, VariableInfo> f : c.getSecond().getFieldsInLayoutOrder()){
+				startingFieldOffset = ClassInfo.alignFieldOffset(startingFieldOffset, f.getSecond().getType());
 				if (PRINT_OFFSETS) System.out.println(c.getFirst() + "." + f.getFirst() + " : " + (startingFieldOffset));
 				f.getSecond().setOffset(startingFieldOffset);   // (!) must be same object (2 references) as in the map
+				f.getSecond().setIndex(startingFieldIndex++);
 				startingFieldOffset += f.getSecond().getType().getOffsetOfType();
 			}
 			// calculate offsets for methods
@@ -240,6 +325,10 @@ public class SymbolTable {
 				}
 			}
 		}
+		// now that all offsets are known fill in the vtables
+		for (MyPair<String, ClassInfo> c : this.getOrderedClasses()){
+			if (c.getSecond().getLayout() != null) c.getSecond().getLayout().buildVTable(c.getSecond().getTotalNumberOfMethods());
+		}
 	}
 
 
@@ -250,9 +339,9 @@ public class SymbolTable {
 		System.out.println("Main class is: " + getMainClassName() + "\nMain method return type and variables are: ");
 		mainMethodInfo.printDebugInfo();
 		System.out.println("\nOther classes are: ");
-		for (Map.Entry<String, ClassInfo> entry : classes.entrySet()) {
-			System.out.println("\n> class_name = " + entry.getKey());
-			ClassInfo classInfo = entry.getValue();
+		for (MyPair<String, ClassInfo> c : orderedClasses) {
+			System.out.println("\n> class_name = " + c.getFirst());
+			ClassInfo classInfo = c.getSecond();
 			classInfo.printDebugInfo();
 		}
 	}
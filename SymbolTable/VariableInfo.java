@@ -6,6 +6,7 @@ import MiniJavaType.MiniJavaType;
 public class VariableInfo {
     private MiniJavaType type;
     private int offset = -1;      // only used for fields
+    private int index = -1;       // ^^ (position in the struct type of the objects, after the vtable pointer)
 
     public VariableInfo(MiniJavaType _type) { type = _type; }
 
@@ -19,6 +20,14 @@ public class VariableInfo {
         this.offset = offset;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
     ////////////////////////
     ////     DEBUG     /////
     ////////////////////////
@@ -0,0 +1,138 @@
+package Util;
+
+import syntaxtree.*;
+import visitor.GJVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/** Visits expressions without recursion, so that expressions nested to any depth do not overflow the Java stack: the
+ *  parts of the expression still waiting for their operands are kept in a stack of its own, with the values of the
+ *  operands visited so far.
+ *  The visitor's visit() of a part (AndExpression, MessageSend, ...) is only called once all its operands have been
+ *  visited and gets their values from value() instead of visiting them itself. Expression, Clause, PrimaryExpression
+ *  and BracketExpression are never visited (the value is the one of what they hold), the rest of the primary
+ *  expressions (literals, identifiers, "this", "new A()") are visited as usual. A null value ends the walk.
+ *  A visit() may walk another expression: it is walked in the stack above the one of the expression it is in.
+ */
+public class ExpressionWalker<R, A> {
+
+    /** A part of the expression whose operands are being visited */
+    public static class Frame {
+        private Node node;
+        private int visited;        // operands visited so far
+        private int base;           // (where the values of its operands start)
+        public Object state;        // what the visitor keeps for the part between enter(), visited() and visit()
+        public int mark;
+
+        public Node getNode() { return node; }
+    }
+
+    private final GJVisitor<R, A> visitor;
+    private final ArrayList<Frame> frames = new ArrayList<>();      // (reused, the ones below depth are in use)
+    private int depth = 0;
+    private final ArrayList<R> values = new ArrayList<>();
+
+
+    public ExpressionWalker(GJVisitor<R, A> _visitor){
+        visitor = _visitor;
+    }
+
+    /** Called when the visit of a part starts, before its first operand is visited */
+    protected void enter(Frame frame, A argu) { }
+
+    /** Called once the i-th operand of a part has been visited: false ends the walk */
+    protected boolean visited(Frame frame, int i, R value, A argu) { return true; }
+
+    /** Visits the expression n (or any part of one) and returns its value, null if the walk was ended */
+    public R walk(Node n, A argu) {
+        int bottom = depth;
+        int valuesBottom = values.size();
+        Node next = n;
+        while (true) {
+            // go down to the first operand that has none
+            Node node = unwrap(next);
+            while (operand(node, 0) != null) {
+                if (depth == frames.size()) frames.add(new Frame());
+                Frame frame = frames.get(depth++);
+                frame.node = node;
+                frame.visited = 0;
+                frame.base = values.size();
+                frame.state = null;
+                frame.mark = 0;
+                enter(frame, argu);
+                node = unwrap(operand(node, 0));
+            }
+            R value = node.accept(visitor, argu);
+
+            // and back up, visiting the parts whose operands have all been visited
+            next = null;
+            while (next == null) {
+                if (depth == bottom) return value;
+                Frame frame = frames.get(depth - 1);
+                if (value == null || !visited(frame, frame.visited, value, argu)) {
+                    for (int i = bottom ; i < depth ; i++) frames.get(i).state = null;
+                    depth = bottom;
+                    truncate(valuesBottom);
+                    return null;
+                }
+                values.add(value);
+                next = operand(frame.node, ++frame.visited);
+                if (next == null) {
+                    value = frame.node.accept(visitor, argu);
+                    truncate(frame.base);
+                    frame.state = null;
+                    depth--;
+                }
+            }
+        }
+    }
+
+    /** The frame of the part being visited (in its visit()) */
+    public Frame frame() { return frames.get(depth - 1); }
+
+    /** The value of the i-th operand of the part being visited (in its visit()) */
+    public R value(int i) { return values.get(frame().base + i); }
+
+    /** The values of the operands of the part being visited from the i-th one on (valid until the walk goes on) */
+    public List<R> values(int i) { return values.subList(frame().base + i, values.size()); }
+
+    private void truncate(int size) {
+        while (values.size() > size) values.remove(values.size() - 1);
+    }
+
+    /** What a node holds, if it is only a wrapper of another one */
+    private static Node unwrap(Node n) {
+        while (true) {
+            if (n instanceof Expression) n = ((Expression) n).f0.choice;
+            else if (n instanceof Clause) n = ((Clause) n).f0.choice;
+            else if (n instanceof PrimaryExpression) n = ((PrimaryExpression) n).f0.choice;
+            else if (n instanceof BracketExpression) n = ((BracketExpression) n).f1;
+            else return n;
+        }
+    }
+
+    /** The i-th operand of a part of an expression (in the order they are evaluated), null if it has no more */
+    private static Node operand(Node n, int i) {
+        if (n instanceof AndExpression) return (i == 0) ? ((AndExpression) n).f0 : (i == 1) ? ((AndExpression) n).f2 : null;
+        if (n instanceof CompareExpression) return (i == 0) ? ((CompareExpression) n).f0 : (i == 1) ? ((CompareExpression) n).f2 : null;
+        if (n instanceof PlusExpression) return (i == 0) ? ((PlusExpression) n).f0 : (i == 1) ? ((PlusExpression) n).f2 : null;
+        if (n instanceof MinusExpression) return (i == 0) ? ((MinusExpression) n).f0 : (i == 1) ? ((MinusExpression) n).f2 : null;
+        if (n instanceof TimesExpression) return (i == 0) ? ((TimesExpression) n).f0 : (i == 1) ? ((TimesExpression) n).f2 : null;
+        if (n instanceof ArrayLookup) return (i == 0) ? ((ArrayLookup) n).f0 : (i == 1) ? ((ArrayLookup) n).f2 : null;
+        if (n instanceof ArrayLength) return (i == 0) ? ((ArrayLength) n).f0 : null;
+        if (n instanceof NotExpression) return (i == 0) ? ((NotExpression) n).f1 : null;
+        if (n instanceof ArrayAllocationExpression) return (i == 0) ? ((ArrayAllocationExpression) n).f3 : null;
+        if (n instanceof MessageSend) {      // the receiver, then the arguments
+            MessageSend call = (MessageSend) n;
+            if (i == 0) return call.f0;
+            if (!call.f4.present()) return null;
+            ExpressionList arguments = (ExpressionList) call.f4.node;
+            if (i == 1) return arguments.f0;
+            return (i - 2 < arguments.f1.f0.size()) ? ((ExpressionTerm) arguments.f1.f0.elementAt(i - 2)).f1 : null;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,24 @@
+package Util;
+
+import syntaxtree.Identifier;
+import syntaxtree.NodeToken;
+
+
+/** The token of an Identifier, made by the parser together with the id of its name in the program's Names */
+public class NameToken extends NodeToken {
+
+    private static final long serialVersionUID = 1L;     // (syntax tree nodes are Serializable)
+
+    private final int nameId;
+
+    public NameToken(String _name, int _nameId, int _kind, int _beginLine, int _beginColumn, int _endLine, int _endColumn) {
+        super(_name, _kind, _beginLine, _beginColumn, _endLine, _endColumn);
+        nameId = _nameId;
+    }
+
+    public int getNameId() { return nameId; }
+
+    /** The id of the name of n (the token of every Identifier of a parsed program is a NameToken) */
+    public static int of(Identifier n) { return ((NameToken) n.f0).getNameId(); }
+
+}
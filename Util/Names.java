@@ -0,0 +1,40 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/** The names (identifiers) of a program, each one interned once, when it is parsed, into a dense id: 0, 1, 2, ... in
+ *  the order they first appear. The Symbol Table is keyed by these ids, so that resolving an identifier hashes no String
+ *  (the parser gives each Identifier's token the id of its name, see NameToken).
+ */
+public class Names {
+
+    private final Map<String, Integer> ids = new HashMap<>();     // name -> its id
+    private final List<String> names = new ArrayList<>();        // id -> name
+
+
+    /** The id of name, given to it now if it has none yet */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        ids.put(name, names.size());
+        names.add(name);
+        return names.size() - 1;
+    }
+
+    /** The id of name, -1 if it is not a name of the program */
+    public int lookup(String name) {
+        Integer id = ids.get(name);
+        return (id != null) ? id : -1;
+    }
+
+    /** The name of an id (the same String instance for every token of that name) */
+    public String getName(int id) { return names.get(id); }
+
+    /** Number of distinct names (ids are in [0, size())) */
+    public int size() { return names.size(); }
+
+}
@@ -1,59 +1,76 @@
 package Util;
 
-import java.util.List;
+import SymbolTable.ClassInfo;
+import SymbolTable.MethodInfo;
 
+/** What a visitor passes down: the scope it is in (main, a class or a method of it) and what it wants from the node.
+ *  A scope is made once per class or method, together with a copy of it for every purpose (see withPurpose()), so
+ *  that visiting statements and expressions allocates no parameters. They are never changed once made.
+ */
 public class VisitorParameterInfo {
-    private String name;
-    private String supername = null;
-    private String type;
-    private String purpose = null;
-    private int argNum = 0;
-
-    public VisitorParameterInfo(String _name, String _type){
-        name = _name; type =_type;
-    }
 
-    public VisitorParameterInfo(String _name, String _supername, String _type){
-        name = _name;
-        supername = _supername;
-        type = _type;
+    public enum Scope { MAIN, CLASS, METHOD }
+
+    /** What is wanted from an Identifier: its name only, the type it names or the variable it refers to */
+    public enum Purpose { NAME, TYPE, VARIABLE }
+
+    /** For types (identifiers are names of classes), in any scope */
+    public static final VisitorParameterInfo TYPES = new VisitorParameterInfo(null, null, null, null, null).withPurpose(Purpose.TYPE);
+
+    private final String name;
+    private final String supername;
+    private final Scope scope;
+    private final Purpose purpose;
+    private final ClassInfo classInfo;      // the class and method (if any) named above, already resolved in the SymbolTable
+    private final MethodInfo methodInfo;
+    private final VisitorParameterInfo[] withPurpose;      // (shared by the copies of the scope)
+
+    public VisitorParameterInfo(String _name, String _supername, Scope _scope){
+        this(_name, _supername, _scope, null, null);
     }
 
-    public VisitorParameterInfo(String _name, String _supername, String _type, String _purpose){
+    public VisitorParameterInfo(String _name, String _supername, Scope _scope, ClassInfo _classInfo, MethodInfo _methodInfo){
         name = _name;
         supername = _supername;
-        type = _type;
-        purpose = _purpose;
+        scope = _scope;
+        purpose = Purpose.NAME;
+        classInfo = _classInfo;
+        methodInfo = _methodInfo;
+        withPurpose = new VisitorParameterInfo[Purpose.values().length];
+        withPurpose[Purpose.NAME.ordinal()] = this;
+        for (Purpose p : Purpose.values()) {
+            if (p != Purpose.NAME) withPurpose[p.ordinal()] = new VisitorParameterInfo(this, p);
+        }
     }
 
-    public VisitorParameterInfo(VisitorParameterInfo _argu, int addArgNum){
-        this.name = _argu.name;
-        this.supername = _argu.supername;
-        this.type = _argu.type;
-        this.purpose = _argu.purpose;
-        this.argNum = addArgNum;
+    private VisitorParameterInfo(VisitorParameterInfo _argu, Purpose _purpose){
+        name = _argu.name;
+        supername = _argu.supername;
+        scope = _argu.scope;
+        purpose = _purpose;
+        classInfo = _argu.classInfo;
+        methodInfo = _argu.methodInfo;
+        withPurpose = _argu.withPurpose;
     }
 
-    public int getArgNum(){ return argNum; }
-    public void nextArg() { argNum++; }
-
     public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
 
     public String getSupername() { return supername; }
-    public void setSupername(String supername) { this.supername = supername; }
 
-    public String getType() { return type; }
-    public void setType(String type) { this.type = type; }
+    public Scope getScope() { return scope; }
 
-    public String getPurpose() { return purpose; }
-    public void setPurpose(String purpose) { this.purpose = purpose; }
+    /** true in main (of the main class) */
+    public boolean isMain() { return getScope() == Scope.MAIN; }
+
+    public Purpose getPurpose() { return purpose; }
+
+    /** The same scope with another purpose (never a new object) */
+    public VisitorParameterInfo withPurpose(Purpose _purpose){
+        return withPurpose[_purpose.ordinal()];
+    }
 
-    public String getClassNameToCall() { return null; }
-    public String getMethodNameToCall() { return null; }
+    public ClassInfo getClassInfo() { return classInfo; }
 
-    // override use only
-    public List<ExtendedVisitorReturnInfo> getListOfResultVars() { return null; }
-    public void addToListOfResultVars(ExtendedVisitorReturnInfo var) { }
+    public MethodInfo getMethodInfo() { return methodInfo; }
 
 }
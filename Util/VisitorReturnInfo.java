@@ -5,6 +5,7 @@ import MiniJavaType.*;
 
 public class VisitorReturnInfo {
     private String name = null;
+    private int nameId = -1;        // (of an Identifier, see Names)
     private MiniJavaType type = null;
     private boolean isAlloced = false;
     private int beginLine = -1;
@@ -28,8 +29,17 @@ public class VisitorReturnInfo {
         beginLine = _beginLine;
     }
 
+    public VisitorReturnInfo(String _name, int _nameId, MiniJavaType _type, int _beginLine){
+        name = _name;
+        nameId = _nameId;
+        type = _type;
+        beginLine = _beginLine;
+    }
+
     public int getBeginLine() { return beginLine; }
 
+    public int getNameId() { return nameId; }
+
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
 